@@ -0,0 +1,102 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Optional;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Benchmarks for the future pipeline of a single check, run with {@code ./gradlew jmh}. The gc
+ * profiler reports the allocations of each check, the provider answers right away so only the
+ * pipeline itself is measured.
+ */
+@SuppressWarnings("UnstableApiUsage")
+@State(Scope.Benchmark)
+public class UpToDateCheckerBenchmark {
+  private static final CheckUpToDateRequest REQUEST =
+      CheckUpToDateRequest.newBuilder()
+          .setCurrentVersion("1.0")
+          .setContext(new BenchmarkContext())
+          .build();
+
+  private ExecutorService executorService;
+  private UpToDateChecker directChecker;
+  private UpToDateChecker executorChecker;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    executorService = Executors.newSingleThreadExecutor();
+    directChecker = newChecker(MoreExecutors.directExecutor());
+    executorChecker = newChecker(executorService);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    executorService.shutdown();
+  }
+
+  /** A check where every stage runs inline, measures the futures allocated per check. */
+  @Benchmark
+  public CheckUpToDateResponse checkInline() throws Exception {
+    return directChecker.checkWithDownloadingAndScheduling().requesting(REQUEST).response().get();
+  }
+
+  /** A check on an executor, measures the thread handoffs per check as well. */
+  @Benchmark
+  public CheckUpToDateResponse checkOnExecutor() throws Exception {
+    return executorChecker.checkWithDownloadingAndScheduling().requesting(REQUEST).response().get();
+  }
+
+  private static UpToDateChecker newChecker(Executor executor) {
+    UpToDateChecker checker = new UpToDateCheckerImpl(executor, Optional.empty(), String::equals);
+    checker.addVersionProvider(new BenchmarkVersionProvider());
+    return checker;
+  }
+
+  private static final class BenchmarkContext implements VersionProviderContext {}
+
+  private static final class BenchmarkVersionProvider
+      implements VersionProvider<BenchmarkContext> {
+    private final ListenableFuture<String> latestVersion = Futures.immediateFuture("1.1");
+
+    @Override
+    public String name() {
+      return "benchmark";
+    }
+
+    @Override
+    public Class<BenchmarkContext> contextType() {
+      return BenchmarkContext.class;
+    }
+
+    @Override
+    public ListenableFuture<String> findLatestVersion(BenchmarkContext context) {
+      return latestVersion;
+    }
+  }
+}
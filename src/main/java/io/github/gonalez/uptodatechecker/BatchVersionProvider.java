@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
+
+/**
+ * A {@link VersionProvider} that can also find the latest versions of many contexts at once, with
+ * a single request to the upstream service instead of one request per context.
+ *
+ * <p>{@link UpToDateChecker#checkAll(java.util.Collection)} groups the requests of each of these
+ * providers in a single call to {@link #findLatestVersions(ImmutableSet)}.
+ *
+ * @param <Context> type of context that this provider uses to get the latest versions.
+ */
+public interface BatchVersionProvider<Context extends VersionProviderContext>
+    extends VersionProvider<Context> {
+  /**
+   * Returns the latest versions of the given contexts. The contexts whose latest version was not
+   * found are left out of the map.
+   */
+  ListenableFuture<ImmutableMap<Context, String>> findLatestVersions(ImmutableSet<Context> contexts);
+}
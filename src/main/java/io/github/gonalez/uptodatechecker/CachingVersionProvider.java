@@ -0,0 +1,210 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link VersionProvider} that remembers the latest versions found by another provider, so
+ * checking the same context again within the {@link VersionCacheOptions#expireAfterWrite()} doesn't
+ * ask the provider again. Failures are not cached.
+ */
+@SuppressWarnings("UnstableApiUsage")
+@ThreadSafe
+public class CachingVersionProvider<Context extends VersionProviderContext>
+    implements VersionProvider<Context> {
+  private final VersionProvider<Context> versionProvider;
+  private final Cache<Context, String> latestVersions;
+
+  public CachingVersionProvider(
+      VersionProvider<Context> versionProvider, VersionCacheOptions versionCacheOptions) {
+    this(versionProvider, versionCacheOptions, Ticker.systemTicker());
+  }
+
+  /**
+   * Returns a caching provider for the given provider. If the given provider is a {@link
+   * BatchVersionProvider}, so is the returned one, and only the contexts whose latest version is
+   * not cached are asked for at once. Otherwise, if it is a {@link SnapshotVersionProvider}, so is
+   * the returned one.
+   */
+  public static <Context extends VersionProviderContext> CachingVersionProvider<Context> of(
+      VersionProvider<Context> versionProvider, VersionCacheOptions versionCacheOptions) {
+    if (versionProvider instanceof BatchVersionProvider) {
+      return new CachingBatchVersionProvider<>(
+          (BatchVersionProvider<Context>) versionProvider,
+          versionCacheOptions,
+          Ticker.systemTicker());
+    }
+    if (versionProvider instanceof SnapshotVersionProvider) {
+      return new CachingSnapshotVersionProvider<>(
+          (SnapshotVersionProvider<Context>) versionProvider,
+          versionCacheOptions,
+          Ticker.systemTicker());
+    }
+    return new CachingVersionProvider<>(versionProvider, versionCacheOptions);
+  }
+
+  CachingVersionProvider(
+      VersionProvider<Context> versionProvider,
+      VersionCacheOptions versionCacheOptions,
+      Ticker ticker) {
+    this.versionProvider = checkNotNull(versionProvider);
+    this.latestVersions =
+        CacheBuilder.newBuilder()
+            .expireAfterWrite(versionCacheOptions.expireAfterWrite(), TimeUnit.MILLISECONDS)
+            .maximumSize(versionCacheOptions.maximumSize())
+            .ticker(ticker)
+            .recordStats()
+            .build();
+  }
+
+  @Override
+  public String name() {
+    return versionProvider.name();
+  }
+
+  @Override
+  public Class<Context> contextType() {
+    return versionProvider.contextType();
+  }
+
+  @Override
+  public ListenableFuture<String> findLatestVersion(Context context) {
+    String latestVersion = latestVersions.getIfPresent(context);
+    if (latestVersion != null) {
+      return Futures.immediateFuture(latestVersion);
+    }
+    ListenableFuture<String> latestVersionFuture = versionProvider.findLatestVersion(context);
+    Futures.addCallback(
+        latestVersionFuture,
+        new FutureCallback<String>() {
+          @Override
+          public void onSuccess(String result) {
+            latestVersions.put(context, result);
+          }
+
+          @Override
+          public void onFailure(Throwable t) {}
+        },
+        MoreExecutors.directExecutor());
+    return latestVersionFuture;
+  }
+
+  /** Forgets the cached latest version of the given context, if any. */
+  public void invalidate(Context context) {
+    latestVersions.invalidate(context);
+  }
+
+  /** @return the hit, miss and eviction counts of the cache. */
+  public CacheStats stats() {
+    return latestVersions.stats();
+  }
+
+  /**
+   * A {@link CachingVersionProvider} for a {@link SnapshotVersionProvider}. A cached latest version
+   * is answered with the given last known snapshot if it has that version, so its validators are
+   * kept, or with a snapshot without validators otherwise.
+   */
+  static final class CachingSnapshotVersionProvider<Context extends VersionProviderContext>
+      extends CachingVersionProvider<Context> implements SnapshotVersionProvider<Context> {
+    private final SnapshotVersionProvider<Context> snapshotVersionProvider;
+
+    CachingSnapshotVersionProvider(
+        SnapshotVersionProvider<Context> snapshotVersionProvider,
+        VersionCacheOptions versionCacheOptions,
+        Ticker ticker) {
+      super(snapshotVersionProvider, versionCacheOptions, ticker);
+      this.snapshotVersionProvider = snapshotVersionProvider;
+    }
+
+    @Override
+    public ListenableFuture<VersionSnapshot> findLatestSnapshot(
+        Context context, Optional<VersionSnapshot> lastKnownSnapshot) {
+      Cache<Context, String> latestVersions = super.latestVersions;
+      String latestVersion = latestVersions.getIfPresent(context);
+      if (latestVersion != null) {
+        return Futures.immediateFuture(
+            lastKnownSnapshot
+                .filter(snapshot -> snapshot.latestVersion().equals(latestVersion))
+                .orElseGet(
+                    () ->
+                        VersionSnapshot.newBuilder()
+                            .setLatestVersion(latestVersion)
+                            .setTimestamp(System.currentTimeMillis())
+                            .build()));
+      }
+      return Futures.transform(
+          snapshotVersionProvider.findLatestSnapshot(context, lastKnownSnapshot),
+          snapshot -> {
+            latestVersions.put(context, snapshot.latestVersion());
+            return snapshot;
+          },
+          MoreExecutors.directExecutor());
+    }
+  }
+
+  /** A {@link CachingVersionProvider} for a {@link BatchVersionProvider}. */
+  static final class CachingBatchVersionProvider<Context extends VersionProviderContext>
+      extends CachingVersionProvider<Context> implements BatchVersionProvider<Context> {
+    private final BatchVersionProvider<Context> batchVersionProvider;
+
+    CachingBatchVersionProvider(
+        BatchVersionProvider<Context> batchVersionProvider,
+        VersionCacheOptions versionCacheOptions,
+        Ticker ticker) {
+      super(batchVersionProvider, versionCacheOptions, ticker);
+      this.batchVersionProvider = batchVersionProvider;
+    }
+
+    @Override
+    public ListenableFuture<ImmutableMap<Context, String>> findLatestVersions(
+        ImmutableSet<Context> contexts) {
+      Cache<Context, String> latestVersions = super.latestVersions;
+      ImmutableMap<Context, String> cachedVersions = latestVersions.getAllPresent(contexts);
+      if (cachedVersions.size() == contexts.size()) {
+        return Futures.immediateFuture(cachedVersions);
+      }
+      ImmutableSet<Context> missingContexts =
+          ImmutableSet.copyOf(Sets.difference(contexts, cachedVersions.keySet()));
+      return Futures.transform(
+          batchVersionProvider.findLatestVersions(missingContexts),
+          foundVersions -> {
+            latestVersions.putAll(foundVersions);
+            return ImmutableMap.<Context, String>builder()
+                .putAll(cachedVersions)
+                .putAll(foundVersions)
+                .build();
+          },
+          MoreExecutors.directExecutor());
+    }
+  }
+}
@@ -16,6 +16,8 @@
 package io.github.gonalez.uptodatechecker;
 
 import com.google.auto.value.AutoValue;
+import io.github.gonalez.uptodatechecker.concurrent.Deadline;
+import io.github.gonalez.uptodatechecker.version.VersionConstraint;
 
 import javax.annotation.concurrent.Immutable;
 import java.util.Optional;
@@ -26,7 +28,11 @@ import java.util.Optional;
 public abstract class CheckUpToDateRequest {
   /** @return a new builder to create a {@link CheckUpToDateRequest}. */
   public static CheckUpToDateRequest.Builder newBuilder() {
-    return new AutoValue_CheckUpToDateRequest.Builder().setOptionalCallback(Optional.empty());
+    return new AutoValue_CheckUpToDateRequest.Builder()
+        .setOptionalCallback(Optional.empty())
+        .setOptionalSoftTtl(Optional.empty())
+        .setOptionalVersionConstraint(Optional.empty())
+        .setOptionalDeadline(Optional.empty());
   }
 
   /** @return the context that will be used to get the latest version. */
@@ -41,6 +47,31 @@ public abstract class CheckUpToDateRequest {
   /** @return the optional callback to invoke when executing the up-to-date checker. */
   public abstract Optional<UpToDateChecker.Callback> optionalCallback();
 
+  /**
+   * Returns how long, in milliseconds, the last known latest version of the context can be used
+   * without asking the version provider again. If present, the request completes immediately with
+   * the last known latest version, if there is one. Once it is older than the soft ttl it is still
+   * used, but the version provider is asked again in the background and the callback is invoked
+   * again if the latest version changed. If the version provider fails, the request is answered
+   * with the last known latest version, if there is one.
+   */
+  public abstract Optional<Long> optionalSoftTtl();
+
+  /**
+   * Returns the constraint on the versions to update to. If present, the request is up-to-date
+   * unless the latest version is newer than the current version and matches the constraint, and
+   * the version match strategy of the checker is not used.
+   */
+  public abstract Optional<VersionConstraint> optionalVersionConstraint();
+
+  /**
+   * Returns the deadline of the request. If present, the request fails with a {@link
+   * UpToDateCheckerExceptionCode#DEADLINE_EXCEEDED_CODE} exception once the deadline expires, and
+   * the work still in flight for it is cancelled. A download of the request is bounded by the same
+   * deadline, and each periodic check gets the same timeout again.
+   */
+  public abstract Optional<Deadline> optionalDeadline();
+
   /** Builder for {@link CheckUpToDateRequest}. */
   @AutoValue.Builder
   public abstract static class Builder {
@@ -54,6 +85,16 @@ public abstract class CheckUpToDateRequest {
     public abstract Builder setOptionalCallback(
         Optional<UpToDateChecker.Callback> optionalCallback);
 
+    /** Sets the optional soft ttl of the request. */
+    public abstract Builder setOptionalSoftTtl(Optional<Long> optionalSoftTtl);
+
+    /** Sets the optional version constraint of the request. */
+    public abstract Builder setOptionalVersionConstraint(
+        Optional<VersionConstraint> optionalVersionConstraint);
+
+    /** Sets the optional deadline of the request. */
+    public abstract Builder setOptionalDeadline(Optional<Deadline> optionalDeadline);
+
     /** @return a new {@link CheckUpToDateRequest} based from this builder. */
     public abstract CheckUpToDateRequest build();
   }
@@ -31,7 +31,11 @@ public abstract class CheckUpToDateResponse {
   /** @return the latest version for the request. */
   public abstract String latestVersion();
 
-  /** @return {@code true} if the request is up-to-date. */
+  /**
+   * Returns {@code true} if the request is up-to-date, or, for requests with a {@link
+   * CheckUpToDateRequest#optionalVersionConstraint() version constraint}, if there is no newer
+   * version that matches it.
+   */
   public abstract boolean isUpToDate();
 
   /** Builder for {@link CheckUpToDateResponse}. */
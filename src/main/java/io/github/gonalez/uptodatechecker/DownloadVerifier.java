@@ -0,0 +1,204 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.io.BaseEncoding;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Optional;
+
+/**
+ * Checks a file against the {@link UpdateDownloaderRequest#expectedDigest() digest} and {@link
+ * UpdateDownloaderRequest#expectedSize() size} expected by a request. A new download is digested
+ * while it is streamed so it doesn't need to be read again, existing files are read through a
+ * buffer.
+ */
+@NotThreadSafe
+final class DownloadVerifier {
+  // Bytes of a file read at once while digesting it
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private final Optional<String> expectedDigest;
+  private final String digestAlgorithm;
+  private final Optional<Long> expectedSize;
+
+  // The digest of the download in progress, if it is being digested while streamed
+  @Nullable private MessageDigest digest;
+
+  private DownloadVerifier(
+      Optional<String> expectedDigest, String digestAlgorithm, Optional<Long> expectedSize) {
+    this.expectedDigest = checkNotNull(expectedDigest);
+    this.digestAlgorithm = checkNotNull(digestAlgorithm);
+    this.expectedSize = checkNotNull(expectedSize);
+  }
+
+  /** @return a new verifier for the expectations of the given request. */
+  static DownloadVerifier of(UpdateDownloaderRequest request) {
+    return new DownloadVerifier(
+        request.expectedDigest(), request.digestAlgorithm(), request.expectedSize());
+  }
+
+  /** @return {@code true} if the request expects anything from the file. */
+  boolean hasExpectations() {
+    return expectedDigest.isPresent() || expectedSize.isPresent();
+  }
+
+  /** @return {@code true} if the given file exists and meets the expectations of the request. */
+  boolean matches(Path file) throws IOException {
+    if (!hasExpectations() || !Files.isRegularFile(file)) {
+      return false;
+    }
+    long size = Files.size(file);
+    if (expectedSize.isPresent() && size != expectedSize.get()) {
+      return false;
+    }
+    if (!expectedDigest.isPresent()) {
+      return true;
+    }
+    MessageDigest fileDigest = newDigest();
+    digestFile(fileDigest, file, size);
+    return isExpectedDigest(fileDigest.digest());
+  }
+
+  /**
+   * Returns a channel that digests the body of a download while it is read. A resumed download is
+   * digested from the bytes already in the partial file, up to the given offset.
+   */
+  ReadableByteChannel digesting(ReadableByteChannel body, Path partialFile, long offset)
+      throws IOException {
+    if (!expectedDigest.isPresent()) {
+      return body;
+    }
+    digest = newDigest();
+    if (offset > 0) {
+      digestFile(digest, partialFile, offset);
+    }
+    return new DigestingChannel(body, digest);
+  }
+
+  /**
+   * Verifies the downloaded file. If it was not digested while streamed, it is digested now.
+   *
+   * @throws UpToDateCheckerException if the file does not meet the expectations of the request.
+   */
+  void verify(Path file, long size) throws IOException, UpToDateCheckerException {
+    if (expectedSize.isPresent() && size != expectedSize.get()) {
+      throw new UpToDateCheckerException(
+          String.format("Expected %d bytes but downloaded %d", expectedSize.get(), size),
+          UpToDateCheckerExceptionCode.FAIL_TO_VERIFY_DOWNLOAD_CODE);
+    }
+    if (!expectedDigest.isPresent()) {
+      return;
+    }
+    if (digest == null) {
+      digest = newDigest();
+      digestFile(digest, file, size);
+    }
+    byte[] actualDigest = digest.digest();
+    if (!isExpectedDigest(actualDigest)) {
+      throw new UpToDateCheckerException(
+          String.format(
+              "Expected %s digest %s but downloaded %s",
+              digestAlgorithm,
+              expectedDigest.get(),
+              BaseEncoding.base16().lowerCase().encode(actualDigest)),
+          UpToDateCheckerExceptionCode.FAIL_TO_VERIFY_DOWNLOAD_CODE);
+    }
+  }
+
+  private boolean isExpectedDigest(byte[] actualDigest) {
+    return BaseEncoding.base16().lowerCase().encode(actualDigest)
+        .equalsIgnoreCase(expectedDigest.get());
+  }
+
+  private MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(digestAlgorithm);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalArgumentException("Unknown digest algorithm: " + digestAlgorithm, e);
+    }
+  }
+
+  /**
+   * Digests the first {@code length} bytes of the given file. The file is read through a buffer
+   * rather than mapped: a mapping is only released once it is garbage collected, and until then the
+   * file can't be moved or deleted on some platforms.
+   */
+  private static void digestFile(MessageDigest digest, Path file, long length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+    try (FileChannel fileChannel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long position = 0;
+      while (position < length) {
+        buffer.clear();
+        buffer.limit((int) Math.min(buffer.capacity(), length - position));
+        int read = fileChannel.read(buffer, position);
+        if (read == -1) {
+          throw new EOFException("File ended before " + length + " bytes: " + file);
+        }
+        position += read;
+        buffer.flip();
+        digest.update(buffer);
+      }
+    }
+  }
+
+  /** A channel that digests the bytes read through it. */
+  private static final class DigestingChannel implements ReadableByteChannel {
+    private final ReadableByteChannel channel;
+    private final MessageDigest digest;
+
+    DigestingChannel(ReadableByteChannel channel, MessageDigest digest) {
+      this.channel = channel;
+      this.digest = digest;
+    }
+
+    @Override
+    public int read(ByteBuffer destination) throws IOException {
+      int position = destination.position();
+      int read = channel.read(destination);
+      if (read > 0) {
+        ByteBuffer readBytes = destination.duplicate();
+        readBytes.position(position);
+        readBytes.limit(position + read);
+        digest.update(readBytes);
+      }
+      return read;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
+}
@@ -17,23 +17,52 @@ package io.github.gonalez.uptodatechecker;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
-import com.google.common.io.ByteStreams;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.AsyncCallable;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import io.github.gonalez.uptodatechecker.concurrent.LegacyFutures;
 import io.github.gonalez.uptodatechecker.http.HttpClient;
 import io.github.gonalez.uptodatechecker.http.HttpRequest;
+import io.github.gonalez.uptodatechecker.http.HttpResponse;
+import io.github.gonalez.uptodatechecker.http.HttpResponseException;
 
-import java.io.ByteArrayInputStream;
-import java.io.File;
-import java.io.FileOutputStream;
+import javax.annotation.Nullable;
+import java.io.EOFException;
 import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
-/** A {@link UpdateDownloader} which can download update files to a path. */
+/**
+ * A {@link UpdateDownloader} which can download update files to a path.
+ *
+ * <p>The update is streamed from the connection straight into the file, so the memory used does not
+ * depend on the size of the update. It is first written next to the download path and only moved
+ * there once complete, a failed download never leaves a truncated file behind.
+ *
+ * <p>If the request has an {@link UpdateDownloaderRequest#expectedDigest() expected digest} or
+ * {@link UpdateDownloaderRequest#expectedSize() size}, nothing is downloaded when the existing file
+ * already has it, and the downloaded file is digested while it is written so it can be verified
+ * without reading it again.
+ *
+ * <p>Failed attempts are retried after a growing, randomized {@link
+ * UpdateDownloaderRequest#retryDelayMillis() delay}. If the download is interrupted and the server
+ * gave us a strong {@code ETag} for the file, the partial file is kept and the next attempt only
+ * requests the missing bytes with a {@code Range} request. The {@code If-Range} validator makes the
+ * server send the whole file instead if it changed.
+ */
 @SuppressWarnings("UnstableApiUsage")
 public class FileUpdateDownloader implements UpdateDownloader {
+  /** The longest time to wait before a retry, however many attempts failed before. */
+  static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+  private static final int MAX_RETRY_DELAY_SHIFT = 16;
+
   private final Executor executor;
   private final HttpClient httpClient;
   private final Options options;
@@ -46,18 +75,188 @@ public class FileUpdateDownloader implements UpdateDownloader {
 
   @Override
   public ListenableFuture<Boolean> downloadUpdate(UpdateDownloaderRequest request) {
-    File file = new File(request.downloadPath());
+    return skipIfMatching(request, () -> fetch(request), executor);
+  }
+
+  /** Downloads the file of the given request, without looking at the existing file first. */
+  ListenableFuture<Boolean> fetch(UpdateDownloaderRequest request) {
+    return download(request, PartialDownload.of(Paths.get(request.downloadPath())), 1);
+  }
+
+  /**
+   * Skips the given download if the file at the download path already has the expected digest or
+   * size of the request. The file is read in the given executor.
+   */
+  static ListenableFuture<Boolean> skipIfMatching(
+      UpdateDownloaderRequest request, AsyncCallable<Boolean> download, Executor executor) {
+    DownloadVerifier verifier = DownloadVerifier.of(request);
+    if (!verifier.hasExpectations()) {
+      return LegacyFutures.callAsync(download, executor);
+    }
     return LegacyFutures.transformAsync(
-        httpClient.requestAsync(
-            HttpRequest.newBuilder().setUrl(request.urlToDownload()).setOptions(options).build()),
+        LegacyFutures.call(() -> verifier.matches(Paths.get(request.downloadPath())), executor),
+        matches -> matches ? Futures.immediateFuture(true) : download.call(),
+        executor);
+  }
+
+  private ListenableFuture<Boolean> download(
+      UpdateDownloaderRequest request, PartialDownload partialDownload, int attempt) {
+    String url = request.urlToDownload();
+    ListenableFuture<Boolean> download =
+        LegacyFutures.callAsync(
+            () -> {
+              DownloadVerifier verifier = DownloadVerifier.of(request);
+              String validator = partialDownload.resumableValidator(url);
+              if (validator == null) {
+                return requestDownload(
+                    HttpRequest.newBuilder().setUrl(url), url, partialDownload, verifier, 0);
+              }
+              long offset = partialDownload.partialLength();
+              return LegacyFutures.catchingAsync(
+                  requestDownload(
+                      HttpRequest.newBuilder()
+                          .setUrl(url)
+                          .setHeaders(
+                              ImmutableMap.of(
+                                  "Range", "bytes=" + offset + "-", "If-Range", validator)),
+                      url,
+                      partialDownload,
+                      verifier,
+                      offset),
+                  HttpResponseException.class,
+                  e -> {
+                    if (e.responseCode() != 416) {
+                      return Futures.immediateFailedFuture(e);
+                    }
+                    // The partial file is not a prefix of the resource, start over
+                    try {
+                      partialDownload.discard();
+                    } catch (IOException discardException) {
+                      return Futures.immediateFailedFuture(discardException);
+                    }
+                    return download(request, partialDownload, attempt);
+                  },
+                  executor);
+            },
+            executor);
+    return LegacyFutures.catchingAsync(
+        download,
+        Exception.class,
+        e ->
+            attempt < request.maxAttempts() && isRetriable(e)
+                ? LegacyFutures.scheduleAsync(
+                    () -> download(request, partialDownload, attempt + 1),
+                    retryDelayMillis(request, attempt),
+                    TimeUnit.MILLISECONDS,
+                    executor)
+                : Futures.immediateFailedFuture(e),
+        executor);
+  }
+
+  private ListenableFuture<Boolean> requestDownload(
+      HttpRequest.Builder httpRequest,
+      String url,
+      PartialDownload partialDownload,
+      DownloadVerifier verifier,
+      long offset) {
+    return LegacyFutures.transformAsync(
+        httpClient.requestAsync(httpRequest.setOptions(options).setStreaming(true).build()),
         httpResponse -> {
-          try (FileOutputStream outputStream = new FileOutputStream(file)) {
-            ByteStreams.copy(new ByteArrayInputStream(httpResponse.body()), outputStream);
-          } catch (IOException e) {
-            return Futures.immediateFailedFuture(e);
-          }
+          writeResponse(url, httpResponse, partialDownload, verifier, offset);
           return Futures.immediateFuture(true);
         },
         executor);
   }
+
+  private static void writeResponse(
+      String url,
+      HttpResponse httpResponse,
+      PartialDownload partialDownload,
+      DownloadVerifier verifier,
+      long offset)
+      throws IOException, UpToDateCheckerException {
+    try (HttpResponse response = httpResponse) {
+      long position = 0;
+      if (offset > 0 && response.responseCode() == 206) {
+        position = contentRangeStart(response.header("content-range"));
+        if (position != offset) {
+          partialDownload.discard();
+          throw new ProtocolException(
+              "Unexpected Content-Range: " + response.header("content-range"));
+        }
+      } else {
+        // A new download, or the server ignored the range because the file changed
+        partialDownload.restart(url, response);
+      }
+      long contentLength = response.responseBody().contentLength();
+      ReadableByteChannel body =
+          verifier.digesting(response.bodyChannel(), partialDownload.partialPath(), position);
+      long written = partialDownload.transferFrom(body, position);
+      // Not every client notices when the connection is closed before the end of the body
+      if (contentLength != -1 && written != contentLength) {
+        throw new EOFException("Connection closed before the end of the body");
+      }
+      try {
+        verifier.verify(partialDownload.partialPath(), position + written);
+      } catch (UpToDateCheckerException e) {
+        partialDownload.discard();
+        throw e;
+      }
+      partialDownload.complete();
+    } catch (IOException e) {
+      if (!partialDownload.isResumable()) {
+        try {
+          partialDownload.discard();
+        } catch (IOException discardException) {
+          e.addSuppressed(discardException);
+        }
+      }
+      throw e;
+    }
+  }
+
+  /** @return the first byte position of a {@code Content-Range} header, or {@code -1}. */
+  static long contentRangeStart(@Nullable String contentRange) {
+    // bytes 100-199/200
+    if (contentRange == null || !contentRange.startsWith("bytes ")) {
+      return -1;
+    }
+    int dash = contentRange.indexOf('-');
+    if (dash == -1) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Returns how long to wait in milliseconds before retrying the download after the given failed
+   * attempt. The {@link UpdateDownloaderRequest#retryDelayMillis() retry delay} is doubled after
+   * each attempt up to {@link #MAX_RETRY_DELAY_MILLIS}, and a random half of it is taken off so
+   * clients which failed at the same time don't retry at the same time.
+   */
+  static long retryDelayMillis(UpdateDownloaderRequest request, int attempt) {
+    // Clamped before it is doubled, so it can't overflow
+    long delay =
+        Math.min(
+            MAX_RETRY_DELAY_MILLIS,
+            Math.min(MAX_RETRY_DELAY_MILLIS, request.retryDelayMillis())
+                << Math.min(attempt - 1, MAX_RETRY_DELAY_SHIFT));
+    return delay - ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+  }
+
+  /** @return {@code true} if the download may succeed if attempted again. */
+  static boolean isRetriable(Throwable failure) {
+    if (failure instanceof HttpResponseException) {
+      return ((HttpResponseException) failure).responseCode() >= 500;
+    }
+    if (failure instanceof UpToDateCheckerException) {
+      return ((UpToDateCheckerException) failure).getExceptionCode()
+          == UpToDateCheckerExceptionCode.FAIL_TO_CONNECT_CODE;
+    }
+    return failure instanceof IOException;
+  }
 }
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link VersionSnapshotStore} that appends the saved snapshots to a binary file, which is read
+ * back at once when loaded.
+ *
+ * <p>Each record is checksummed, so a record torn by a crash while it was written is dropped
+ * instead of the whole file. Once the file holds many more records than snapshots, the older
+ * records are compacted away by rewriting the file with only the last snapshot of each key.
+ */
+@ThreadSafe
+public class FileVersionSnapshotStore implements VersionSnapshotStore {
+  // "UTDS", and the version of the format
+  private static final int MAGIC = 0x55544453;
+  private static final int FORMAT_VERSION = 1;
+  private static final int HEADER_SIZE = 8;
+
+  // The file is compacted once it holds this many times more records than snapshots
+  private static final int COMPACTION_RATIO = 2;
+  private static final int MIN_COMPACTION_RECORDS = 64;
+
+  private final Path path;
+
+  @GuardedBy("this")
+  private final Map<String, VersionSnapshot> snapshots = new LinkedHashMap<>();
+
+  @GuardedBy("this")
+  private int records;
+
+  @GuardedBy("this")
+  private boolean loaded;
+
+  public FileVersionSnapshotStore(Path path) {
+    this.path = checkNotNull(path);
+  }
+
+  @Override
+  public synchronized ImmutableMap<String, VersionSnapshot> load() throws IOException {
+    snapshots.clear();
+    records = 0;
+    boolean intact = !Files.exists(path) || readRecords();
+    loaded = true;
+    if (!intact || needsCompaction()) {
+      compact();
+    }
+    return ImmutableMap.copyOf(snapshots);
+  }
+
+  @Override
+  public synchronized void save(String key, VersionSnapshot snapshot) throws IOException {
+    checkNotNull(key);
+    checkNotNull(snapshot);
+    if (!loaded) {
+      load();
+    }
+    if (snapshot.equals(snapshots.put(key, snapshot))) {
+      return;
+    }
+    try (FileChannel fileChannel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.APPEND)) {
+      if (fileChannel.size() == 0) {
+        writeFully(fileChannel, header());
+      }
+      writeFully(fileChannel, encode(key, snapshot));
+    }
+    records++;
+    if (needsCompaction()) {
+      compact();
+    }
+  }
+
+  /**
+   * Reads the records of the file into the snapshots.
+   *
+   * @return {@code false} if the file has bytes that aren't valid records, at its end or instead of
+   *     a header.
+   */
+  @GuardedBy("this")
+  private boolean readRecords() throws IOException {
+    try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = fileChannel.size();
+      if (size < HEADER_SIZE) {
+        return size == 0;
+      }
+      if (size > Integer.MAX_VALUE) {
+        return false;
+      }
+      // Read rather than mapped, a mapping would keep the file from being replaced by compact()
+      // on some platforms until it is garbage collected
+      ByteBuffer buffer = ByteBuffer.allocate((int) size);
+      while (buffer.hasRemaining() && fileChannel.read(buffer) != -1) {}
+      buffer.flip();
+      if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) {
+        return false;
+      }
+      while (buffer.remaining() >= 8) {
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+          break;
+        }
+        ByteBuffer payload = buffer.slice();
+        payload.limit(length);
+        CRC32 crc32 = new CRC32();
+        crc32.update(payload.duplicate());
+        if ((int) crc32.getValue() != checksum) {
+          break;
+        }
+        try {
+          String key = getString(payload);
+          snapshots.put(key, decode(payload));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+          break;
+        }
+        records++;
+        buffer.position(buffer.position() + length);
+      }
+      return !buffer.hasRemaining();
+    }
+  }
+
+  @GuardedBy("this")
+  private boolean needsCompaction() {
+    return records >= MIN_COMPACTION_RECORDS && records > snapshots.size() * COMPACTION_RATIO;
+  }
+
+  /** Rewrites the file with only the last snapshot of each key. */
+  @GuardedBy("this")
+  private void compact() throws IOException {
+    Path compactedPath = path.resolveSibling(path.getFileName() + ".compact");
+    try (FileChannel fileChannel =
+        FileChannel.open(
+            compactedPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+      writeFully(fileChannel, header());
+      for (Map.Entry<String, VersionSnapshot> snapshot : snapshots.entrySet()) {
+        writeFully(fileChannel, encode(snapshot.getKey(), snapshot.getValue()));
+      }
+      fileChannel.force(false);
+    }
+    try {
+      Files.move(
+          compactedPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(compactedPath, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+    records = snapshots.size();
+  }
+
+  private static ByteBuffer header() {
+    ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+    header.putInt(MAGIC).putInt(FORMAT_VERSION).flip();
+    return header;
+  }
+
+  /** @return the record of the given snapshot: its length, checksum and payload. */
+  private static ByteBuffer encode(String key, VersionSnapshot snapshot) {
+    List<byte[]> strings = new ArrayList<>();
+    strings.add(key.getBytes(StandardCharsets.UTF_8));
+    strings.add(snapshot.latestVersion().getBytes(StandardCharsets.UTF_8));
+    for (Map.Entry<String, String> validator : snapshot.validators().entrySet()) {
+      strings.add(validator.getKey().getBytes(StandardCharsets.UTF_8));
+      strings.add(validator.getValue().getBytes(StandardCharsets.UTF_8));
+    }
+    // The timestamp and the number of validators
+    int length = 8 + 4;
+    for (byte[] string : strings) {
+      length += 4 + string.length;
+    }
+    ByteBuffer record = ByteBuffer.allocate(8 + length);
+    record.position(8);
+    putString(record, strings.get(0));
+    putString(record, strings.get(1));
+    record.putLong(snapshot.timestamp());
+    record.putInt(snapshot.validators().size());
+    for (byte[] string : strings.subList(2, strings.size())) {
+      putString(record, string);
+    }
+    CRC32 crc32 = new CRC32();
+    crc32.update(record.array(), 8, length);
+    record.putInt(0, length).putInt(4, (int) crc32.getValue());
+    record.flip();
+    return record;
+  }
+
+  private static VersionSnapshot decode(ByteBuffer payload) {
+    String latestVersion = getString(payload);
+    long timestamp = payload.getLong();
+    int validatorCount = payload.getInt();
+    Map<String, String> validators = new LinkedHashMap<>();
+    for (int i = 0; i < validatorCount; i++) {
+      validators.put(getString(payload), getString(payload));
+    }
+    return VersionSnapshot.newBuilder()
+        .setLatestVersion(latestVersion)
+        .setTimestamp(timestamp)
+        .setValidators(validators)
+        .build();
+  }
+
+  private static void putString(ByteBuffer buffer, byte[] string) {
+    buffer.putInt(string.length).put(string);
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    int length = buffer.getInt();
+    if (length < 0 || length > buffer.remaining()) {
+      throw new IllegalArgumentException("Invalid string length: " + length);
+    }
+    byte[] string = new byte[length];
+    buffer.get(string);
+    return new String(string, StandardCharsets.UTF_8);
+  }
+
+  private static void writeFully(FileChannel fileChannel, ByteBuffer buffer) throws IOException {
+    while (buffer.hasRemaining()) {
+      fileChannel.write(buffer);
+    }
+  }
+}
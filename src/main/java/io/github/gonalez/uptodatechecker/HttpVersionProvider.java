@@ -17,8 +17,13 @@ package io.github.gonalez.uptodatechecker;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
 import com.google.gson.JsonPrimitive;
@@ -26,17 +31,31 @@ import com.google.gson.JsonSyntaxException;
 import io.github.gonalez.uptodatechecker.concurrent.LegacyFutures;
 import io.github.gonalez.uptodatechecker.http.HttpClient;
 import io.github.gonalez.uptodatechecker.http.HttpRequest;
+import io.github.gonalez.uptodatechecker.http.HttpResponse;
 
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.Executor;
 
 /** A {@link VersionProvider} that can make http requests for getting the {@link #findLatestVersion(VersionProviderContext)}. */
 public abstract class HttpVersionProvider<T extends VersionProviderContext>
-    implements VersionProvider<T> {
-  private static final JsonParser JSON_PARSER = new JsonParser();
+    implements SnapshotVersionProvider<T> {
+  // The response headers a request can be made conditional on
+  private static final ImmutableList<String> VALIDATORS = ImmutableList.of("etag", "last-modified");
 
   private final Executor executor;
   private final HttpClient httpClient;
 
+  // The most contexts whose last version is remembered, the least recently used are evicted
+  private static final long MAX_LAST_VERSIONS = 1000;
+
+  // The last version found by findLatestVersion for each context, with the validators of the
+  // response it was found in. The snapshots found by findLatestSnapshot are kept by the caller
+  private final Cache<T, VersionSnapshot> lastVersions =
+      CacheBuilder.newBuilder().maximumSize(MAX_LAST_VERSIONS).build();
+
   public HttpVersionProvider(Executor executor, HttpClient httpClient) {
     this.executor = checkNotNull(executor);
     this.httpClient = checkNotNull(httpClient);
@@ -44,27 +63,107 @@ public abstract class HttpVersionProvider<T extends VersionProviderContext>
 
   protected abstract HttpRequest buildRequest(T context);
 
+  /**
+   * Reads the version from the whole response body. A body that is not valid JSON is given as a
+   * string primitive. Providers which only need a field of the body can extend {@link
+   * JsonFieldHttpVersionProvider} instead, which doesn't parse the whole body.
+   */
   protected abstract String readVersion(JsonElement jsonElement);
 
+  /**
+   * Finds the latest version of the given context. If the version was found before, the request is
+   * made conditional on the validators of that response, so a {@code 304 Not Modified} response
+   * reuses the version found then without reading any body.
+   */
   @Override
   public ListenableFuture<String> findLatestVersion(T context) {
-    return LegacyFutures.catchingAsync(
-        LegacyFutures.transformAsync(
-            httpClient.requestAsync(buildRequest(context)),
-            response -> {
-              JsonElement jsonElement;
-              try {
-                jsonElement = JSON_PARSER.parse(response.bodyString());
-              } catch (JsonSyntaxException jsonSyntaxException) {
-                jsonElement = new JsonPrimitive(response.bodyString());
-              }
-              return Futures.immediateFuture(readVersion(jsonElement));
-            },
-            executor),
-        Exception.class,
-        cause -> {
-          return Futures.immediateFailedFuture(cause);
+    return LegacyFutures.transform(
+        findLatestSnapshot(context, Optional.ofNullable(lastVersions.getIfPresent(context))),
+        snapshot -> {
+          rememberVersion(context, snapshot);
+          return snapshot.latestVersion();
+        },
+        MoreExecutors.directExecutor());
+  }
+
+  /**
+   * Finds the latest version of the given context. If the given snapshot has validators, the
+   * request is made conditional on them, so a {@code 304 Not Modified} response reuses the version
+   * of the snapshot without reading any body.
+   */
+  @Override
+  public ListenableFuture<VersionSnapshot> findLatestSnapshot(
+      T context, Optional<VersionSnapshot> lastKnownSnapshot) {
+    HttpRequest request = buildRequest(context);
+    Optional<VersionSnapshot> lastVersion =
+        lastKnownSnapshot.filter(snapshot -> !snapshot.validators().isEmpty());
+    if (lastVersion.isPresent()) {
+      request =
+          request.toBuilder().setHeaders(conditionalHeaders(request, lastVersion.get())).build();
+    }
+    return LegacyFutures.transformAsync(
+        httpClient.requestAsync(request),
+        response -> {
+          VersionSnapshot snapshot =
+              response.responseCode() == 304 && lastVersion.isPresent()
+                  ? lastVersion.get().toBuilder().setTimestamp(System.currentTimeMillis()).build()
+                  : snapshotOf(response, parseVersion(response));
+          return Futures.immediateFuture(snapshot);
         },
         executor);
   }
+
+  /**
+   * Parses the latest version from the body of the given response. By default, the whole body is
+   * parsed and given to {@link #readVersion(JsonElement)}.
+   */
+  protected String parseVersion(HttpResponse response)
+      throws IOException, UpToDateCheckerException {
+    String body = response.bodyString();
+    JsonElement jsonElement;
+    try {
+      jsonElement = JsonParser.parseString(body);
+    } catch (JsonSyntaxException jsonSyntaxException) {
+      jsonElement = new JsonPrimitive(body);
+    }
+    return readVersion(jsonElement);
+  }
+
+  /** @return a snapshot of the given latest version, with the validators of the given response. */
+  private static VersionSnapshot snapshotOf(HttpResponse response, String latestVersion) {
+    ImmutableMap.Builder<String, String> validators = ImmutableMap.builder();
+    for (String validator : VALIDATORS) {
+      String value = response.header(validator);
+      if (value != null) {
+        validators.put(validator, value);
+      }
+    }
+    return VersionSnapshot.newBuilder()
+        .setLatestVersion(latestVersion)
+        .setTimestamp(System.currentTimeMillis())
+        .setValidators(validators.build())
+        .build();
+  }
+
+  private void rememberVersion(T context, VersionSnapshot snapshot) {
+    if (snapshot.validators().isEmpty()) {
+      lastVersions.invalidate(context);
+    } else {
+      lastVersions.put(context, snapshot);
+    }
+  }
+
+  private static Map<String, String> conditionalHeaders(
+      HttpRequest request, VersionSnapshot lastVersion) {
+    Map<String, String> headers = new LinkedHashMap<>(request.headers());
+    String entityTag = lastVersion.validators().get("etag");
+    if (entityTag != null) {
+      headers.put("If-None-Match", entityTag);
+    }
+    String lastModified = lastVersion.validators().get("last-modified");
+    if (lastModified != null) {
+      headers.put("If-Modified-Since", lastModified);
+    }
+    return headers;
+  }
 }
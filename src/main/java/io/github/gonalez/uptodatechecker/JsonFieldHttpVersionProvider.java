@@ -0,0 +1,85 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import io.github.gonalez.uptodatechecker.http.HttpClient;
+import io.github.gonalez.uptodatechecker.http.HttpResponse;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+
+/**
+ * A {@link HttpVersionProvider} that reads the latest version from a field of the response body.
+ * The field is read while the body is parsed, without building a tree of the whole body, and
+ * nothing after it is parsed.
+ */
+public abstract class JsonFieldHttpVersionProvider<T extends VersionProviderContext>
+    extends HttpVersionProvider<T> {
+  private final JsonFieldPath versionFieldPath;
+
+  public JsonFieldHttpVersionProvider(
+      Executor executor, HttpClient httpClient, JsonFieldPath versionFieldPath) {
+    super(executor, httpClient);
+    this.versionFieldPath = checkNotNull(versionFieldPath);
+  }
+
+  /** @return the path of the version field in the response body. */
+  public JsonFieldPath versionFieldPath() {
+    return versionFieldPath;
+  }
+
+  @Override
+  protected String parseVersion(HttpResponse response)
+      throws IOException, UpToDateCheckerException {
+    return readVersionField(
+        new InputStreamReader(response.bodyStream(), StandardCharsets.UTF_8));
+  }
+
+  /** Reads the version field from the given body, if it was already parsed as a whole. */
+  @Override
+  protected final String readVersion(JsonElement jsonElement) {
+    try {
+      return readVersionField(new StringReader(jsonElement.toString()));
+    } catch (IOException | UpToDateCheckerException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  private String readVersionField(Reader body) throws IOException, UpToDateCheckerException {
+    @Nullable String latestVersion;
+    try (JsonReader reader = new JsonReader(body)) {
+      latestVersion = versionFieldPath.read(reader);
+    } catch (MalformedJsonException | IllegalStateException e) {
+      latestVersion = null;
+    }
+    if (latestVersion == null) {
+      throw new UpToDateCheckerException(
+          "The response has no version at " + versionFieldPath,
+          UpToDateCheckerExceptionCode.FAIL_TO_PARSE_VERSION_CODE);
+    }
+    return latestVersion;
+  }
+}
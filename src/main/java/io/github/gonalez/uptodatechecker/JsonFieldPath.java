@@ -0,0 +1,148 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.io.IOException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The path to a field of a JSON document, like {@code tag_name} or {@code assets[0].name}, that is
+ * read with a {@link JsonReader} token by token. The tokens before the field are skipped without
+ * building any tree, and nothing after it is read.
+ */
+@Immutable
+public final class JsonFieldPath {
+  // A field name followed by any number of array indices, "assets[0]"
+  private static final Pattern SEGMENT_PATTERN = Pattern.compile("([^\\[\\]]*)((?:\\[\\d+])*)");
+  private static final Pattern INDEX_PATTERN = Pattern.compile("\\[(\\d+)]");
+
+  private final ImmutableList<Segment> segments;
+  private final String path;
+
+  private JsonFieldPath(ImmutableList<Segment> segments, String path) {
+    this.segments = segments;
+    this.path = path;
+  }
+
+  /** @return the path to the field with the given names, each nested in the previous one. */
+  public static JsonFieldPath of(String... names) {
+    ImmutableList.Builder<Segment> segments = ImmutableList.builder();
+    for (String name : names) {
+      segments.add(new Segment(checkNotNull(name), -1));
+    }
+    return new JsonFieldPath(segments.build(), String.join(".", names));
+  }
+
+  /**
+   * Parses the given path, made of field names separated by dots, each optionally followed by array
+   * indices, like {@code assets[0].name}.
+   *
+   * @throws IllegalArgumentException if the path is not valid.
+   */
+  public static JsonFieldPath parse(String path) {
+    ImmutableList.Builder<Segment> segments = ImmutableList.builder();
+    for (String part : Splitter.on('.').split(path)) {
+      Matcher matcher = SEGMENT_PATTERN.matcher(part);
+      checkArgument(matcher.matches(), "Invalid json field path: %s", path);
+      if (!matcher.group(1).isEmpty()) {
+        segments.add(new Segment(matcher.group(1), -1));
+      }
+      Matcher indices = INDEX_PATTERN.matcher(matcher.group(2));
+      while (indices.find()) {
+        segments.add(new Segment(null, Integer.parseInt(indices.group(1))));
+      }
+    }
+    return new JsonFieldPath(segments.build(), path);
+  }
+
+  /**
+   * Reads the field of this path from the given reader, positioned at the start of the document.
+   * The reader is left right after the field.
+   *
+   * @return the value of the field as a string, or {@code null} if the document has no such field
+   *     or it is not a string, number or boolean.
+   */
+  @Nullable
+  public String read(JsonReader reader) throws IOException {
+    for (Segment segment : segments) {
+      if (segment.name != null) {
+        if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+          return null;
+        }
+        reader.beginObject();
+        while (true) {
+          if (!reader.hasNext()) {
+            return null;
+          }
+          if (reader.nextName().equals(segment.name)) {
+            break;
+          }
+          reader.skipValue();
+        }
+      } else {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+          return null;
+        }
+        reader.beginArray();
+        for (int i = 0; i < segment.index; i++) {
+          if (!reader.hasNext()) {
+            return null;
+          }
+          reader.skipValue();
+        }
+        if (!reader.hasNext()) {
+          return null;
+        }
+      }
+    }
+    switch (reader.peek()) {
+      case STRING:
+      case NUMBER:
+        return reader.nextString();
+      case BOOLEAN:
+        return String.valueOf(reader.nextBoolean());
+      default:
+        return null;
+    }
+  }
+
+  @Override
+  public String toString() {
+    return path;
+  }
+
+  /** A field name, or an array index if there is no name. */
+  private static final class Segment {
+    @Nullable private final String name;
+    private final int index;
+
+    Segment(@Nullable String name, int index) {
+      this.name = name;
+      this.index = index;
+    }
+  }
+}
@@ -26,7 +26,13 @@ public abstract class Options {
 
   /** @return a new builder to create a {@link Options}. */
   public static Builder newBuilder() {
-    return new AutoValue_Options.Builder().setConnectTimeout(10000).setReadTimeout(10000);
+    return new AutoValue_Options.Builder()
+        .setConnectTimeout(10000)
+        .setReadTimeout(10000)
+        .setMaxIdleConnections(5)
+        .setIdleConnectionTimeout(60000)
+        .setTlsSessionCacheSize(100)
+        .setTlsSessionTimeout(86400000);
   }
 
   /** @return the timeout for establishing an url connection. */
@@ -35,6 +41,18 @@ public abstract class Options {
   /** @return the timeout for reading a response. */
   public abstract int readTimeout();
 
+  /** @return the maximum number of idle keep-alive connections to keep per host. */
+  public abstract int maxIdleConnections();
+
+  /** @return how long, in milliseconds, an idle keep-alive connection is kept before eviction. */
+  public abstract int idleConnectionTimeout();
+
+  /** @return the maximum number of TLS sessions cached for resumption, {@code 0} for no limit. */
+  public abstract int tlsSessionCacheSize();
+
+  /** @return how long, in milliseconds, a cached TLS session can be resumed. */
+  public abstract int tlsSessionTimeout();
+
   /** Builder to create {@link Options}s. */
   @AutoValue.Builder
   public abstract static class Builder {
@@ -44,6 +62,18 @@ public abstract class Options {
     /** Sets the timeout for reading a response. */
     public abstract Builder setReadTimeout(int readTimeout);
 
+    /** Sets the maximum number of idle keep-alive connections to keep per host. */
+    public abstract Builder setMaxIdleConnections(int maxIdleConnections);
+
+    /** Sets how long an idle keep-alive connection is kept before eviction. */
+    public abstract Builder setIdleConnectionTimeout(int idleConnectionTimeout);
+
+    /** Sets the maximum number of TLS sessions cached for resumption. */
+    public abstract Builder setTlsSessionCacheSize(int tlsSessionCacheSize);
+
+    /** Sets how long a cached TLS session can be resumed. */
+    public abstract Builder setTlsSessionTimeout(int tlsSessionTimeout);
+
     /** @return a new {@link Options} based from this builder. */
     public abstract Options build();
   }
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import io.github.gonalez.uptodatechecker.http.HttpResponse;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * The files of a download in progress. The bytes are written to a {@code .part} file next to the
+ * download path, and the url and validator of the response to a {@code .part.meta} file, so an
+ * interrupted download can be resumed later with a range request.
+ */
+final class PartialDownload {
+  // Bytes handed to a single FileChannel#transferFrom call
+  private static final long TRANSFER_SIZE = 8 * 1024 * 1024;
+
+  private final Path path;
+  private final Path partialPath;
+  private final Path metadataPath;
+
+  private PartialDownload(Path path) {
+    this.path = checkNotNull(path);
+    this.partialPath = path.resolveSibling(path.getFileName() + ".part");
+    this.metadataPath = path.resolveSibling(path.getFileName() + ".part.meta");
+  }
+
+  /** @return the partial download of the given download path. */
+  static PartialDownload of(Path path) {
+    return new PartialDownload(path);
+  }
+
+  /**
+   * Returns the validator to resume the download of the given url with, or {@code null} if there
+   * is nothing to resume.
+   */
+  @Nullable
+  String resumableValidator(String url) throws IOException {
+    if (!Files.exists(metadataPath) || partialLength() == 0) {
+      return null;
+    }
+    List<String> metadata = Files.readAllLines(metadataPath, StandardCharsets.UTF_8);
+    if (metadata.size() != 2 || !metadata.get(0).equals(url)) {
+      return null;
+    }
+    return metadata.get(1);
+  }
+
+  /** @return the path of the partial file. */
+  Path partialPath() {
+    return partialPath;
+  }
+
+  /** @return the number of bytes downloaded so far. */
+  long partialLength() throws IOException {
+    return Files.exists(partialPath) ? Files.size(partialPath) : 0;
+  }
+
+  /**
+   * Starts the download over, remembering the validator of the given response so it can be resumed
+   * if interrupted. Responses without a strong validator can't be resumed.
+   */
+  void restart(String url, HttpResponse response) throws IOException {
+    Files.deleteIfExists(partialPath);
+    String validator = validatorOf(response);
+    if (validator == null) {
+      Files.deleteIfExists(metadataPath);
+    } else {
+      Files.write(metadataPath, ImmutableList.of(url, validator), StandardCharsets.UTF_8);
+    }
+  }
+
+  /** @return {@code true} if the download can be resumed if it is interrupted now. */
+  boolean isResumable() {
+    return Files.exists(metadataPath);
+  }
+
+  /**
+   * Writes the given body to the partial file, starting at the given position.
+   *
+   * @return the number of bytes written.
+   */
+  long transferFrom(ReadableByteChannel body, long position) throws IOException {
+    try (FileChannel fileChannel =
+        FileChannel.open(partialPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+      fileChannel.truncate(position);
+      long written = 0;
+      long transferred;
+      // The body is read through a direct buffer, it is never fully held in memory
+      while ((transferred = fileChannel.transferFrom(body, position + written, TRANSFER_SIZE))
+          > 0) {
+        written += transferred;
+      }
+      return written;
+    }
+  }
+
+  /**
+   * Creates an empty partial file of the given length, to be filled at any position. It can't be
+   * resumed since we can't tell which parts of it were written.
+   */
+  FileChannel preallocate(long length) throws IOException {
+    Files.deleteIfExists(metadataPath);
+    FileChannel fileChannel =
+        FileChannel.open(
+            partialPath,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    try {
+      if (length > 0) {
+        fileChannel.write(ByteBuffer.allocate(1), length - 1);
+      }
+    } catch (IOException e) {
+      fileChannel.close();
+      throw e;
+    }
+    return fileChannel;
+  }
+
+  /** Moves the downloaded file to the download path, replacing the existing file. */
+  void complete() throws IOException {
+    try {
+      Files.move(
+          partialPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(partialPath, path, StandardCopyOption.REPLACE_EXISTING);
+    }
+    Files.deleteIfExists(metadataPath);
+  }
+
+  /** Deletes the partial download. */
+  void discard() throws IOException {
+    Files.deleteIfExists(partialPath);
+    Files.deleteIfExists(metadataPath);
+  }
+
+  /**
+   * Returns the strong entity tag of the given response, that can be sent in a {@code If-Range}
+   * header, or {@code null} if there is none. A {@code Last-Modified} date is not used, it only
+   * has a one second resolution so a file changed twice in that second would be resumed.
+   */
+  @Nullable
+  static String validatorOf(HttpResponse response) {
+    String entityTag = response.header("etag");
+    return entityTag != null && !entityTag.startsWith("W/") ? entityTag : null;
+  }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import io.github.gonalez.uptodatechecker.concurrent.LegacyFutures;
+import io.github.gonalez.uptodatechecker.http.HttpClient;
+import io.github.gonalez.uptodatechecker.http.HttpRequest;
+import io.github.gonalez.uptodatechecker.http.HttpResponse;
+import io.github.gonalez.uptodatechecker.http.HttpResponseException;
+
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link UpdateDownloader} that splits large files in {@link
+ * UpdateDownloaderRequest#segmentSize() segments} and downloads several of them at once over
+ * separate connections, writing each one at its offset of a preallocated file. Some mirrors cap the
+ * throughput of a single connection, so this can be much faster than a single stream.
+ *
+ * <p>A first request for the first byte of the file tells whether the server supports range
+ * requests and how large the file is. If it doesn't, or the file fits in a single segment, the
+ * download is left to a {@link FileUpdateDownloader}.
+ *
+ * <p>The segments are downloaded in the given executor, which should be able to run {@link
+ * UpdateDownloaderRequest#parallelism()} tasks at once for them to be downloaded in parallel.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class SegmentedUpdateDownloader implements UpdateDownloader {
+  private final Executor executor;
+  private final HttpClient httpClient;
+  private final Options options;
+  private final FileUpdateDownloader fileUpdateDownloader;
+
+  public SegmentedUpdateDownloader(Executor executor, HttpClient httpClient, Options options) {
+    this.executor = checkNotNull(executor);
+    this.httpClient = checkNotNull(httpClient);
+    this.options = checkNotNull(options);
+    this.fileUpdateDownloader = new FileUpdateDownloader(executor, httpClient, options);
+  }
+
+  @Override
+  public ListenableFuture<Boolean> downloadUpdate(UpdateDownloaderRequest request) {
+    return FileUpdateDownloader.skipIfMatching(request, () -> fetch(request), executor);
+  }
+
+  private ListenableFuture<Boolean> fetch(UpdateDownloaderRequest request) {
+    HttpRequest probeRequest =
+        HttpRequest.newBuilder()
+            .setUrl(request.urlToDownload())
+            .setOptions(options)
+            .setHeaders(ImmutableMap.of("Range", "bytes=0-0"))
+            .setStreaming(true)
+            .build();
+    ListenableFuture<HttpResponse> probeResponse =
+        LegacyFutures.catchingAsync(
+            httpClient.requestAsync(probeRequest),
+            HttpResponseException.class,
+            e ->
+                // An empty file has no first byte, let the whole file be downloaded
+                e.responseCode() == 416
+                    ? Futures.immediateFuture(null)
+                    : Futures.immediateFailedFuture(e),
+            executor);
+    return LegacyFutures.transformAsync(
+        probeResponse,
+        probe -> {
+          if (probe == null) {
+            return fileUpdateDownloader.fetch(request);
+          }
+          long length = -1;
+          String validator;
+          try (HttpResponse response = probe) {
+            if (response.responseCode() == 206) {
+              length = contentRangeLength(response);
+              // Read the single byte so the connection can be reused
+              response.body();
+            }
+            validator = PartialDownload.validatorOf(response);
+          }
+          if (length <= request.segmentSize()) {
+            return fileUpdateDownloader.fetch(request);
+          }
+          return new Download(request, length, validator).start();
+        },
+        executor);
+  }
+
+  /** @return the complete length from the {@code Content-Range} header, or {@code -1}. */
+  private static long contentRangeLength(HttpResponse response) {
+    // bytes 0-0/1234
+    String contentRange = response.header("content-range");
+    if (contentRange == null) {
+      return -1;
+    }
+    int slash = contentRange.indexOf('/');
+    try {
+      return slash == -1 ? -1 : Long.parseLong(contentRange.substring(slash + 1).trim());
+    } catch (NumberFormatException e) {
+      // The length is unknown, "*"
+      return -1;
+    }
+  }
+
+  /** A range of bytes of the file. */
+  private static final class Segment {
+    private final long start;
+    private final long length;
+    // Only touched by the task downloading the segment
+    private long written;
+
+    Segment(long start, long length) {
+      this.start = start;
+      this.length = length;
+    }
+  }
+
+  /** The download of a single file, split in segments. */
+  private final class Download {
+    private final UpdateDownloaderRequest request;
+    private final long length;
+    @Nullable private final String validator;
+    private final PartialDownload partialDownload;
+    private final Queue<Segment> pendingSegments = new ConcurrentLinkedQueue<>();
+
+    private FileChannel fileChannel;
+    // Once a segment fails, no more segments are started
+    private volatile boolean failed;
+
+    Download(UpdateDownloaderRequest request, long length, @Nullable String validator) {
+      this.request = request;
+      this.length = length;
+      this.validator = validator;
+      this.partialDownload = PartialDownload.of(Paths.get(request.downloadPath()));
+      for (long start = 0; start < length; start += request.segmentSize()) {
+        pendingSegments.add(new Segment(start, Math.min(request.segmentSize(), length - start)));
+      }
+    }
+
+    ListenableFuture<Boolean> start() throws IOException {
+      fileChannel = partialDownload.preallocate(length);
+      int workers = Math.max(1, Math.min(request.parallelism(), pendingSegments.size()));
+      List<ListenableFuture<Boolean>> downloads = new ArrayList<>(workers);
+      for (int i = 0; i < workers; i++) {
+        downloads.add(LegacyFutures.callAsync(this::downloadNextSegment, executor));
+      }
+      ListenableFuture<Boolean> download =
+          Futures.whenAllComplete(downloads).callAsync(() -> finish(downloads), executor);
+      download.addListener(
+          () -> {
+            if (download.isCancelled()) {
+              // Not finished, the partial file is discarded once no segment writes to it
+              Futures.whenAllComplete(downloads).call(this::discard, executor);
+            }
+          },
+          MoreExecutors.directExecutor());
+      return download;
+    }
+
+    private Void discard() throws IOException {
+      fileChannel.close();
+      partialDownload.discard();
+      return null;
+    }
+
+    /** Downloads the pending segments one after another, until there are none left. */
+    private ListenableFuture<Boolean> downloadNextSegment() {
+      Segment segment = pendingSegments.poll();
+      if (segment == null || failed) {
+        return Futures.immediateFuture(true);
+      }
+      ListenableFuture<Boolean> download =
+          LegacyFutures.transformAsync(
+              downloadSegment(segment, 1), unused -> downloadNextSegment(), executor);
+      return LegacyFutures.catchingAsync(
+          download,
+          Exception.class,
+          e -> {
+            failed = true;
+            return Futures.immediateFailedFuture(e);
+          },
+          executor);
+    }
+
+    private ListenableFuture<Boolean> downloadSegment(Segment segment, int attempt) {
+      long offset = segment.start + segment.written;
+      Map<String, String> headers =
+          validator == null
+              ? ImmutableMap.of("Range", rangeOf(segment))
+              : ImmutableMap.of("Range", rangeOf(segment), "If-Range", validator);
+      ListenableFuture<Boolean> download =
+          LegacyFutures.transformAsync(
+              httpClient.requestAsync(
+                  HttpRequest.newBuilder()
+                      .setUrl(request.urlToDownload())
+                      .setOptions(options)
+                      .setHeaders(headers)
+                      .setStreaming(true)
+                      .build()),
+              httpResponse -> {
+                try (HttpResponse response = httpResponse) {
+                  if (response.responseCode() != 206
+                      || FileUpdateDownloader.contentRangeStart(response.header("content-range"))
+                          != offset) {
+                    // The file changed since we started
+                    throw new ProtocolException(
+                        "Unexpected response to a range request: " + response.responseCode());
+                  }
+                  writeSegment(segment, response.bodyChannel());
+                }
+                return Futures.immediateFuture(true);
+              },
+              executor);
+      return LegacyFutures.catchingAsync(
+          download,
+          Exception.class,
+          e ->
+              !failed
+                      && attempt < request.maxAttempts()
+                      && FileUpdateDownloader.isRetriable(e)
+                  ? LegacyFutures.scheduleAsync(
+                      () -> downloadSegment(segment, attempt + 1),
+                      FileUpdateDownloader.retryDelayMillis(request, attempt),
+                      TimeUnit.MILLISECONDS,
+                      executor)
+                  : Futures.immediateFailedFuture(e),
+          executor);
+    }
+
+    /** Writes the body at the segment offset, without writing past the end of the segment. */
+    private void writeSegment(Segment segment, ReadableByteChannel body) throws IOException {
+      long transferred;
+      while (segment.written < segment.length
+          && (transferred =
+                  fileChannel.transferFrom(
+                      body, segment.start + segment.written, segment.length - segment.written))
+              > 0) {
+        segment.written += transferred;
+      }
+      if (segment.written != segment.length) {
+        throw new EOFException("Connection closed before the end of the segment");
+      }
+    }
+
+    private String rangeOf(Segment segment) {
+      long end = segment.start + segment.length - 1;
+      return "bytes=" + (segment.start + segment.written) + "-" + end;
+    }
+
+    private ListenableFuture<Boolean> finish(List<ListenableFuture<Boolean>> downloads)
+        throws IOException {
+      fileChannel.close();
+      for (ListenableFuture<Boolean> download : downloads) {
+        try {
+          Futures.getDone(download);
+        } catch (ExecutionException e) {
+          partialDownload.discard();
+          return Futures.immediateFailedFuture(e.getCause());
+        } catch (CancellationException e) {
+          partialDownload.discard();
+          return Futures.immediateCancelledFuture();
+        }
+      }
+      try {
+        // The segments arrive out of order, so the file can only be digested once complete
+        DownloadVerifier.of(request).verify(partialDownload.partialPath(), length);
+      } catch (UpToDateCheckerException e) {
+        partialDownload.discard();
+        return Futures.immediateFailedFuture(e);
+      }
+      partialDownload.complete();
+      return Futures.immediateFuture(true);
+    }
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.Optional;
+
+/**
+ * A {@link VersionProvider} that finds the latest versions along with the validators of the
+ * responses they were found in, such as their {@code ETag}. The checker keeps them in its {@link
+ * VersionSnapshotStore}, so the provider can ask whether the latest version changed instead of
+ * finding it again, even right after a restart.
+ *
+ * @param <Context> type of context that this provider uses to get the latest version.
+ */
+public interface SnapshotVersionProvider<Context extends VersionProviderContext>
+    extends VersionProvider<Context> {
+  /**
+   * Finds the latest version of the given context. If a last known snapshot is given, its
+   * validators can be used to only confirm that its latest version is still the latest.
+   *
+   * @return a {@code ListenableFuture<VersionSnapshot>} containing the latest version of the given
+   *     context and the validators to ask for it again with.
+   */
+  ListenableFuture<VersionSnapshot> findLatestSnapshot(
+      Context context, Optional<VersionSnapshot> lastKnownSnapshot);
+}
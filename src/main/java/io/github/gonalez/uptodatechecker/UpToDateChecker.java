@@ -15,9 +15,13 @@
  */
 package io.github.gonalez.uptodatechecker;
 
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ListenableFuture;
 
 import javax.annotation.CheckReturnValue;
+import java.util.Collection;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -39,6 +43,13 @@ public interface UpToDateChecker {
   <Context extends VersionProviderContext> ListenableFuture<Void> addVersionProvider(
       VersionProvider<Context> versionProvider);
 
+  /**
+   * Returns the stats of the latest versions cached for each version provider, by {@link
+   * VersionProvider#name() name}. The latest versions are only cached if the checker was built
+   * with {@link VersionCacheOptions}, otherwise this is empty.
+   */
+  ImmutableMap<String, CacheStats> cacheStats();
+
   /**
    * The {@link CheckUpToDateOperation operation} on the fluent api that checks if a {@link
    * CheckUpToDateRequest} is up-to-date, it also provides other {@link DownloadingAndSchedulingOperation
@@ -57,6 +68,19 @@ public interface UpToDateChecker {
   @CheckReturnValue
   CheckingUpToDateWithDownloadingAndScheduling checkWithDownloadingAndScheduling();
 
+  /**
+   * Checks if each of the given requests is up-to-date. The requests of a {@link
+   * BatchVersionProvider} are grouped, so the latest versions of all of them are found with a
+   * single call to {@link BatchVersionProvider#findLatestVersions}, the requests of any other
+   * provider are checked one by one, as with {@link #checkWithDownloadingAndScheduling()}.
+   *
+   * @return the response of each request, in the order they were given. Equal requests are each
+   *     given their own response.
+   */
+  @CheckReturnValue
+  ImmutableList<ListenableFuture<CheckUpToDateResponse>> checkAll(
+      Collection<CheckUpToDateRequest> requests);
+
   /**
    * Functions to be called when we got the response for {@link
    * #checkWithDownloadingAndScheduling()}.
@@ -73,6 +97,13 @@ public interface UpToDateChecker {
 
     /** Called if any error occurs. */
     default void onError(Throwable throwable) {}
+
+    /**
+     * Called if asking for the latest version again fails after a request with a {@link
+     * CheckUpToDateRequest#optionalSoftTtl() soft ttl} was answered with a stale version. The
+     * request already succeeded, so {@link #onError(Throwable)} is not called.
+     */
+    default void onRevalidationError(Throwable throwable) {}
   }
 
   /** Operation that allows a combination of two actions to be performed together. */
@@ -18,6 +18,7 @@ package io.github.gonalez.uptodatechecker;
 import static com.google.common.base.Preconditions.checkNotNull;
 
 import com.google.common.collect.ImmutableList;
+import io.github.gonalez.uptodatechecker.concurrent.VirtualThreads;
 
 import java.util.Optional;
 import java.util.concurrent.Executor;
@@ -34,16 +35,58 @@ public class UpToDateCheckerBuilder {
       <? extends VersionProviderContext>> versionProviderBuilder = ImmutableList.builder();
   private Optional<UpdateDownloader> optionalUpdateDownloader = Optional.empty();
   private BiFunction<String, String, Boolean> versionMatchStrategy = String::equals;
+  private Optional<VersionCacheOptions> optionalVersionCacheOptions = Optional.empty();
+  private Optional<VersionSnapshotStore> optionalVersionSnapshotStore = Optional.empty();
 
   private Executor executor;
+  private Executor ioExecutor;
+  private Executor computeExecutor;
+  private Executor callbackExecutor;
 
   public UpToDateCheckerBuilder() {}
 
+  /** Sets the executor for the stages which were not given an executor of their own. */
   public UpToDateCheckerBuilder setExecutor(Executor executor) {
     this.executor = executor;
     return this;
   }
 
+  /**
+   * Sets the executor to ask the version providers in, and to start the downloads in, see {@link
+   * UpToDateCheckerExecutors#ioExecutor()}.
+   */
+  public UpToDateCheckerBuilder setIoExecutor(Executor ioExecutor) {
+    this.ioExecutor = ioExecutor;
+    return this;
+  }
+
+  /**
+   * Sets the executor to compare the versions in, see {@link
+   * UpToDateCheckerExecutors#computeExecutor()}.
+   */
+  public UpToDateCheckerBuilder setComputeExecutor(Executor computeExecutor) {
+    this.computeExecutor = computeExecutor;
+    return this;
+  }
+
+  /**
+   * Asks the version providers and starts the downloads in a new virtual thread for each check, so
+   * any number of checks can wait for a server at once without tuning a pool. Sets the {@link
+   * #setIoExecutor io executor}.
+   *
+   * @throws UnsupportedOperationException if the runtime doesn't support virtual threads, they
+   *     need Java 21 or newer, see {@link VirtualThreads#isSupported()}.
+   */
+  public UpToDateCheckerBuilder useVirtualThreads() {
+    return setIoExecutor(VirtualThreads.newVirtualThreadPerTaskExecutor());
+  }
+
+  /** Sets the executor to invoke the callbacks of the requests in. */
+  public UpToDateCheckerBuilder setCallbackExecutor(Executor callbackExecutor) {
+    this.callbackExecutor = callbackExecutor;
+    return this;
+  }
+
   public UpToDateCheckerBuilder setOptionalUpdateDownloader(
       Optional<UpdateDownloader> optionalUpdateDownloader) {
     this.optionalUpdateDownloader = optionalUpdateDownloader;
@@ -56,6 +99,27 @@ public class UpToDateCheckerBuilder {
     return this;
   }
 
+  /**
+   * Sets the options to cache the latest versions found by the version providers with, see {@link
+   * CachingVersionProvider}. Nothing is cached by default.
+   */
+  public UpToDateCheckerBuilder setOptionalVersionCacheOptions(
+      Optional<VersionCacheOptions> optionalVersionCacheOptions) {
+    this.optionalVersionCacheOptions = optionalVersionCacheOptions;
+    return this;
+  }
+
+  /**
+   * Sets the store to keep the last known latest versions in across restarts. They are loaded when
+   * the checker is built, so requests with a {@link CheckUpToDateRequest#optionalSoftTtl() soft
+   * ttl} can be answered right away after a start.
+   */
+  public UpToDateCheckerBuilder setOptionalVersionSnapshotStore(
+      Optional<VersionSnapshotStore> optionalVersionSnapshotStore) {
+    this.optionalVersionSnapshotStore = optionalVersionSnapshotStore;
+    return this;
+  }
+
   public <T extends VersionProviderContext> UpToDateCheckerBuilder addVersionProvider(
       VersionProvider<T> versionProvider) {
     versionProviderBuilder.add(versionProvider);
@@ -65,12 +129,25 @@ public class UpToDateCheckerBuilder {
   public UpToDateChecker build() {
     checkNotNull(optionalUpdateDownloader);
     checkNotNull(versionMatchStrategy);
-    checkNotNull(executor);
+    checkNotNull(optionalVersionCacheOptions);
+    checkNotNull(optionalVersionSnapshotStore);
+    UpToDateCheckerExecutors executors =
+        UpToDateCheckerExecutors.newBuilder()
+            .setIoExecutor(checkNotNull(ioExecutor != null ? ioExecutor : executor))
+            .setComputeExecutor(
+                checkNotNull(computeExecutor != null ? computeExecutor : executor))
+            .setCallbackExecutor(
+                checkNotNull(callbackExecutor != null ? callbackExecutor : executor))
+            .build();
 
     ImmutableList<VersionProvider<? extends VersionProviderContext>> versionProviders =
         versionProviderBuilder.build();
     UpToDateChecker upToDateChecker = new UpToDateCheckerImpl(
-        executor, optionalUpdateDownloader, versionMatchStrategy);
+        executors,
+        optionalUpdateDownloader,
+        versionMatchStrategy,
+        optionalVersionCacheOptions,
+        optionalVersionSnapshotStore);
     for (VersionProvider<? extends VersionProviderContext> versionProvider : versionProviders) {
       if (versionProvider != null) {
         upToDateChecker.addVersionProvider(versionProvider);
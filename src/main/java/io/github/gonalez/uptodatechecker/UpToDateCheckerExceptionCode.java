@@ -32,7 +32,13 @@ public enum UpToDateCheckerExceptionCode {
   FAIL_TO_PARSE_VERSION_CODE(302),
 
   // Version related errors
-  FAIL_TO_GET_LATEST_VERSION_FROM_CONTEXT(500);
+  FAIL_TO_GET_LATEST_VERSION_FROM_CONTEXT(500),
+
+  // Download related errors
+  FAIL_TO_VERIFY_DOWNLOAD_CODE(600),
+
+  // Deadline related errors
+  DEADLINE_EXCEEDED_CODE(700);
 
   // Mapping of all exception code values by its {@code errorCode}
   private static final ImmutableMap<Integer, UpToDateCheckerExceptionCode> CODES_TO_EXCEPTION_CODE;
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.concurrent.Executor;
+
+/**
+ * The executors the stages of a check run in. Blocking calls are kept apart from the callbacks, so
+ * a slow server does not delay the delivery of the responses of other checks. Trivial stages run
+ * in the thread which completed the previous stage.
+ */
+@AutoValue
+@Immutable
+public abstract class UpToDateCheckerExecutors {
+  /** @return a new builder to create a {@link UpToDateCheckerExecutors}. */
+  public static Builder newBuilder() {
+    return new AutoValue_UpToDateCheckerExecutors.Builder();
+  }
+
+  /** @return executors which run every stage in the given executor. */
+  public static UpToDateCheckerExecutors of(Executor executor) {
+    return newBuilder()
+        .setIoExecutor(executor)
+        .setComputeExecutor(executor)
+        .setCallbackExecutor(executor)
+        .build();
+  }
+
+  /**
+   * Returns the executor to ask the version providers for the latest versions in, and to start
+   * the downloads and keep the versions found in. The tasks may block on I/O.
+   */
+  public abstract Executor ioExecutor();
+
+  /**
+   * Returns the executor to compare the versions in, with the version match strategy or the
+   * version constraint of the request.
+   */
+  public abstract Executor computeExecutor();
+
+  /** @return the executor to invoke the callbacks of the requests in. */
+  public abstract Executor callbackExecutor();
+
+  /** Builder to create {@link UpToDateCheckerExecutors}s. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+    /** Sets the executor for the tasks which may block on I/O. */
+    public abstract Builder setIoExecutor(Executor ioExecutor);
+
+    /** Sets the executor to compare the versions in. */
+    public abstract Builder setComputeExecutor(Executor computeExecutor);
+
+    /** Sets the executor to invoke the callbacks in. */
+    public abstract Builder setCallbackExecutor(Executor callbackExecutor);
+
+    /** @return a new {@link UpToDateCheckerExecutors} based from this builder. */
+    public abstract UpToDateCheckerExecutors build();
+  }
+}
@@ -17,20 +17,41 @@ package io.github.gonalez.uptodatechecker;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import io.github.gonalez.uptodatechecker.concurrent.Deadline;
 import io.github.gonalez.uptodatechecker.concurrent.LegacyFutures;
+import io.github.gonalez.uptodatechecker.concurrent.SingleFlight;
+import io.github.gonalez.uptodatechecker.version.VersionConstraint;
 
-import javax.annotation.concurrent.NotThreadSafe;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * A basic, default implementation for {@link UpToDateChecker}.
@@ -38,26 +59,100 @@ import java.util.function.Function;
  * <p>To determine if something is up-to-date or not, we apply the {@code versionMatchStrategy}
  * function to the given request {@link CheckUpToDateRequest#currentVersion() current version} and
  * the latest version of the request determined by the {@link CheckUpToDateRequest#context()}}.
+ *
+ * <p>Concurrent checks for equal contexts of the same provider are coalesced, the provider is asked
+ * only once for the latest version and all the checks share its result.
  */
 @SuppressWarnings("UnstableApiUsage")
-@NotThreadSafe
+@ThreadSafe
 public class UpToDateCheckerImpl implements UpToDateChecker {
+  // The most contexts whose last known latest version is kept, the least recently used are evicted
+  private static final long MAX_LAST_KNOWN_VERSIONS = 10_000;
+
+  private static final Logger logger = Logger.getLogger(UpToDateCheckerImpl.class.getName());
+
   private final Object lock = new Object();
 
-  private final Executor executor;
+  private final Executor ioExecutor;
+  private final Executor computeExecutor;
+  private final Executor callbackExecutor;
   private final Optional<UpdateDownloader> optionalUpdateDownloader;
   private final BiFunction<String, String, Boolean> versionMatchStrategy;
+  private final Optional<VersionCacheOptions> optionalVersionCacheOptions;
+  private final Optional<VersionSnapshotStore> optionalVersionSnapshotStore;
+
+  // Copied on write, so providers are resolved without locking
+  private volatile ProviderRegistry providerRegistry = new ProviderRegistry(ImmutableList.of());
 
-  private final ArrayList<VersionProvider<? extends VersionProviderContext>>
-      providers = new ArrayList<>();
+  // Concurrent checks of the same context share a single lookup of the latest version
+  private final SingleFlight<Map.Entry<VersionProvider<?>, VersionProviderContext>, VersionSnapshot>
+      latestVersionFlights = new SingleFlight<>();
+
+  // The last latest version found for each context, for requests with a soft ttl
+  // Keyed by the snapshot key of the context, or by its provider and context if it has none
+  private final Cache<Object, VersionSnapshot> lastKnownVersions =
+      CacheBuilder.newBuilder().maximumSize(MAX_LAST_KNOWN_VERSIONS).build();
 
   public UpToDateCheckerImpl(
       Executor executor,
       Optional<UpdateDownloader> optionalUpdateDownloader,
       BiFunction<String, String, Boolean> versionMatchStrategy) {
-    this.executor = checkNotNull(executor);
+    this(
+        executor,
+        optionalUpdateDownloader,
+        versionMatchStrategy,
+        Optional.empty(),
+        Optional.empty());
+  }
+
+  /**
+   * Creates a UpToDateCheckerImpl that caches the latest versions found by the version providers
+   * with the given options, if present, and keeps them in the given store, if present. The last
+   * known versions are loaded from the store right away, and answer the requests whose version
+   * provider fails.
+   *
+   * @throws UncheckedIOException if the store could not be loaded.
+   */
+  public UpToDateCheckerImpl(
+      Executor executor,
+      Optional<UpdateDownloader> optionalUpdateDownloader,
+      BiFunction<String, String, Boolean> versionMatchStrategy,
+      Optional<VersionCacheOptions> optionalVersionCacheOptions,
+      Optional<VersionSnapshotStore> optionalVersionSnapshotStore) {
+    this(
+        UpToDateCheckerExecutors.of(checkNotNull(executor)),
+        optionalUpdateDownloader,
+        versionMatchStrategy,
+        optionalVersionCacheOptions,
+        optionalVersionSnapshotStore);
+  }
+
+  /**
+   * Creates a UpToDateCheckerImpl which runs each stage of the checks in the matching executor of
+   * the given executors.
+   *
+   * @throws UncheckedIOException if the store could not be loaded.
+   */
+  public UpToDateCheckerImpl(
+      UpToDateCheckerExecutors executors,
+      Optional<UpdateDownloader> optionalUpdateDownloader,
+      BiFunction<String, String, Boolean> versionMatchStrategy,
+      Optional<VersionCacheOptions> optionalVersionCacheOptions,
+      Optional<VersionSnapshotStore> optionalVersionSnapshotStore) {
+    this.ioExecutor = executors.ioExecutor();
+    this.computeExecutor = executors.computeExecutor();
+    this.callbackExecutor = executors.callbackExecutor();
     this.optionalUpdateDownloader = checkNotNull(optionalUpdateDownloader);
     this.versionMatchStrategy = checkNotNull(versionMatchStrategy);
+    this.optionalVersionCacheOptions = checkNotNull(optionalVersionCacheOptions);
+    this.optionalVersionSnapshotStore = checkNotNull(optionalVersionSnapshotStore);
+    if (optionalVersionSnapshotStore.isPresent()) {
+      try {
+        lastKnownVersions.putAll(optionalVersionSnapshotStore.get().load());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
   }
 
   @Override
@@ -66,37 +161,345 @@ public class UpToDateCheckerImpl implements UpToDateChecker {
     return new CheckingUpToDateWithDownloadingAndSchedulingImpl();
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * <p>The provider is registered before this returns, so the returned future is already done.
+   */
   @Override
   public <Context extends VersionProviderContext> ListenableFuture<Void> addVersionProvider(
       VersionProvider<Context> versionProvider) {
-    return LegacyFutures
-        .call(() -> {
-          synchronized (lock) {
-            providers.add(versionProvider);
+    checkNotNull(versionProvider);
+    VersionProvider<Context> provider =
+        optionalVersionCacheOptions.isPresent()
+            ? CachingVersionProvider.of(versionProvider, optionalVersionCacheOptions.get())
+            : versionProvider;
+    synchronized (lock) {
+      providerRegistry =
+          new ProviderRegistry(
+              ImmutableList.<VersionProvider<? extends VersionProviderContext>>builder()
+                  .addAll(providerRegistry.providers)
+                  .add(provider)
+                  .build());
+    }
+    return Futures.immediateFuture(null);
+  }
+
+  @Override
+  public ImmutableMap<String, CacheStats> cacheStats() {
+    Map<String, CacheStats> cacheStats = new LinkedHashMap<>();
+    for (VersionProvider<?> versionProvider : providerRegistry.providers) {
+      if (versionProvider instanceof CachingVersionProvider) {
+        // Providers with the same name share an entry
+        cacheStats.merge(
+            versionProvider.name(),
+            ((CachingVersionProvider<?>) versionProvider).stats(),
+            CacheStats::plus);
+      }
+    }
+    return ImmutableMap.copyOf(cacheStats);
+  }
+
+  @Override
+  public ImmutableList<ListenableFuture<CheckUpToDateResponse>> checkAll(
+      Collection<CheckUpToDateRequest> requests) {
+    ImmutableList<CheckUpToDateRequest> requestList = ImmutableList.copyOf(requests);
+    // Keep the order of the requests, the batched ones are filled in first
+    List<ListenableFuture<CheckUpToDateResponse>> responses =
+        new ArrayList<>(Collections.nCopies(requestList.size(), null));
+    Map<BatchVersionProvider<VersionProviderContext>, List<Integer>> batches =
+        new LinkedHashMap<>();
+    for (int i = 0; i < requestList.size(); i++) {
+      CheckUpToDateRequest request = requestList.get(i);
+      VersionProvider<VersionProviderContext> versionProvider =
+          getVersionProvider(request.context().getClass());
+      if (versionProvider instanceof BatchVersionProvider && !isAnsweredByLastKnown(request)) {
+        batches
+            .computeIfAbsent(
+                (BatchVersionProvider<VersionProviderContext>) versionProvider,
+                unused -> new ArrayList<>())
+            .add(i);
+      }
+    }
+    for (Map.Entry<BatchVersionProvider<VersionProviderContext>, List<Integer>> batch :
+        batches.entrySet()) {
+      if (batch.getValue().size() > 1) {
+        checkBatch(batch.getKey(), requestList, batch.getValue(), responses);
+      }
+    }
+    for (int i = 0; i < requestList.size(); i++) {
+      if (responses.get(i) == null) {
+        responses.set(
+            i, checkWithDownloadingAndScheduling().requesting(requestList.get(i)).response());
+      }
+    }
+    return ImmutableList.copyOf(responses);
+  }
+
+  /** @return whether the request would be answered with the last known version of its context. */
+  private boolean isAnsweredByLastKnown(CheckUpToDateRequest request) {
+    if (!request.optionalSoftTtl().isPresent()) {
+      return false;
+    }
+    VersionProvider<?> versionProvider = getVersionProvider(request.context().getClass());
+    return lastKnownVersions.asMap().containsKey(
+        lastKnownKeyOf(Maps.immutableEntry(versionProvider, request.context())));
+  }
+
+  /**
+   * Checks the requests at the given indexes with a single call to the given provider, setting
+   * their responses at the same indexes.
+   */
+  private void checkBatch(
+      BatchVersionProvider<VersionProviderContext> versionProvider,
+      List<CheckUpToDateRequest> requests,
+      List<Integer> indexes,
+      List<ListenableFuture<CheckUpToDateResponse>> responses) {
+    ImmutableSet.Builder<VersionProviderContext> contexts = ImmutableSet.builder();
+    for (int index : indexes) {
+      contexts.add(requests.get(index).context());
+    }
+    ListenableFuture<ImmutableMap<VersionProviderContext, String>> latestVersions =
+        LegacyFutures.callAsync(
+            () -> versionProvider.findLatestVersions(contexts.build()), ioExecutor);
+    Futures.addCallback(
+        latestVersions,
+        new FutureCallback<ImmutableMap<VersionProviderContext, String>>() {
+          @Override
+          public void onSuccess(ImmutableMap<VersionProviderContext, String> versions) {
+            for (Map.Entry<VersionProviderContext, String> version : versions.entrySet()) {
+              Map.Entry<VersionProvider<?>, VersionProviderContext> key =
+                  Maps.immutableEntry(versionProvider, version.getKey());
+              // Only the version is known, keep the validators found for it by a single check
+              VersionSnapshot lastKnownVersion =
+                  lastKnownVersions.getIfPresent(lastKnownKeyOf(key));
+              rememberLatestVersion(
+                  key,
+                  lastKnownVersion != null
+                          && lastKnownVersion.latestVersion().equals(version.getValue())
+                      ? lastKnownVersion
+                      : snapshotOf(version.getValue()));
+            }
           }
-          return null;
-        }, executor);
+
+          @Override
+          public void onFailure(Throwable t) {}
+        },
+        ioExecutor);
+    for (int index : indexes) {
+      CheckUpToDateRequest request = requests.get(index);
+      // Cancelling one of the requests, or its deadline expiring, must not fail the others
+      ListenableFuture<String> latestVersionFuture =
+          LegacyFutures.transformAsync(
+              Futures.nonCancellationPropagating(latestVersions),
+              versions -> {
+                String latestVersion = versions.get(request.context());
+                if (latestVersion == null) {
+                  return Futures.immediateFailedFuture(
+                      UpToDateCheckerExceptionCode.FAIL_TO_GET_LATEST_VERSION_FROM_CONTEXT
+                          .toException());
+                }
+                return Futures.immediateFuture(latestVersion);
+              },
+              MoreExecutors.directExecutor());
+      ListenableFuture<CheckUpToDateResponse> responseFuture =
+          LegacyFutures.transform(
+              withLastKnownVersion(
+                  request,
+                  latestVersionFuture,
+                  lastKnownVersions.getIfPresent(
+                      lastKnownKeyOf(Maps.immutableEntry(versionProvider, request.context())))),
+              latestVersion -> responseOf(request, latestVersion),
+              computeExecutor);
+      responses.set(
+          index, withCallback(request, withDeadline(responseFuture, request.optionalDeadline())));
+    }
+  }
+
+  /**
+   * Returns a future with the result of the given response future, once the callback of the
+   * given request, if any, was invoked with it in the callback executor.
+   */
+  private ListenableFuture<CheckUpToDateResponse> withCallback(
+      CheckUpToDateRequest request, ListenableFuture<CheckUpToDateResponse> responseFuture) {
+    if (!request.optionalCallback().isPresent()) {
+      return responseFuture;
+    }
+    Callback callback = request.optionalCallback().get();
+    return LegacyFutures.catchingAsync(
+        LegacyFutures.transform(
+            responseFuture,
+            response -> {
+              notifyCallback(request, response);
+              return response;
+            },
+            callbackExecutor),
+        Exception.class,
+        cause -> {
+          callback.onError(cause);
+          return Futures.immediateFailedFuture(cause);
+        },
+        callbackExecutor);
+  }
+
+  /**
+   * Returns a future with the result of the given future, that fails with a {@link
+   * UpToDateCheckerExceptionCode#DEADLINE_EXCEEDED_CODE} exception if the given deadline expires
+   * first.
+   */
+  private <V> ListenableFuture<V> withDeadline(
+      ListenableFuture<V> future, Optional<Deadline> optionalDeadline) {
+    if (!optionalDeadline.isPresent()) {
+      return future;
+    }
+    Deadline deadline = optionalDeadline.get();
+    return LegacyFutures.catchingAsync(
+        LegacyFutures.withDeadline(future, deadline),
+        TimeoutException.class,
+        e ->
+            Futures.immediateFailedFuture(
+                new UpToDateCheckerException(
+                    "Deadline exceeded: " + deadline,
+                    e,
+                    UpToDateCheckerExceptionCode.DEADLINE_EXCEEDED_CODE)),
+        MoreExecutors.directExecutor());
   }
 
   private <Context extends VersionProviderContext> VersionProvider<Context> getVersionProvider(
       Class<? extends VersionProviderContext> contextClass) {
-    synchronized (lock) {
-      for (VersionProvider<? extends VersionProviderContext> api : providers) {
-        if (api.contextType().isAssignableFrom(contextClass)) {
-          @SuppressWarnings("unchecked") // safe
-          VersionProvider<Context> latestVersionApi =
-              (VersionProvider<Context>) api;
-          return latestVersionApi;
+    @SuppressWarnings("unchecked") // safe
+    VersionProvider<Context> versionProvider =
+        (VersionProvider<Context>) providerRegistry.get(contextClass).orElse(null);
+    return versionProvider;
+  }
+
+  /**
+   * The registered providers, with the provider resolved for each context class. A new registry
+   * replaces the previous one when a provider is added, so the resolutions of the previous one are
+   * never used again.
+   */
+  private static final class ProviderRegistry
+      extends ClassValue<Optional<VersionProvider<? extends VersionProviderContext>>> {
+    private final ImmutableList<VersionProvider<? extends VersionProviderContext>> providers;
+
+    ProviderRegistry(ImmutableList<VersionProvider<? extends VersionProviderContext>> providers) {
+      this.providers = providers;
+    }
+
+    @Override
+    protected Optional<VersionProvider<? extends VersionProviderContext>> computeValue(
+        Class<?> contextClass) {
+      for (VersionProvider<? extends VersionProviderContext> provider : providers) {
+        if (provider.contextType().isAssignableFrom(contextClass)) {
+          return Optional.of(provider);
         }
       }
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Returns the key of the snapshots of the given provider and context in the store, stable across
+   * starts, or {@code null} if the context has no {@link VersionProviderContext#key() key}.
+   */
+  @Nullable
+  private static String snapshotKeyOf(Map.Entry<VersionProvider<?>, VersionProviderContext> key) {
+    String contextKey = key.getValue().key();
+    return contextKey == null ? null : key.getKey().name() + ':' + contextKey;
+  }
+
+  /** @return the key of the last known version of the given provider and context. */
+  private static Object lastKnownKeyOf(Map.Entry<VersionProvider<?>, VersionProviderContext> key) {
+    String snapshotKey = snapshotKeyOf(key);
+    return snapshotKey == null ? key : snapshotKey;
+  }
+
+  private CheckUpToDateResponse responseOf(CheckUpToDateRequest request, String latestVersion) {
+    Optional<VersionConstraint> optionalVersionConstraint = request.optionalVersionConstraint();
+    boolean isUpToDate =
+        optionalVersionConstraint.isPresent()
+            ? optionalVersionConstraint.get().isUpToDate(request.currentVersion(), latestVersion)
+            : versionMatchStrategy.apply(request.currentVersion(), latestVersion);
+    return CheckUpToDateResponse.newBuilder()
+        .setLatestVersion(latestVersion)
+        .setIsUpToDate(isUpToDate)
+        .build();
+  }
+
+  /**
+   * Returns a future with the result of the given latest version future or, if it fails, with the
+   * given last known version if there is one. The last known version is only used if the checker
+   * has a store or the request has a soft ttl, otherwise the failure is reported as is. A
+   * cancellation is never answered with the last known version.
+   */
+  private ListenableFuture<String> withLastKnownVersion(
+      CheckUpToDateRequest request,
+      ListenableFuture<String> latestVersionFuture,
+      @Nullable VersionSnapshot lastKnownVersion) {
+    if (lastKnownVersion == null
+        || (!optionalVersionSnapshotStore.isPresent() && !request.optionalSoftTtl().isPresent())) {
+      return latestVersionFuture;
+    }
+    return LegacyFutures.catchingAsync(
+        latestVersionFuture,
+        Exception.class,
+        cause ->
+            cause instanceof CancellationException
+                ? Futures.immediateFailedFuture(cause)
+                : Futures.immediateFuture(lastKnownVersion.latestVersion()),
+        MoreExecutors.directExecutor());
+  }
+
+  private void notifyCallback(CheckUpToDateRequest request, CheckUpToDateResponse response) {
+    Optional<Callback> optionalCallback = request.optionalCallback();
+    if (optionalCallback.isPresent()) {
+      optionalCallback.get().onSuccess(response);
+      if (response.isUpToDate()) {
+        optionalCallback.get().onUpToDate(response);
+      } else {
+        optionalCallback.get().onNotUpToDate(response);
+      }
+    }
+  }
+
+  /** @return a snapshot of the given latest version found now, without validators. */
+  private static VersionSnapshot snapshotOf(String latestVersion) {
+    return VersionSnapshot.newBuilder()
+        .setLatestVersion(latestVersion)
+        .setTimestamp(System.currentTimeMillis())
+        .build();
+  }
+
+  /**
+   * Keeps the given snapshot as the last known one of the given provider and context, found now.
+   * The store is only written to if the latest version or the validators changed.
+   */
+  private void rememberLatestVersion(
+      Map.Entry<VersionProvider<?>, VersionProviderContext> key, VersionSnapshot snapshot) {
+    VersionSnapshot foundSnapshot =
+        snapshot.toBuilder().setTimestamp(System.currentTimeMillis()).build();
+    Object lastKnownKey = lastKnownKeyOf(key);
+    VersionSnapshot previousSnapshot = lastKnownVersions.asMap().put(lastKnownKey, foundSnapshot);
+    if (!optionalVersionSnapshotStore.isPresent()
+        || !(lastKnownKey instanceof String)
+        || (previousSnapshot != null
+            && previousSnapshot.latestVersion().equals(foundSnapshot.latestVersion())
+            && previousSnapshot.validators().equals(foundSnapshot.validators()))) {
+      return;
+    }
+    try {
+      optionalVersionSnapshotStore.get().save((String) lastKnownKey, foundSnapshot);
+    } catch (IOException e) {
+      // The snapshot is still known until the next start
+      logger.log(Level.WARNING, "Could not save the latest version of " + lastKnownKey, e);
     }
-    return null;
   }
 
   /** Base implementation for {@link CheckingUpToDateWithDownloadingAndScheduling}. */
   private class CheckingUpToDateWithDownloadingAndSchedulingImpl
       implements CheckingUpToDateWithDownloadingAndScheduling {
     private final CheckUpToDateRequest.Builder requestBuilder = CheckUpToDateRequest.newBuilder();
+    private Optional<Deadline> optionalDeadline = Optional.empty();
 
     private final List<Function<ListenableFuture<CheckUpToDateResponse>,
         ListenableFuture<CheckUpToDateResponse>>> operations = new ArrayList<>();
@@ -112,6 +515,11 @@ public class UpToDateCheckerImpl implements UpToDateChecker {
       requestBuilder.setCurrentVersion(checkUpToDateRequest.currentVersion());
       requestBuilder.setContext(checkUpToDateRequest.context());
       requestBuilder.setOptionalCallback(checkUpToDateRequest.optionalCallback());
+      requestBuilder.setOptionalSoftTtl(checkUpToDateRequest.optionalSoftTtl());
+      requestBuilder.setOptionalVersionConstraint(
+          checkUpToDateRequest.optionalVersionConstraint());
+      requestBuilder.setOptionalDeadline(checkUpToDateRequest.optionalDeadline());
+      optionalDeadline = checkUpToDateRequest.optionalDeadline();
       return thisInstance();
     }
 
@@ -125,18 +533,26 @@ public class UpToDateCheckerImpl implements UpToDateChecker {
                   LegacyFutures.transformAsync(
                       response,
                       input -> {
-                        requestBuilder.setCurrentVersion(input.latestVersion());
+                        // A latest version rejected by the version constraint is not updated to
+                        if (!input.isUpToDate()) {
+                          requestBuilder.setCurrentVersion(input.latestVersion());
+                        }
                         return LegacyFutures.schedulePeriodicAsync(
                             () -> {
-                              CheckUpToDateRequest currentRequest = requestBuilder.build();
+                              // Each check gets the whole timeout of the deadline
+                              CheckUpToDateRequest currentRequest =
+                                  requestBuilder
+                                      .setOptionalDeadline(
+                                          optionalDeadline.map(Deadline::restarted))
+                                      .build();
 
                               ListenableFuture<CheckUpToDateResponse> responseListenableFuture =
-                                  checkUpToDate(currentRequest, executor);
+                                  checkUpToDate(currentRequest);
                               Futures.addCallback(responseListenableFuture,
                                   new FutureCallback<CheckUpToDateResponse>() {
                                     @Override
                                     public void onSuccess(CheckUpToDateResponse result) {
-                                      if (!result.latestVersion().equals(currentRequest.currentVersion())) {
+                                      if (!result.isUpToDate()) {
                                         // An updated version was found, set the current version to the new, response
                                         // version, We don't want to check again the old version on next call.
                                         requestBuilder.setCurrentVersion(result.latestVersion());
@@ -152,8 +568,9 @@ public class UpToDateCheckerImpl implements UpToDateChecker {
                             },
                             period,
                             unit,
-                            executor);
-                      }, executor));
+                            // Keep the shared timer thread free of the checks
+                            computeExecutor);
+                      }, MoreExecutors.directExecutor()));
           return thisInstance();
         }
 
@@ -169,12 +586,14 @@ public class UpToDateCheckerImpl implements UpToDateChecker {
               LegacyFutures.transformAsync(
                   future,
                   response -> {
-                    return LegacyFutures.transformAsync(
-                        updateDownloader.downloadUpdate(computeUpdateDownloaderRequestFunction.apply(response)),
-                        unused -> {
-                          return Futures.immediateFuture(response);
-                        }, executor);
-                  }, executor));
+                    return LegacyFutures.transform(
+                        withDeadline(
+                            updateDownloader.downloadUpdate(
+                                computeUpdateDownloaderRequestFunction.apply(response)),
+                            optionalDeadline),
+                        unused -> response,
+                        MoreExecutors.directExecutor());
+                  }, ioExecutor));
           return thisInstance();
         }
       };
@@ -183,7 +602,7 @@ public class UpToDateCheckerImpl implements UpToDateChecker {
     @Override
     public ListenableFuture<CheckUpToDateResponse> response() {
       ListenableFuture<CheckUpToDateResponse> responseListenableFuture =
-          checkUpToDate(requestBuilder.build(), executor);
+          checkUpToDate(requestBuilder.build());
       for (Function<ListenableFuture<CheckUpToDateResponse>,
           ListenableFuture<CheckUpToDateResponse>> operation : operations) {
         responseListenableFuture = operation.apply(responseListenableFuture);
@@ -191,52 +610,122 @@ public class UpToDateCheckerImpl implements UpToDateChecker {
       return responseListenableFuture;
     }
 
-    private ListenableFuture<CheckUpToDateResponse> checkUpToDate(
-        CheckUpToDateRequest request, Executor executor) {
-      Optional<Callback> optionalCallback = request.optionalCallback();
+    private ListenableFuture<CheckUpToDateResponse> checkUpToDate(CheckUpToDateRequest request) {
+      VersionProvider<VersionProviderContext> versionProvider =
+          getVersionProvider(request.context().getClass());
+      if (versionProvider == null) {
+        return withCallback(
+            request,
+            Futures.immediateFailedFuture(
+                UpToDateCheckerExceptionCode.FAIL_TO_PARSE_VERSION_CODE.toException()));
+      }
+      Map.Entry<VersionProvider<?>, VersionProviderContext> key =
+          Maps.immutableEntry(versionProvider, request.context());
+      VersionSnapshot lastKnownVersion = lastKnownVersions.getIfPresent(lastKnownKeyOf(key));
+      if (request.optionalSoftTtl().isPresent() && lastKnownVersion != null) {
+        ListenableFuture<CheckUpToDateResponse> responseFuture =
+            withCallback(
+                request,
+                Futures.immediateFuture(responseOf(request, lastKnownVersion.latestVersion())));
+        if (System.currentTimeMillis() - lastKnownVersion.timestamp()
+            >= request.optionalSoftTtl().get()) {
+          // Once the callback was invoked with the stale version, so it is never invoked after
+          // the callback with the new one
+          responseFuture.addListener(
+              () ->
+                  revalidate(request, key, versionProvider, lastKnownVersion.latestVersion()),
+              MoreExecutors.directExecutor());
+        }
+        return responseFuture;
+      }
 
-      // Get the latest version (CheckUpToDateResponse#latestVersion)
-      ListenableFuture<String> latestVersionFuture =
-          LegacyFutures.callAsync(
-              () -> {
-                VersionProvider<VersionProviderContext> getLatestVersionApi =
-                    getVersionProvider(request.context().getClass());
-                if (getLatestVersionApi == null) {
-                  return Futures.immediateFailedFuture(
-                      UpToDateCheckerExceptionCode.FAIL_TO_PARSE_VERSION_CODE
-                          .toException());
-                }
-                return getLatestVersionApi.findLatestVersion(request.context());
-              },
-              executor);
+      // Get the latest version (CheckUpToDateResponse#latestVersion), or fall back to the last
+      // known one if the provider fails
+      ListenableFuture<CheckUpToDateResponse> responseFuture =
+          LegacyFutures.transform(
+              withLastKnownVersion(
+                  request,
+                  LegacyFutures.callAsync(
+                      () -> findLatestVersion(key, versionProvider, request.context()),
+                      ioExecutor),
+                  lastKnownVersion),
+              latestVersion -> responseOf(request, latestVersion),
+              computeExecutor);
+      return withCallback(request, withDeadline(responseFuture, request.optionalDeadline()));
+    }
 
-      return LegacyFutures.catchingAsync(
-          LegacyFutures.transformAsync(
-              latestVersionFuture,
-              latestVersion -> {
-                CheckUpToDateResponse response =
-                    CheckUpToDateResponse.newBuilder()
-                        .setLatestVersion(latestVersion)
-                        .setIsUpToDate(
-                            versionMatchStrategy.apply(request.currentVersion(), latestVersion))
-                        .build();
-                if (optionalCallback.isPresent()) {
-                  optionalCallback.get().onSuccess(response);
-                  if (response.isUpToDate()) {
-                    optionalCallback.get().onUpToDate(response);
-                  } else {
-                    optionalCallback.get().onNotUpToDate(response);
-                  }
-                }
-                return Futures.immediateFuture(response);
-              },
-              executor),
-          Exception.class,
-          cause -> {
-            optionalCallback.ifPresent(callback -> callback.onError(cause));
-            return Futures.immediateFailedFuture(cause);
+    private ListenableFuture<String> findLatestVersion(
+        Map.Entry<VersionProvider<?>, VersionProviderContext> key,
+        VersionProvider<VersionProviderContext> versionProvider,
+        VersionProviderContext context) {
+      ListenableFuture<VersionSnapshot> snapshotFuture =
+          latestVersionFlights.call(key, () -> findLatestSnapshot(key, versionProvider, context));
+      Futures.addCallback(
+          snapshotFuture,
+          new FutureCallback<VersionSnapshot>() {
+            @Override
+            public void onSuccess(VersionSnapshot snapshot) {
+              rememberLatestVersion(key, snapshot);
+            }
+
+            @Override
+            public void onFailure(Throwable t) {}
+          },
+          ioExecutor);
+      return LegacyFutures.transform(
+          snapshotFuture, VersionSnapshot::latestVersion, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Finds the latest version of the given context. A {@link SnapshotVersionProvider} is given the
+     * last known snapshot of the context, so it can ask whether it changed with its validators.
+     */
+    private ListenableFuture<VersionSnapshot> findLatestSnapshot(
+        Map.Entry<VersionProvider<?>, VersionProviderContext> key,
+        VersionProvider<VersionProviderContext> versionProvider,
+        VersionProviderContext context) {
+      if (versionProvider instanceof SnapshotVersionProvider) {
+        return ((SnapshotVersionProvider<VersionProviderContext>) versionProvider)
+            .findLatestSnapshot(
+                context, Optional.ofNullable(lastKnownVersions.getIfPresent(lastKnownKeyOf(key))));
+      }
+      return LegacyFutures.transform(
+          versionProvider.findLatestVersion(context),
+          UpToDateCheckerImpl::snapshotOf,
+          MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Asks the version provider for the latest version again, in the background, bypassing the
+     * cache of the version provider if it has one. The callback of the request is only invoked
+     * again if the latest version is not the stale one, the request already succeeded so a failure
+     * is only reported to {@link Callback#onRevalidationError(Throwable)}.
+     */
+    private void revalidate(
+        CheckUpToDateRequest request,
+        Map.Entry<VersionProvider<?>, VersionProviderContext> key,
+        VersionProvider<VersionProviderContext> versionProvider,
+        String staleVersion) {
+      if (versionProvider instanceof CachingVersionProvider) {
+        ((CachingVersionProvider<VersionProviderContext>) versionProvider)
+            .invalidate(request.context());
+      }
+      Futures.addCallback(
+          findLatestVersion(key, versionProvider, request.context()),
+          new FutureCallback<String>() {
+            @Override
+            public void onSuccess(String latestVersion) {
+              if (!latestVersion.equals(staleVersion)) {
+                notifyCallback(request, responseOf(request, latestVersion));
+              }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+              request.optionalCallback().ifPresent(callback -> callback.onRevalidationError(t));
+            }
           },
-          executor);
+          callbackExecutor);
     }
   }
 }
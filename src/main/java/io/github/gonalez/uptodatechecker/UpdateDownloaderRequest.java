@@ -15,12 +15,15 @@
  */
 package io.github.gonalez.uptodatechecker;
 
+import static com.google.common.base.Preconditions.checkArgument;
+
 import com.google.auto.value.AutoValue;
 
 import javax.annotation.concurrent.Immutable;
 
 import java.io.File;
 import java.nio.file.Path;
+import java.util.Optional;
 
 /** Request to download a file. */
 @AutoValue
@@ -28,7 +31,14 @@ import java.nio.file.Path;
 public abstract class UpdateDownloaderRequest {
   /** @return a new builder to create a {@link UpdateDownloaderRequest}. */
   public static Builder newBuilder() {
-    return new AutoValue_UpdateDownloaderRequest.Builder();
+    return new AutoValue_UpdateDownloaderRequest.Builder()
+        .setMaxAttempts(3)
+        .setRetryDelayMillis(500)
+        .setSegmentSize(8 * 1024 * 1024)
+        .setParallelism(4)
+        .setExpectedDigest(Optional.empty())
+        .setDigestAlgorithm("SHA-256")
+        .setExpectedSize(Optional.empty());
   }
 
   /** @return the url to download. */
@@ -37,6 +47,42 @@ public abstract class UpdateDownloaderRequest {
   /** @return the path to where the content will be downloaded. */
   public abstract String downloadPath();
 
+  /**
+   * Returns how many times the download is attempted before giving up, at least once. An
+   * interrupted download is resumed from where it stopped when the server supports it.
+   */
+  public abstract int maxAttempts();
+
+  /**
+   * Returns how long, in milliseconds, to wait before attempting the download again. The delay is
+   * doubled after each failed attempt, and randomized so the retries of many clients are spread.
+   */
+  public abstract long retryDelayMillis();
+
+  /**
+   * Returns the size in bytes of the ranges a {@link SegmentedUpdateDownloader} splits the download
+   * in, files that are not larger than it are downloaded in one go.
+   */
+  public abstract long segmentSize();
+
+  /** @return how many segments a {@link SegmentedUpdateDownloader} downloads at once. */
+  public abstract int parallelism();
+
+  /**
+   * Returns the expected digest of the file, hex encoded. If the file at the download path already
+   * has it, the download is skipped, otherwise the downloaded file must have it.
+   */
+  public abstract Optional<String> expectedDigest();
+
+  /** @return the {@link java.security.MessageDigest} algorithm of the expected digest. */
+  public abstract String digestAlgorithm();
+
+  /**
+   * Returns the expected size of the file in bytes. Like the {@link #expectedDigest()}, the
+   * download is skipped if the file already has it, but different files can have the same size.
+   */
+  public abstract Optional<Long> expectedSize();
+
   /** Builder for {@link UpdateDownloaderRequest}. */
   @AutoValue.Builder
   public abstract static class Builder {
@@ -54,7 +100,37 @@ public abstract class UpdateDownloaderRequest {
       return setDownloadPath(file.getAbsolutePath());
     }
 
+    /** Sets how many times the download is attempted, defaults to {@code 3}. */
+    public abstract Builder setMaxAttempts(int maxAttempts);
+
+    /** Sets how long to wait before the first retry in milliseconds, defaults to {@code 500}. */
+    public abstract Builder setRetryDelayMillis(long retryDelayMillis);
+
+    /** Sets the size of the download segments, defaults to {@code 8} MiB. */
+    public abstract Builder setSegmentSize(long segmentSize);
+
+    /** Sets how many segments are downloaded at once, defaults to {@code 4}. */
+    public abstract Builder setParallelism(int parallelism);
+
+    /** Sets the expected digest of the file, hex encoded. */
+    public abstract Builder setExpectedDigest(Optional<String> expectedDigest);
+
+    /** Sets the algorithm of the expected digest, defaults to {@code SHA-256}. */
+    public abstract Builder setDigestAlgorithm(String digestAlgorithm);
+
+    /** Sets the expected size of the file in bytes. */
+    public abstract Builder setExpectedSize(Optional<Long> expectedSize);
+
+    abstract UpdateDownloaderRequest autoBuild();
+
     /** @return a new {@link UpdateDownloaderRequest} based from this builder. */
-    public abstract UpdateDownloaderRequest build();
+    public UpdateDownloaderRequest build() {
+      UpdateDownloaderRequest request = autoBuild();
+      checkArgument(request.maxAttempts() >= 1, "maxAttempts must be at least 1");
+      checkArgument(request.retryDelayMillis() >= 0, "retryDelayMillis must not be negative");
+      checkArgument(request.segmentSize() > 0, "segmentSize must be positive");
+      checkArgument(request.parallelism() >= 1, "parallelism must be at least 1");
+      return request;
+    }
   }
 }
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.auto.value.AutoValue;
+import javax.annotation.concurrent.Immutable;
+
+/** Options for the cache of a {@link CachingVersionProvider}. */
+@AutoValue
+@Immutable
+public abstract class VersionCacheOptions {
+  public static final VersionCacheOptions DEFAULT_OPTIONS =
+      VersionCacheOptions.newBuilder().build();
+
+  /** @return a new builder to create a {@link VersionCacheOptions}. */
+  public static Builder newBuilder() {
+    return new AutoValue_VersionCacheOptions.Builder()
+        .setExpireAfterWrite(60000)
+        .setMaximumSize(1000);
+  }
+
+  /** @return how long, in milliseconds, a latest version is cached after it was found. */
+  public abstract long expireAfterWrite();
+
+  /**
+   * Returns the maximum number of contexts to cache the latest version of. The least recently used
+   * ones are evicted first.
+   */
+  public abstract long maximumSize();
+
+  /** Builder to create {@link VersionCacheOptions}s. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+    /** Sets how long a latest version is cached after it was found. */
+    public abstract Builder setExpireAfterWrite(long expireAfterWrite);
+
+    /** Sets the maximum number of contexts to cache the latest version of. */
+    public abstract Builder setMaximumSize(long maximumSize);
+
+    abstract VersionCacheOptions autoBuild();
+
+    /** @return a new {@link VersionCacheOptions} based from this builder. */
+    public VersionCacheOptions build() {
+      VersionCacheOptions versionCacheOptions = autoBuild();
+      checkArgument(
+          versionCacheOptions.expireAfterWrite() > 0, "expireAfterWrite must be positive");
+      checkArgument(versionCacheOptions.maximumSize() > 0, "maximumSize must be positive");
+      return versionCacheOptions;
+    }
+  }
+}
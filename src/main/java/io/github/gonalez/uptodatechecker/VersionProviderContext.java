@@ -15,5 +15,19 @@
  */
 package io.github.gonalez.uptodatechecker;
 
+import javax.annotation.Nullable;
+
 /** Marker interface for the {@link VersionProvider}. */
-public interface VersionProviderContext {}
+public interface VersionProviderContext {
+  /**
+   * Returns a key that identifies this context across restarts, so its last known latest version
+   * can be kept in a {@link VersionSnapshotStore}, or {@code null} if it has none.
+   *
+   * <p>Contexts opt in by overriding this, the key must only depend on the values that identify
+   * the context. By default a context has no key.
+   */
+  @Nullable
+  default String key() {
+    return null;
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Map;
+
+/** The last known latest version of a context, and when it was found. */
+@AutoValue
+@Immutable
+public abstract class VersionSnapshot {
+  /** @return a new builder to create a {@link VersionSnapshot}. */
+  public static Builder newBuilder() {
+    return new AutoValue_VersionSnapshot.Builder().setValidators(ImmutableMap.of());
+  }
+
+  /** @return the latest version that was found. */
+  public abstract String latestVersion();
+
+  /** @return when the latest version was found, in milliseconds since the epoch. */
+  public abstract long timestamp();
+
+  /**
+   * Returns the validators of the response the latest version was found in, such as its {@code
+   * ETag}, to ask the server whether it changed since.
+   */
+  public abstract ImmutableMap<String, String> validators();
+
+  /** @return a builder initialized with the values of this snapshot. */
+  public abstract Builder toBuilder();
+
+  /** Builder for {@link VersionSnapshot}. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+    /** Sets the latest version of the snapshot. */
+    public abstract Builder setLatestVersion(String latestVersion);
+
+    /** Sets when the latest version was found. */
+    public abstract Builder setTimestamp(long timestamp);
+
+    /** Sets the validators of the snapshot. */
+    public abstract Builder setValidators(Map<String, String> validators);
+
+    /** @return a new {@link VersionSnapshot} based from this builder. */
+    public abstract VersionSnapshot build();
+  }
+}
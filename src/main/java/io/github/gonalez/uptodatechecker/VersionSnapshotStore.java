@@ -0,0 +1,38 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.io.IOException;
+
+/**
+ * Keeps the {@link VersionSnapshot last known latest versions} of the checked contexts across
+ * restarts, so the first checks after a start can be answered without waiting for the version
+ * providers.
+ *
+ * <p>Snapshots are keyed by the {@link VersionProvider#name() name} of the version provider and the
+ * {@link VersionProviderContext#key() key} of the context, contexts without a key are not kept. A
+ * snapshot is only saved when its latest version or validators change, so the timestamps of the
+ * loaded snapshots are when they last changed.
+ */
+public interface VersionSnapshotStore {
+  /** @return the saved snapshots, by key. */
+  ImmutableMap<String, VersionSnapshot> load() throws IOException;
+
+  /** Saves the given snapshot, replacing the previous snapshot of the key. */
+  void save(String key, VersionSnapshot snapshot) throws IOException;
+}
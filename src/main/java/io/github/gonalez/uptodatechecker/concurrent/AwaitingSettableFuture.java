@@ -20,53 +20,60 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import com.google.common.util.concurrent.AbstractFuture;
 import com.google.common.util.concurrent.ListenableFuture;
 
-import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 /**
  * An {@link AbstractFuture} which acts like as a {@code SettableFuture} except that it controls how
  * long we can wait to have the result of the {@code SettableFuture}.
+ *
+ * <p>Once {@link #run() started}, the future fails with a {@link TimeoutException} if it is not
+ * done within {@code maxDelay}. The timeout is timed by a timer shared by all the futures, so no
+ * thread waits for the result.
  */
 @SuppressWarnings("UnstableApiUsage")
 public final class AwaitingSettableFuture<V> extends AbstractFuture<V> implements Runnable {
-  private final CountDownLatch futureInProgressLatch = new CountDownLatch(1);
   private final int maxDelay;
   private final TimeUnit timeUnit;
+  private final Executor executor;
+
   /**
    * Creates a AwaitingSettableFuture with the given specifications.
    *
-   * @param maxDelay how long we can wait to have the set value.
+   * @param maxDelay how long we can wait to have the set value, or {@code 0} to wait forever.
    * @param timeUnit unit of time for {@code maxDelay}.
-   * @param executor executor used for the future to latch countdown when we have the value.
+   * @param executor executor used to stop timing the future once we have the value.
    */
   public AwaitingSettableFuture(int maxDelay, TimeUnit timeUnit, Executor executor) {
     this.maxDelay = maxDelay;
     this.timeUnit = checkNotNull(timeUnit);
-    checkNotNull(executor);
-    addListener(futureInProgressLatch::countDown, executor);
+    this.executor = checkNotNull(executor);
   }
 
   public static <V> AwaitingSettableFuture<V> awaiting(Executor executor) {
     return new AwaitingSettableFuture<>(0, TimeUnit.SECONDS, executor);
   }
 
+  /** Starts timing this future, it doesn't block. */
   @Override
   public void run() {
-    try {
-      boolean cancelled = false;
-      if (maxDelay > 0) cancelled = futureInProgressLatch.await(maxDelay, timeUnit);
-      else futureInProgressLatch.await();
-      if (!cancelled && !isDone()) {
-        setException(
-            new TimeoutException(
-                String.format(
-                    "Future timed out after %d %s", maxDelay, timeUnit.toString().toLowerCase())));
-      }
-    } catch (InterruptedException interruptedException) {
-      setException(interruptedException);
+    if (maxDelay <= 0 || isDone()) {
+      return;
     }
+    ScheduledFuture<?> timeout =
+        SharedTimer.get()
+            .schedule(
+                () ->
+                    setException(
+                        new TimeoutException(
+                            String.format(
+                                "Future timed out after %d %s",
+                                maxDelay, timeUnit.toString().toLowerCase()))),
+                maxDelay,
+                timeUnit);
+    addListener(() -> timeout.cancel(false), executor);
   }
 
   @Override
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.concurrent;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Ticker;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time by which something must be done, given as a timeout from when it was created.
+ * It is based on {@link System#nanoTime()}, so it is not affected by changes of the wall clock.
+ */
+@Immutable
+public final class Deadline {
+  private final Ticker ticker;
+  private final long timeoutNanos;
+  private final long deadlineNanos;
+
+  private Deadline(Ticker ticker, long timeoutNanos) {
+    this.ticker = ticker;
+    this.timeoutNanos = timeoutNanos;
+    this.deadlineNanos = ticker.read() + timeoutNanos;
+  }
+
+  /** @return a deadline the given timeout from now. */
+  public static Deadline after(long timeout, TimeUnit timeUnit) {
+    return after(timeout, timeUnit, Ticker.systemTicker());
+  }
+
+  static Deadline after(long timeout, TimeUnit timeUnit, Ticker ticker) {
+    checkArgument(timeout >= 0, "timeout must not be negative");
+    return new Deadline(checkNotNull(ticker), timeUnit.toNanos(timeout));
+  }
+
+  /** @return the time left until this deadline, negative once it expired. */
+  public long timeRemaining(TimeUnit timeUnit) {
+    return timeUnit.convert(deadlineNanos - ticker.read(), TimeUnit.NANOSECONDS);
+  }
+
+  /** @return whether this deadline has expired. */
+  public boolean isExpired() {
+    return deadlineNanos - ticker.read() <= 0;
+  }
+
+  /** @return a new deadline with the same timeout as this one, from now. */
+  public Deadline restarted() {
+    return new Deadline(ticker, timeoutNanos);
+  }
+
+  @Override
+  public String toString() {
+    return "Deadline in " + timeRemaining(TimeUnit.MILLISECONDS) + " ms";
+  }
+}
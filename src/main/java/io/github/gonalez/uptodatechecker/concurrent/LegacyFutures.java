@@ -16,13 +16,14 @@
 package io.github.gonalez.uptodatechecker.concurrent;
 
 import com.google.common.util.concurrent.AsyncCallable;
-import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
 import com.google.common.util.concurrent.AsyncFunction;
 
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -31,83 +32,104 @@ import java.util.function.Function;
 public final class LegacyFutures {
   private LegacyFutures() {}
 
+  /**
+   * Calls the given callable in the given executor. Cancelling the returned future cancels the
+   * future returned by the callable.
+   */
   public static <V> ListenableFuture<V> callAsync(AsyncCallable<V> callable, Executor executor) {
-    AwaitingSettableFuture<V> settableFuture = AwaitingSettableFuture.awaiting(executor);
-    executor.execute(
-        () -> {
-          try {
-            settableFuture.setFuture(callable.call());
-          } catch (Exception e) {
-            settableFuture.setException(e);
-          }
-        });
-    return settableFuture;
+    return Futures.submitAsync(callable, executor);
   }
 
+  /** Calls the given callable in the given executor. */
   public static <V> ListenableFuture<V> call(Callable<V> callable, Executor executor) {
-    return callAsync(() -> Futures.immediateFuture(callable.call()), executor);
+    ListenableFutureTask<V> task = ListenableFutureTask.create(callable);
+    executor.execute(task);
+    return task;
   }
 
+  /**
+   * Returns a future with the result of the given input future or, if it fails with the given
+   * exception type, with the result of the fallback function applied to the exception. Cancelling
+   * the returned future cancels the input future.
+   */
   public static <V, T extends Throwable> ListenableFuture<V> catchingAsync(
       ListenableFuture<V> input,
       Class<T> exceptionType,
       Function<T, ListenableFuture<V>> fallbackFunction,
       Executor executor) {
-    AwaitingSettableFuture<V> settableFuture = AwaitingSettableFuture.awaiting(executor);
-    Futures.addCallback(
-        input,
-        new FutureCallback<V>() {
-          @Override
-          public void onSuccess(V result) {
-            settableFuture.setFuture(input);
-          }
-
-          @SuppressWarnings("unchecked")
-          @Override
-          public void onFailure(Throwable t) {
-            if (exceptionType.isInstance(t)) {
-              settableFuture.setFuture(fallbackFunction.apply((T) t));
-            } else settableFuture.setException(t);
-          }
-        },
-        executor);
-    return settableFuture;
+    return Futures.catchingAsync(input, exceptionType, fallbackFunction::apply, executor);
   }
 
+  /**
+   * Returns a future with the result of the given function applied to the result of the given
+   * future. The function is called once the future completes, or right away if it is already done
+   * and the executor runs tasks in the calling thread. Cancelling the returned future cancels the
+   * input future.
+   */
   public static <V, T> ListenableFuture<T> transformAsync(
       ListenableFuture<V> future, AsyncFunction<V, T> transformFunction, Executor executor) {
-    AwaitingSettableFuture<T> settableFuture = AwaitingSettableFuture.awaiting(executor);
-    Futures.addCallback(
-        callAsync(returningAsyncFuture(future), executor),
-        new FutureCallback<V>() {
-          @Override
-          public void onSuccess(V result) {
-            try {
-              settableFuture.setFuture(transformFunction.apply(result));
-            } catch (Exception e) {
-              onFailure(e);
-            }
-          }
+    return Futures.transformAsync(future, transformFunction, executor);
+  }
+
+  /**
+   * Like {@link #transformAsync} for functions which compute their result right away, so the result
+   * is not wrapped in another future. Cheap functions can be given a direct executor to be called
+   * inline, without a thread handoff.
+   */
+  public static <V, T> ListenableFuture<T> transform(
+      ListenableFuture<V> future, Function<V, T> transformFunction, Executor executor) {
+    return Futures.transform(future, transformFunction::apply, executor);
+  }
 
-          @Override
-          public void onFailure(Throwable t) {
-            settableFuture.setException(t);
-          }
-        },
-        executor);
-    return settableFuture;
+  /**
+   * Calls the given callable in the given executor once the given delay elapses. The delay is timed
+   * by a timer thread shared by all the futures, cancelling the returned future before it elapses
+   * cancels the call.
+   */
+  public static <V> ListenableFuture<V> scheduleAsync(
+      AsyncCallable<V> callable, long delay, TimeUnit timeUnit, Executor executor) {
+    return Futures.scheduleAsync(
+        () -> callAsync(callable, executor), delay, timeUnit, SharedTimer.get());
   }
 
+  /**
+   * Calls the given callable in the given executor every period, until the returned future is
+   * cancelled. The result of the first call is the result of the returned future. The calls are
+   * timed by a timer thread shared by all the periodic tasks.
+   */
   public static <V> ListenableFuture<V> schedulePeriodicAsync(
       AsyncCallable<V> callable, long period, TimeUnit timeUnit, Executor executor) {
-    RepeatingCallableFuture<V> repeatingInterruptedCallable =
-        new RepeatingCallableFuture<>(callable, period, timeUnit, false);
-    executor.execute(repeatingInterruptedCallable);
-    return repeatingInterruptedCallable;
+    return schedulePeriodicAsync(callable, period, timeUnit, executor, SharedTimer.get());
+  }
+
+  /**
+   * Calls the given callable in the given executor every period, timed by the given timer, until
+   * the returned future is cancelled. The result of the first call is the result of the returned
+   * future.
+   */
+  public static <V> ListenableFuture<V> schedulePeriodicAsync(
+      AsyncCallable<V> callable,
+      long period,
+      TimeUnit timeUnit,
+      Executor executor,
+      ScheduledExecutorService timer) {
+    RepeatingCallableFuture<V> repeatingCallableFuture =
+        new RepeatingCallableFuture<>(callable, executor, false);
+    repeatingCallableFuture.start(timer, period, timeUnit);
+    return repeatingCallableFuture;
   }
 
-  /** @return a {@code AsyncCallable} which returns the given future. */
-  private static <V> AsyncCallable<V> returningAsyncFuture(ListenableFuture<V> future) {
-    return () -> future;
+  /**
+   * Returns a future with the result of the given future, that fails with a {@link
+   * java.util.concurrent.TimeoutException} if the given deadline expires first, in which case the
+   * given future is cancelled. The deadline is timed by a timer thread shared by all the futures.
+   */
+  public static <V> ListenableFuture<V> withDeadline(
+      ListenableFuture<V> future, Deadline deadline) {
+    return Futures.withTimeout(
+        future,
+        Math.max(0, deadline.timeRemaining(TimeUnit.NANOSECONDS)),
+        TimeUnit.NANOSECONDS,
+        SharedTimer.get());
   }
 }
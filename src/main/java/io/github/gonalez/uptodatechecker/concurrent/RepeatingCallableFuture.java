@@ -17,68 +17,99 @@ package io.github.gonalez.uptodatechecker.concurrent;
 
 import com.google.common.util.concurrent.AbstractFuture;
 import com.google.common.util.concurrent.AsyncCallable;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * A {@link AbstractFuture} that is also a runnable, it allows to repeat the possible result of the
- * future until it is {@link #cancel(boolean) cancelled}, we wait {@code period} of the {@code
- * timeUnit} to set the next result of this future, the result is based on the {@code callable}.
+ * A {@link AbstractFuture} that calls the {@code callable} every {@code period} of the {@code
+ * timeUnit} until it is {@link #cancel(boolean) cancelled}, the result of the first call is the
+ * result of this future.
+ *
+ * <p>A timer tells when the next call is due, and the call runs in the {@code executor}, so no
+ * thread is held between calls. A call is skipped if the previous one hasn't completed yet.
  */
 @SuppressWarnings("UnstableApiUsage")
-final class RepeatingCallableFuture<V> extends AbstractFuture<V> implements Runnable {
+final class RepeatingCallableFuture<V> extends AbstractFuture<V> {
   private final AsyncCallable<V> callable;
-  private final long period;
-  private final TimeUnit timeUnit;
+  private final Executor executor;
   private final boolean shouldCancelOnFailure;
 
-  private final AtomicBoolean cancelled = new AtomicBoolean();
+  private final AtomicBoolean calling = new AtomicBoolean();
+  private volatile boolean stopped;
+  private volatile ScheduledFuture<?> scheduledCalls;
 
-  public RepeatingCallableFuture(
-      AsyncCallable<V> callable, long period, TimeUnit timeUnit, boolean shouldCancelOnFailure) {
+  RepeatingCallableFuture(
+      AsyncCallable<V> callable, Executor executor, boolean shouldCancelOnFailure) {
     this.callable = callable;
-    this.period = period;
-    this.timeUnit = timeUnit;
+    this.executor = executor;
     this.shouldCancelOnFailure = shouldCancelOnFailure;
   }
 
-  @Override
-  public void run() {
-    while (!isCancelled()) {
-      try {
-        if (Thread.interrupted()) {
-          throw new InterruptedException();
-        }
-        timeUnit.sleep(period);
-        if (isCancelled()) {
-          cancel(false);
-          break;
-        }
-        setFuture(callable.call());
-      } catch (InterruptedException interruptedException) {
-        cancel(false);
-      } catch (Throwable throwable) {
-        if (throwable instanceof ExecutionException) {
-          setException(throwable.getCause());
-        } else {
-          setException(throwable);
-        }
-        if (shouldCancelOnFailure) {
-          cancel(false);
-        }
-      }
+  /** Starts calling the callable every period with the given timer. */
+  void start(ScheduledExecutorService timer, long period, TimeUnit timeUnit) {
+    scheduledCalls = timer.scheduleWithFixedDelay(this::dispatch, period, period, timeUnit);
+    if (stopped) {
+      scheduledCalls.cancel(false);
     }
   }
 
-  @Override
-  public boolean isCancelled() {
-    return cancelled.get();
+  /** Runs on the timer, hands the call to the executor. */
+  private void dispatch() {
+    if (stopped || !calling.compareAndSet(false, true)) {
+      return;
+    }
+    try {
+      executor.execute(this::call);
+    } catch (RejectedExecutionException e) {
+      calling.set(false);
+      setException(e);
+      stop();
+    }
+  }
+
+  private void call() {
+    ListenableFuture<V> result;
+    try {
+      result = callable.call();
+    } catch (Throwable t) {
+      result = Futures.immediateFailedFuture(t);
+    }
+    setFuture(result);
+    ListenableFuture<V> callResult = result;
+    callResult.addListener(
+        () -> {
+          calling.set(false);
+          if (shouldCancelOnFailure && !callResult.isCancelled()) {
+            try {
+              Futures.getDone(callResult);
+            } catch (Exception e) {
+              stop();
+            }
+          }
+        },
+        MoreExecutors.directExecutor());
+  }
+
+  private void stop() {
+    stopped = true;
+    ScheduledFuture<?> calls = scheduledCalls;
+    if (calls != null) {
+      calls.cancel(false);
+    }
   }
 
+  /** Stops calling the callable, and cancels this future if it didn't complete yet. */
   @Override
   public boolean cancel(boolean mayInterruptIfRunning) {
-    return cancelled.compareAndSet(false, true);
+    stop();
+    return super.cancel(mayInterruptIfRunning);
   }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.concurrent;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects single keys into batches, so their values can be found with one call for many keys. A
+ * batch is sent once it has {@code maxBatchSize} keys, or once {@code lingerMillis} have passed
+ * since its first key was added, whichever happens first.
+ *
+ * <p>The values are then given back to the future of each key. A key without a value in the
+ * result of the batch fails with a {@link NoSuchElementException}.
+ */
+@SuppressWarnings("UnstableApiUsage")
+@ThreadSafe
+public final class RequestBatcher<K, V> {
+  private final ScheduledExecutorService scheduledExecutorService;
+  private final int maxBatchSize;
+  private final long lingerMillis;
+  private final AsyncFunction<ImmutableSet<K>, ImmutableMap<K, V>> batchFunction;
+
+  @GuardedBy("this")
+  private Map<K, SettableFuture<V>> pending = new LinkedHashMap<>();
+
+  @GuardedBy("this")
+  private ScheduledFuture<?> scheduledFlush;
+
+  public RequestBatcher(
+      ScheduledExecutorService scheduledExecutorService,
+      int maxBatchSize,
+      long lingerMillis,
+      AsyncFunction<ImmutableSet<K>, ImmutableMap<K, V>> batchFunction) {
+    checkArgument(maxBatchSize > 0, "maxBatchSize must be positive");
+    checkArgument(lingerMillis >= 0, "lingerMillis must not be negative");
+    this.scheduledExecutorService = checkNotNull(scheduledExecutorService);
+    this.maxBatchSize = maxBatchSize;
+    this.lingerMillis = lingerMillis;
+    this.batchFunction = checkNotNull(batchFunction);
+  }
+
+  /**
+   * Adds the given key to the next batch. Adding a key that is already in the next batch shares
+   * its value.
+   *
+   * @return the value of the key, once its batch completes.
+   */
+  public ListenableFuture<V> add(K key) {
+    checkNotNull(key);
+    SettableFuture<V> future;
+    Map<K, SettableFuture<V>> batch = null;
+    synchronized (this) {
+      future = pending.get(key);
+      if (future == null) {
+        future = SettableFuture.create();
+        pending.put(key, future);
+      }
+      if (pending.size() >= maxBatchSize) {
+        batch = takePending();
+      } else if (scheduledFlush == null) {
+        scheduledFlush =
+            scheduledExecutorService.schedule(this::flush, lingerMillis, TimeUnit.MILLISECONDS);
+      }
+    }
+    if (batch != null) {
+      send(batch);
+    }
+    return Futures.nonCancellationPropagating(future);
+  }
+
+  /** Sends the next batch right away, if it has any key. */
+  public void flush() {
+    Map<K, SettableFuture<V>> batch;
+    synchronized (this) {
+      batch = takePending();
+    }
+    if (!batch.isEmpty()) {
+      send(batch);
+    }
+  }
+
+  @GuardedBy("this")
+  private Map<K, SettableFuture<V>> takePending() {
+    Map<K, SettableFuture<V>> batch = pending;
+    pending = new LinkedHashMap<>();
+    if (scheduledFlush != null) {
+      scheduledFlush.cancel(false);
+      scheduledFlush = null;
+    }
+    return batch;
+  }
+
+  private void send(Map<K, SettableFuture<V>> batch) {
+    ListenableFuture<ImmutableMap<K, V>> values;
+    try {
+      values = batchFunction.apply(ImmutableSet.copyOf(batch.keySet()));
+    } catch (Throwable t) {
+      values = Futures.immediateFailedFuture(t);
+    }
+    Futures.addCallback(
+        values,
+        new FutureCallback<ImmutableMap<K, V>>() {
+          @Override
+          public void onSuccess(ImmutableMap<K, V> result) {
+            for (Map.Entry<K, SettableFuture<V>> entry : batch.entrySet()) {
+              V value = result.get(entry.getKey());
+              if (value == null) {
+                entry.getValue().setException(
+                    new NoSuchElementException("No value for " + entry.getKey()));
+              } else {
+                entry.getValue().set(value);
+              }
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            for (SettableFuture<V> future : batch.values()) {
+              future.setException(t);
+            }
+          }
+        },
+        MoreExecutors.directExecutor());
+  }
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.concurrent;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+
+/**
+ * The timer shared by the periodic tasks of {@link LegacyFutures#schedulePeriodicAsync}. It only
+ * tells when a task is due, the task itself runs in its own executor, so a single thread can drive
+ * any number of periodic tasks.
+ */
+final class SharedTimer {
+  private SharedTimer() {}
+
+  /** @return the shared timer, created on first use. */
+  static ScheduledExecutorService get() {
+    return Holder.TIMER;
+  }
+
+  private static final class Holder {
+    private static final ScheduledExecutorService TIMER = createTimer();
+
+    private static ScheduledExecutorService createTimer() {
+      ScheduledThreadPoolExecutor timer =
+          new ScheduledThreadPoolExecutor(
+              1,
+              new ThreadFactoryBuilder()
+                  .setNameFormat("uptodatechecker-timer-%d")
+                  .setDaemon(true)
+                  .build());
+      // Cancelled tasks would otherwise stay in the queue until they were due
+      timer.setRemoveOnCancelPolicy(true);
+      return timer;
+    }
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.concurrent;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.AsyncCallable;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Coalesces concurrent calls for equal keys into a single call. While the future of a key is in
+ * flight, other callers for the same key share it instead of starting their own, once it completes
+ * the next caller starts a new call.
+ *
+ * <p>Each caller gets its own future, cancelling it does not affect the other callers. The shared
+ * call is only cancelled once every caller has cancelled its future.
+ */
+@SuppressWarnings("UnstableApiUsage")
+@ThreadSafe
+public final class SingleFlight<K, V> {
+  private final ConcurrentMap<K, Flight> flights = new ConcurrentHashMap<>();
+
+  /**
+   * Returns the result of the given callable, or of the call already in flight for an equal key.
+   * The callable is called in the calling thread if there is no call in flight.
+   */
+  public ListenableFuture<V> call(K key, AsyncCallable<V> callable) {
+    checkNotNull(key);
+    checkNotNull(callable);
+    while (true) {
+      Flight flight = flights.get(key);
+      if (flight == null) {
+        Flight newFlight = new Flight(key);
+        flight = flights.putIfAbsent(key, newFlight);
+        if (flight == null) {
+          ListenableFuture<V> caller = newFlight.join();
+          newFlight.start(callable);
+          return caller;
+        }
+      }
+      ListenableFuture<V> caller = flight.join();
+      if (caller != null) {
+        return caller;
+      }
+      // The flight was cancelled by its last caller in the meantime
+      flights.remove(key, flight);
+    }
+  }
+
+  /** @return the number of calls in flight. */
+  public int inFlightCount() {
+    return flights.size();
+  }
+
+  /** A shared call, with the number of callers waiting for it. */
+  private final class Flight {
+    private final K key;
+    private final SettableFuture<V> future = SettableFuture.create();
+
+    @GuardedBy("this")
+    private int callers;
+
+    @GuardedBy("this")
+    private boolean cancelled;
+
+    Flight(K key) {
+      this.key = key;
+      future.addListener(() -> flights.remove(key, this), MoreExecutors.directExecutor());
+    }
+
+    void start(AsyncCallable<V> callable) {
+      try {
+        future.setFuture(callable.call());
+      } catch (Throwable t) {
+        future.setException(t);
+      }
+    }
+
+    /** @return a new future for a caller of this flight, or {@code null} if it was cancelled. */
+    @Nullable
+    synchronized ListenableFuture<V> join() {
+      if (cancelled) {
+        return null;
+      }
+      callers++;
+      ListenableFuture<V> caller = Futures.nonCancellationPropagating(future);
+      caller.addListener(
+          () -> {
+            if (caller.isCancelled()) {
+              leave();
+            }
+          },
+          MoreExecutors.directExecutor());
+      return caller;
+    }
+
+    private void leave() {
+      synchronized (this) {
+        if (--callers > 0 || future.isDone()) {
+          return;
+        }
+        cancelled = true;
+      }
+      flights.remove(key, this);
+      future.cancel(true);
+    }
+  }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.concurrent;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Virtual threads, where the runtime supports them. The jar is a multi-release jar, on Java 21 and
+ * newer this class is replaced by one which creates virtual threads, this one is used on older
+ * runtimes, which have none.
+ */
+public final class VirtualThreads {
+  private VirtualThreads() {}
+
+  /** @return whether the runtime supports virtual threads. */
+  public static boolean isSupported() {
+    return false;
+  }
+
+  /**
+   * Returns an executor which runs each task in a new virtual thread, so blocking tasks don't hold
+   * a platform thread while they wait.
+   *
+   * @throws UnsupportedOperationException if the runtime doesn't {@link #isSupported() support}
+   *     virtual threads.
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor() {
+    throw new UnsupportedOperationException("Virtual threads need Java 21 or newer");
+  }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.concurrent.Immutable;
+import java.net.URL;
+
+/** The scheme, host and port of an url, connections to the same address can be reused. */
+@AutoValue
+@Immutable
+abstract class Address {
+  /** @return the {@link Address} of the given url. */
+  static Address of(URL url) {
+    String scheme = url.getProtocol().toLowerCase();
+    int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+    return new AutoValue_Address(scheme, url.getHost().toLowerCase(), port);
+  }
+
+  /** @return the scheme of the address, either {@code http} or {@code https}. */
+  abstract String scheme();
+
+  /** @return the host of the address. */
+  abstract String host();
+
+  /** @return the port of the address. */
+  abstract int port();
+
+  /** @return {@code true} if connections to this address must use TLS. */
+  boolean isSecure() {
+    return scheme().equals("https");
+  }
+
+  /** @return the value to send in the {@code Host} header for this address. */
+  String hostHeader() {
+    int defaultPort = isSecure() ? 443 : 80;
+    return port() == defaultPort ? host() : host() + ":" + port();
+  }
+}
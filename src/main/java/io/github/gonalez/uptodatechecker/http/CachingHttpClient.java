@@ -0,0 +1,434 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.github.gonalez.uptodatechecker.concurrent.LegacyFutures;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A {@link HttpClient} that caches the responses of another client, following the rules of a
+ * private HTTP cache (RFC 7234).
+ *
+ * <p>Responses are cached according to their {@code Cache-Control}, {@code Expires} and {@code
+ * Vary} headers. Once stale, a response with an {@code ETag} or {@code Last-Modified} validator is
+ * revalidated with a conditional request, and reused if the server answers {@code 304 Not
+ * Modified}. Conditional requests made by the caller itself are answered from the cache while the
+ * cached response is fresh, and passed through otherwise.
+ *
+ * <p>Buffered responses are cached in memory, up to {@link HttpCacheOptions#maximumMemorySize()}
+ * bytes. If there is a {@link HttpCacheOptions#optionalDiskDirectory() disk directory}, responses
+ * are cached on disk too, streamed responses like downloads are written to disk while they are
+ * read. Range requests are never cached.
+ */
+@SuppressWarnings("UnstableApiUsage")
+@ThreadSafe
+public class CachingHttpClient implements HttpClient {
+  private static final String CACHE_FILE_SUFFIX = ".cache";
+
+  private final Executor executor;
+  private final HttpClient httpClient;
+  private final HttpCacheOptions options;
+  private final Cache<String, HttpCacheEntry> memoryCache;
+
+  public CachingHttpClient(Executor executor, HttpClient httpClient, HttpCacheOptions options) {
+    this.executor = checkNotNull(executor);
+    this.httpClient = checkNotNull(httpClient);
+    this.options = checkNotNull(options);
+    this.memoryCache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(options.maximumMemorySize())
+            .weigher((String url, HttpCacheEntry entry) -> entry.weight())
+            .build();
+  }
+
+  @Override
+  public ListenableFuture<HttpResponse> requestAsync(HttpRequest request) {
+    String requestCacheControl = HttpCacheEntry.headerOf(request, "cache-control");
+    Map<String, String> cacheControl =
+        HttpCacheEntry.directivesOf(
+            requestCacheControl == null
+                ? ImmutableList.of()
+                : ImmutableList.of(requestCacheControl));
+    if (!request.method().equals("GET")
+        || HttpCacheEntry.headerOf(request, "range") != null
+        || cacheControl.containsKey("no-store")) {
+      return httpClient.requestAsync(request);
+    }
+    boolean noCache =
+        cacheControl.containsKey("no-cache") || "0".equals(cacheControl.get("max-age"));
+    return LegacyFutures.callAsync(
+        () -> {
+          HttpCacheEntry entry = lookup(request);
+          String ifNoneMatch = HttpCacheEntry.headerOf(request, "if-none-match");
+          String ifModifiedSince = HttpCacheEntry.headerOf(request, "if-modified-since");
+          boolean conditional = ifNoneMatch != null || ifModifiedSince != null;
+          if (entry != null && !noCache && entry.isFresh(System.currentTimeMillis())) {
+            if (!conditional) {
+              return Futures.immediateFuture(serve(request, entry));
+            }
+            if (entry.isNotModified(ifNoneMatch, ifModifiedSince)) {
+              return Futures.immediateFuture(entry.notModified());
+            }
+          }
+          if (conditional) {
+            // The caller validates its own copy of the response
+            return httpClient.requestAsync(request);
+          }
+          if (entry != null && entry.hasValidators()) {
+            return revalidate(request, entry);
+          }
+          return LegacyFutures.transformAsync(
+              httpClient.requestAsync(request),
+              response ->
+                  Futures.immediateFuture(store(request, response, System.currentTimeMillis())),
+              executor);
+        },
+        executor);
+  }
+
+  /** Forgets all the cached responses, in memory and on disk. */
+  public void invalidateAll() throws IOException {
+    memoryCache.invalidateAll();
+    if (options.optionalDiskDirectory().isPresent()) {
+      for (Path file : cacheFiles()) {
+        Files.deleteIfExists(file);
+      }
+    }
+  }
+
+  private ListenableFuture<HttpResponse> revalidate(HttpRequest request, HttpCacheEntry entry) {
+    Map<String, String> headers = new LinkedHashMap<>(request.headers());
+    if (entry.entityTag() != null) {
+      headers.put("If-None-Match", entry.entityTag());
+    }
+    if (entry.lastModified() != null) {
+      headers.put("If-Modified-Since", entry.lastModified());
+    }
+    return LegacyFutures.transformAsync(
+        httpClient.requestAsync(request.toBuilder().setHeaders(headers).build()),
+        response -> {
+          long now = System.currentTimeMillis();
+          if (response.responseCode() != 304) {
+            return Futures.immediateFuture(store(request, response, now));
+          }
+          response.close();
+          HttpCacheEntry revalidated = entry.revalidated(response.headers(), now);
+          if (revalidated.hasBodyInMemory()) {
+            memoryCache.put(request.url(), revalidated);
+          }
+          return Futures.immediateFuture(serve(request, writeToDisk(revalidated)));
+        },
+        executor);
+  }
+
+  /** @return the cached response for the given request, or {@code null} if there is none. */
+  @Nullable
+  private HttpCacheEntry lookup(HttpRequest request) {
+    HttpCacheEntry entry = memoryCache.getIfPresent(request.url());
+    if (entry == null && options.optionalDiskDirectory().isPresent()) {
+      Path file = cacheFileOf(request.url());
+      if (Files.exists(file)) {
+        try {
+          entry = HttpCacheEntry.read(file);
+          // The least recently used files are evicted first
+          Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+          deleteQuietly(file);
+        }
+      }
+    }
+    return entry != null && entry.matches(request) ? entry : null;
+  }
+
+  private HttpResponse serve(HttpRequest request, HttpCacheEntry entry) throws IOException {
+    if (!request.streaming() && !entry.hasBodyInMemory()) {
+      entry = entry.withBody(entry.readBody());
+      memoryCache.put(request.url(), entry);
+    }
+    return entry.toResponse(request.streaming());
+  }
+
+  /** Caches the given response if it can be, returning the response to give to the caller. */
+  private HttpResponse store(HttpRequest request, HttpResponse response, long receivedAt)
+      throws IOException {
+    HttpCacheEntry entry = HttpCacheEntry.of(request, response, receivedAt);
+    if (entry == null) {
+      // A newer response replaces the cached one, even if it can't be cached itself
+      memoryCache.invalidate(request.url());
+      if (options.optionalDiskDirectory().isPresent()) {
+        deleteQuietly(cacheFileOf(request.url()));
+      }
+      return response;
+    }
+    if (!request.streaming()) {
+      HttpCacheEntry entryWithBody = entry.withBody(response.body());
+      memoryCache.put(request.url(), entryWithBody);
+      writeToDisk(entryWithBody);
+      return response;
+    }
+    if (!options.optionalDiskDirectory().isPresent()) {
+      return response;
+    }
+    long contentLength = response.responseBody().contentLength();
+    CachingBodyStream cachingBodyStream;
+    try {
+      cachingBodyStream = new CachingBodyStream(response.bodyStream(), entry, contentLength);
+    } catch (IOException e) {
+      return response;
+    }
+    return HttpResponse.newBuilder()
+        .setResponseCode(response.responseCode())
+        .setHeaders(response.headers())
+        .setResponseBody(HttpResponseBody.of(cachingBodyStream, contentLength))
+        .build();
+  }
+
+  /**
+   * Writes the given entry to its cache file, if there is a disk directory.
+   *
+   * @return the entry as read back from its cache file, or the given entry if it is not on disk.
+   */
+  private HttpCacheEntry writeToDisk(HttpCacheEntry entry) {
+    if (!options.optionalDiskDirectory().isPresent()) {
+      return entry;
+    }
+    Path file = cacheFileOf(entry.url());
+    Path temporaryFile = null;
+    try {
+      temporaryFile = Files.createTempFile(options.optionalDiskDirectory().get(), null, ".tmp");
+      try (DataOutputStream output =
+          new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+        entry.writeMetadata(output);
+        entry.copyBodyTo(output);
+      }
+      move(temporaryFile, file);
+      evictFromDisk();
+      return entry.hasBodyInMemory() ? entry : HttpCacheEntry.read(file);
+    } catch (IOException e) {
+      // Caching is best-effort, the response is still served
+      if (temporaryFile != null) {
+        deleteQuietly(temporaryFile);
+      }
+      return entry;
+    }
+  }
+
+  /** Deletes the least recently used cache files until they fit in the maximum disk size. */
+  private synchronized void evictFromDisk() throws IOException {
+    List<Path> files = cacheFiles();
+    long size = 0;
+    Map<Path, Long> sizes = new LinkedHashMap<>();
+    Map<Path, FileTime> lastUses = new LinkedHashMap<>();
+    for (Path file : files) {
+      try {
+        sizes.put(file, Files.size(file));
+        lastUses.put(file, Files.getLastModifiedTime(file));
+        size += sizes.get(file);
+      } catch (IOException e) {
+        // Deleted in the meantime
+      }
+    }
+    if (size <= options.maximumDiskSize()) {
+      return;
+    }
+    List<Path> leastRecentlyUsed = new ArrayList<>(lastUses.keySet());
+    leastRecentlyUsed.sort(Comparator.comparing(lastUses::get));
+    for (Path file : leastRecentlyUsed) {
+      if (size <= options.maximumDiskSize()) {
+        break;
+      }
+      deleteQuietly(file);
+      size -= sizes.get(file);
+    }
+  }
+
+  private List<Path> cacheFiles() throws IOException {
+    try (Stream<Path> files = Files.list(options.optionalDiskDirectory().get())) {
+      return files
+          .filter(file -> file.getFileName().toString().endsWith(CACHE_FILE_SUFFIX))
+          .collect(Collectors.toList());
+    }
+  }
+
+  private Path cacheFileOf(String url) {
+    return options
+        .optionalDiskDirectory()
+        .get()
+        .resolve(Hashing.sha256().hashString(url, StandardCharsets.UTF_8) + CACHE_FILE_SUFFIX);
+  }
+
+  private static void move(Path source, Path target) throws IOException {
+    try {
+      Files.move(
+          source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static void deleteQuietly(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      // Evicted later
+    }
+  }
+
+  /**
+   * A streamed body that is written to a cache file while it is read, the file is only kept once
+   * the whole body was read.
+   */
+  private final class CachingBodyStream extends FilterInputStream {
+    private final HttpCacheEntry entry;
+    private final long contentLength;
+
+    @Nullable private Path temporaryFile;
+    @Nullable private DataOutputStream output;
+    private long written;
+
+    CachingBodyStream(InputStream input, HttpCacheEntry entry, long contentLength)
+        throws IOException {
+      super(input);
+      this.entry = entry;
+      this.contentLength = contentLength;
+      temporaryFile = Files.createTempFile(options.optionalDiskDirectory().get(), null, ".tmp");
+      try {
+        output =
+            new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)));
+        entry.writeMetadata(output);
+      } catch (IOException e) {
+        abandon();
+        throw e;
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      int read = super.read();
+      if (read == -1) {
+        commit();
+      } else if (output != null) {
+        try {
+          output.write(read);
+          written++;
+        } catch (IOException e) {
+          abandon();
+        }
+      }
+      return read;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) throws IOException {
+      int read = super.read(bytes, offset, length);
+      if (read == -1) {
+        commit();
+      } else if (read > 0 && output != null) {
+        try {
+          output.write(bytes, offset, read);
+          written += read;
+        } catch (IOException e) {
+          abandon();
+        }
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // The skipped bytes can't be cached
+      abandon();
+      return super.skip(n);
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        abandon();
+      }
+    }
+
+    private void commit() {
+      if (output == null || temporaryFile == null) {
+        return;
+      }
+      if (contentLength != -1 && written != contentLength) {
+        abandon();
+        return;
+      }
+      try {
+        output.close();
+        output = null;
+        move(temporaryFile, cacheFileOf(entry.url()));
+        temporaryFile = null;
+        evictFromDisk();
+      } catch (IOException e) {
+        abandon();
+      }
+    }
+
+    private void abandon() {
+      if (output != null) {
+        try {
+          output.close();
+        } catch (IOException e) {
+          // Deleted below
+        }
+        output = null;
+      }
+      if (temporaryFile != null) {
+        deleteQuietly(temporaryFile);
+        temporaryFile = null;
+      }
+    }
+  }
+}
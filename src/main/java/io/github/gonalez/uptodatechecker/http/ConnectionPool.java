@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps idle keep-alive {@link HttpConnection}s per {@link Address} so they can be reused by later
+ * requests, saving the TCP and TLS handshakes.
+ *
+ * <p>Connections idle for longer than the {@code idleTimeout} are evicted whenever the pool is
+ * used, and at most {@code maxIdleConnections} are kept for each address.
+ */
+@ThreadSafe
+final class ConnectionPool {
+  private final int maxIdleConnections;
+  private final long idleTimeoutNanos;
+
+  @GuardedBy("this")
+  private final Map<Address, ArrayDeque<HttpConnection>> idleConnections = new HashMap<>();
+
+  ConnectionPool(int maxIdleConnections, long idleTimeout, TimeUnit timeUnit) {
+    this.maxIdleConnections = maxIdleConnections;
+    this.idleTimeoutNanos = timeUnit.toNanos(idleTimeout);
+  }
+
+  /** @return a healthy idle connection to the given address, or {@code null} if there is none. */
+  @Nullable
+  HttpConnection acquire(Address address) {
+    while (true) {
+      HttpConnection connection;
+      synchronized (this) {
+        evictExpired();
+        ArrayDeque<HttpConnection> connections = idleConnections.get(address);
+        // Most recently used connections first, those are the least likely to be closed
+        connection = connections == null ? null : connections.pollFirst();
+      }
+      if (connection == null) {
+        return null;
+      }
+      if (connection.isHealthy()) {
+        return connection;
+      }
+      connection.close();
+    }
+  }
+
+  /** Returns the given connection to the pool, or closes it if the pool is already full. */
+  void release(HttpConnection connection) {
+    if (maxIdleConnections <= 0) {
+      connection.close();
+      return;
+    }
+    connection.markIdle();
+    HttpConnection evicted = null;
+    synchronized (this) {
+      evictExpired();
+      ArrayDeque<HttpConnection> connections =
+          idleConnections.computeIfAbsent(connection.address(), unused -> new ArrayDeque<>());
+      connections.addFirst(connection);
+      if (connections.size() > maxIdleConnections) {
+        evicted = connections.pollLast();
+      }
+    }
+    if (evicted != null) {
+      evicted.close();
+    }
+  }
+
+  /** @return the number of idle connections in this pool. */
+  synchronized int idleConnectionCount() {
+    int count = 0;
+    for (ArrayDeque<HttpConnection> connections : idleConnections.values()) {
+      count += connections.size();
+    }
+    return count;
+  }
+
+  /** Closes and removes all the idle connections of this pool. */
+  void evictAll() {
+    List<HttpConnection> evicted = new ArrayList<>();
+    synchronized (this) {
+      for (ArrayDeque<HttpConnection> connections : idleConnections.values()) {
+        evicted.addAll(connections);
+      }
+      idleConnections.clear();
+    }
+    evicted.forEach(HttpConnection::close);
+  }
+
+  @GuardedBy("this")
+  private void evictExpired() {
+    long now = System.nanoTime();
+    Iterator<ArrayDeque<HttpConnection>> iterator = idleConnections.values().iterator();
+    while (iterator.hasNext()) {
+      ArrayDeque<HttpConnection> connections = iterator.next();
+      // Least recently used connections are at the end
+      while (!connections.isEmpty() && connections.peekLast().idleNanos(now) > idleTimeoutNanos) {
+        connections.pollLast().close();
+      }
+      if (connections.isEmpty()) {
+        iterator.remove();
+      }
+    }
+  }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableSet;
+
+import javax.annotation.Nullable;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ProtocolException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/** Minimal HTTP/1.1 codec shared by the socket based {@link HttpClient}s. */
+final class Http1 {
+  /** The {@code User-Agent} we send, some APIs like GitHub reject requests without one. */
+  static final String USER_AGENT = "uptodatechecker";
+
+  // Headers we always set ourselves
+  private static final ImmutableSet<String> CLIENT_HEADERS =
+      ImmutableSet.of(
+          "host", "connection", "accept-encoding", "content-length", "transfer-encoding");
+
+  // Guards against reading an unbounded header line
+  private static final int MAX_LINE_LENGTH = 64 * 1024;
+
+  private Http1() {}
+
+  /**
+   * Returns the request line, headers and body of the given request for the given url. The headers
+   * of the request replace our defaults, except for the ones that depend on how we handle the
+   * connection and the body, which are ignored.
+   */
+  static byte[] encodeRequest(URL url, HttpRequest request) {
+    byte[] body =
+        request.optionalBody().isPresent()
+            ? request.optionalBody().get().getBytes(StandardCharsets.UTF_8)
+            : null;
+    byte[] head = encodeRequestHead(url, request.method(), request.headers(), body);
+    if (body == null) {
+      return head;
+    }
+    byte[] encoded = Arrays.copyOf(head, head.length + body.length);
+    System.arraycopy(body, 0, encoded, head.length, body.length);
+    return encoded;
+  }
+
+  private static byte[] encodeRequestHead(
+      URL url, String method, Map<String, String> headers, @Nullable byte[] body) {
+    Address address = Address.of(url);
+    String target = url.getFile().isEmpty() ? "/" : url.getFile();
+    Map<String, String> allHeaders = new LinkedHashMap<>();
+    allHeaders.put("user-agent", "User-Agent: " + USER_AGENT);
+    allHeaders.put("accept", "Accept: */*");
+    for (Map.Entry<String, String> header : headers.entrySet()) {
+      String name = header.getKey().toLowerCase();
+      if (!CLIENT_HEADERS.contains(name)) {
+        allHeaders.put(name, header.getKey() + ": " + header.getValue());
+      }
+    }
+    StringBuilder head = new StringBuilder(256);
+    head.append(method).append(' ').append(target).append(" HTTP/1.1\r\n");
+    head.append("Host: ").append(address.hostHeader()).append("\r\n");
+    for (String header : allHeaders.values()) {
+      head.append(header).append("\r\n");
+    }
+    if (body != null) {
+      head.append("Content-Length: ").append(body.length).append("\r\n");
+    }
+    head.append("Accept-Encoding: identity\r\n");
+    head.append("Connection: keep-alive\r\n");
+    head.append("\r\n");
+    return head.toString().getBytes(StandardCharsets.ISO_8859_1);
+  }
+
+  /** Writes the given request for the given url and flushes it. */
+  static void writeRequest(OutputStream output, URL url, HttpRequest request)
+      throws IOException {
+    output.write(encodeRequest(url, request));
+    output.flush();
+  }
+
+  /**
+   * Returns the request to follow the given redirect of the given request with, from the given url
+   * to the given location. A {@code 303}, or a {@code 301} or {@code 302} to a {@code POST}, is
+   * followed with a {@code GET} without the body, as browsers do. The {@code Authorization} header
+   * is only sent again to the same address.
+   */
+  static HttpRequest redirectRequest(
+      HttpRequest request, ResponseHead head, URL url, URL location) {
+    int responseCode = head.responseCode();
+    boolean toGet =
+        responseCode == 303
+            ? !request.method().equals("HEAD")
+            : (responseCode == 301 || responseCode == 302) && request.method().equals("POST");
+    boolean sameAddress = Address.of(url).equals(Address.of(location));
+    if (!toGet && sameAddress) {
+      return request;
+    }
+    Map<String, String> headers = new LinkedHashMap<>();
+    for (Map.Entry<String, String> header : request.headers().entrySet()) {
+      String name = header.getKey().toLowerCase();
+      if (!(toGet && name.equals("content-type"))
+          && !(!sameAddress && name.equals("authorization"))) {
+        headers.put(header.getKey(), header.getValue());
+      }
+    }
+    HttpRequest.Builder redirectRequest =
+        request.toBuilder().setUrl(location.toString()).setHeaders(headers);
+    if (toGet) {
+      redirectRequest.setMethod("GET").setOptionalBody(Optional.empty());
+    }
+    return redirectRequest.build();
+  }
+
+  /** Reads the status line and headers of a response, skipping any interim 1xx response. */
+  static ResponseHead readResponseHead(InputStream input) throws IOException {
+    while (true) {
+      String statusLine = readLine(input);
+      ImmutableListMultimap.Builder<String, String> headers = ImmutableListMultimap.builder();
+      String line;
+      while (!(line = readLine(input)).isEmpty()) {
+        int colon = line.indexOf(':');
+        if (colon <= 0) {
+          throw new ProtocolException("Malformed header: " + line);
+        }
+        headers.put(
+            line.substring(0, colon).trim().toLowerCase(), line.substring(colon + 1).trim());
+      }
+      ResponseHead head = parseStatusLine(statusLine, headers.build());
+      if (head.responseCode() >= 200 || head.responseCode() == 101) {
+        return head;
+      }
+    }
+  }
+
+  static ResponseHead parseStatusLine(
+      String statusLine, ImmutableListMultimap<String, String> headers) throws ProtocolException {
+    // HTTP/1.1 200 OK
+    if (!statusLine.startsWith("HTTP/1.") || statusLine.length() < 12) {
+      throw new ProtocolException("Unexpected status line: " + statusLine);
+    }
+    int responseCode;
+    try {
+      responseCode = Integer.parseInt(statusLine.substring(9, 12));
+    } catch (NumberFormatException e) {
+      throw new ProtocolException("Unexpected status line: " + statusLine);
+    }
+    return ResponseHead.create(statusLine.charAt(7) != '0', responseCode, headers);
+  }
+
+  /** @return {@code true} if a response to a {@code GET} with the given head carries a body. */
+  static boolean hasBody(ResponseHead head) {
+    int responseCode = head.responseCode();
+    return responseCode >= 200 && responseCode != 204 && responseCode != 304;
+  }
+
+  /**
+   * Returns {@code true} if the end of the body of the given response is known without closing the
+   * connection, so the connection can be reused once it has been read.
+   */
+  static boolean isSelfDelimited(ResponseHead head) {
+    return !hasBody(head) || isChunked(head) || head.header("content-length") != null;
+  }
+
+  /** @return the value of the {@code Content-Length} header, or {@code -1} if unknown. */
+  static long contentLength(ResponseHead head) {
+    if (!hasBody(head)) {
+      return 0;
+    }
+    if (isChunked(head)) {
+      return -1;
+    }
+    String contentLength = head.header("content-length");
+    if (contentLength == null) {
+      return -1;
+    }
+    try {
+      return Long.parseLong(contentLength);
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /** @return a stream that reads the body of the given response from the connection input. */
+  static InputStream bodyStream(ResponseHead head, InputStream input) {
+    if (!hasBody(head)) {
+      return new FixedLengthInputStream(input, 0);
+    }
+    if (isChunked(head)) {
+      return new ChunkedInputStream(input);
+    }
+    long contentLength = contentLength(head);
+    if (contentLength != -1) {
+      return new FixedLengthInputStream(input, contentLength);
+    }
+    // Read until the server closes the connection
+    return input;
+  }
+
+  private static boolean isChunked(ResponseHead head) {
+    String transferEncoding = head.header("transfer-encoding");
+    return transferEncoding != null && transferEncoding.toLowerCase().contains("chunked");
+  }
+
+  /** Reads a line terminated by {@code CRLF}, or a single {@code LF}, without the terminator. */
+  static String readLine(InputStream input) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+    int b;
+    while ((b = input.read()) != '\n') {
+      if (b == -1) {
+        throw new EOFException("Unexpected end of stream");
+      }
+      if (line.size() >= MAX_LINE_LENGTH) {
+        throw new ProtocolException("Line too long");
+      }
+      line.write(b);
+    }
+    byte[] bytes = line.toByteArray();
+    int length = bytes.length;
+    if (length > 0 && bytes[length - 1] == '\r') {
+      length--;
+    }
+    return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+  }
+
+  /** A stream that reads exactly {@code length} bytes from the connection input. */
+  static final class FixedLengthInputStream extends FilterInputStream {
+    private long remaining;
+
+    FixedLengthInputStream(InputStream input, long length) {
+      super(input);
+      this.remaining = length;
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (remaining == 0) {
+        return -1;
+      }
+      int read = in.read(b, off, (int) Math.min(len, remaining));
+      if (read == -1) {
+        throw new EOFException("Connection closed before the end of the body");
+      }
+      remaining -= read;
+      return read;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return (int) Math.min(in.available(), remaining);
+    }
+
+    @Override
+    public void close() {
+      // The connection stream is owned by the connection
+    }
+  }
+
+  /** A stream that decodes a {@code Transfer-Encoding: chunked} body. */
+  static final class ChunkedInputStream extends FilterInputStream {
+    private long chunkRemaining;
+    private boolean firstChunk = true;
+    private boolean done;
+
+    ChunkedInputStream(InputStream input) {
+      super(input);
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (done) {
+        return -1;
+      }
+      if (chunkRemaining == 0) {
+        readChunkSize();
+        if (done) {
+          return -1;
+        }
+      }
+      int read = in.read(b, off, (int) Math.min(len, chunkRemaining));
+      if (read == -1) {
+        throw new EOFException("Connection closed before the end of the body");
+      }
+      chunkRemaining -= read;
+      return read;
+    }
+
+    private void readChunkSize() throws IOException {
+      if (!firstChunk) {
+        // The CRLF after the previous chunk data
+        readLine(in);
+      }
+      firstChunk = false;
+      String line = readLine(in);
+      int extension = line.indexOf(';');
+      String size = (extension == -1 ? line : line.substring(0, extension)).trim();
+      try {
+        chunkRemaining = Long.parseLong(size, 16);
+      } catch (NumberFormatException e) {
+        throw new ProtocolException("Malformed chunk size: " + line);
+      }
+      if (chunkRemaining == 0) {
+        // Skip the trailers, if any
+        while (!readLine(in).isEmpty()) {}
+        done = true;
+      }
+    }
+
+    @Override
+    public int available() throws IOException {
+      return done ? 0 : (int) Math.min(in.available(), chunkRemaining);
+    }
+
+    @Override
+    public void close() {
+      // The connection stream is owned by the connection
+    }
+  }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.NotThreadSafe;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+
+/**
+ * An incremental HTTP/1.1 response parser, it consumes the bytes of a response as they arrive
+ * without blocking and hands the body to a {@link BodySink}.
+ */
+@NotThreadSafe
+final class Http1ResponseParser {
+  // Guards against buffering an unbounded response head
+  private static final int MAX_HEAD_SIZE = 64 * 1024;
+
+  /** Receives the body of the response as it is parsed. */
+  interface BodySink {
+    /** Called with the next bytes of the body, the buffer is only valid during the call. */
+    void onBodyData(ByteBuffer data) throws IOException;
+  }
+
+  private enum State {
+    HEAD,
+    FIXED_LENGTH_BODY,
+    CHUNK_SIZE,
+    CHUNK_DATA,
+    CHUNK_DATA_END,
+    TRAILERS,
+    BODY_UNTIL_CLOSE,
+    DONE
+  }
+
+  private final ByteArrayOutputStream headBuffer = new ByteArrayOutputStream(512);
+  private final StringBuilder lineBuffer = new StringBuilder();
+
+  private State state = State.HEAD;
+  // Length of the head line being read, an empty line ends the head
+  private int headLineLength;
+  private ResponseHead head;
+  private long remaining;
+
+  /** @return the head of the response, or {@code null} if it has not been fully parsed yet. */
+  @Nullable
+  ResponseHead head() {
+    return head;
+  }
+
+  /** @return {@code true} if the whole response has been parsed. */
+  boolean isDone() {
+    return state == State.DONE;
+  }
+
+  /**
+   * Consumes as many bytes as possible from the given buffer. Parsing stops right after the head
+   * is complete so the caller can look at it before reading the body.
+   *
+   * @return {@code true} if the head was completed by this call.
+   */
+  boolean parse(ByteBuffer input, BodySink sink) throws IOException {
+    while (input.hasRemaining() && state != State.DONE) {
+      switch (state) {
+        case HEAD:
+          if (parseHead(input)) {
+            return true;
+          }
+          break;
+        case FIXED_LENGTH_BODY:
+        case CHUNK_DATA:
+          {
+            int length = (int) Math.min(input.remaining(), remaining);
+            deliver(input, length, sink);
+            remaining -= length;
+            if (remaining == 0) {
+              state = state == State.CHUNK_DATA ? State.CHUNK_DATA_END : State.DONE;
+            }
+            break;
+          }
+        case BODY_UNTIL_CLOSE:
+          deliver(input, input.remaining(), sink);
+          break;
+        case CHUNK_SIZE:
+          {
+            String line = readLine(input);
+            if (line != null) {
+              int extension = line.indexOf(';');
+              String size = (extension == -1 ? line : line.substring(0, extension)).trim();
+              try {
+                remaining = Long.parseLong(size, 16);
+              } catch (NumberFormatException e) {
+                throw new ProtocolException("Malformed chunk size: " + line);
+              }
+              state = remaining == 0 ? State.TRAILERS : State.CHUNK_DATA;
+            }
+            break;
+          }
+        case CHUNK_DATA_END:
+          if (readLine(input) != null) {
+            state = State.CHUNK_SIZE;
+          }
+          break;
+        case TRAILERS:
+          {
+            String line = readLine(input);
+            if (line != null && line.isEmpty()) {
+              state = State.DONE;
+            }
+            break;
+          }
+        default:
+          throw new AssertionError(state);
+      }
+    }
+    return false;
+  }
+
+  /** Called when the peer closed the connection, fails if the response is not complete. */
+  void endOfStream() throws IOException {
+    if (state == State.BODY_UNTIL_CLOSE) {
+      state = State.DONE;
+    } else if (state != State.DONE) {
+      throw new EOFException("Connection closed before the end of the response");
+    }
+  }
+
+  private boolean parseHead(ByteBuffer input) throws IOException {
+    while (input.hasRemaining()) {
+      byte b = input.get();
+      headBuffer.write(b);
+      if (b != '\n') {
+        if (b != '\r') {
+          headLineLength++;
+        }
+      } else if (headLineLength > 0) {
+        headLineLength = 0;
+      } else {
+        ResponseHead responseHead =
+            Http1.readResponseHead(new ByteArrayInputStream(headBuffer.toByteArray()));
+        headBuffer.reset();
+        if (responseHead.responseCode() < 200 && responseHead.responseCode() != 101) {
+          // An interim response, the final one follows
+          continue;
+        }
+        head = responseHead;
+        startBody();
+        return true;
+      }
+      if (headBuffer.size() > MAX_HEAD_SIZE) {
+        throw new ProtocolException("Response head too large");
+      }
+    }
+    return false;
+  }
+
+  private void startBody() {
+    if (!Http1.hasBody(head)) {
+      state = State.DONE;
+      return;
+    }
+    long contentLength = Http1.contentLength(head);
+    if (contentLength == -1) {
+      state = Http1.isSelfDelimited(head) ? State.CHUNK_SIZE : State.BODY_UNTIL_CLOSE;
+    } else {
+      remaining = contentLength;
+      state = remaining == 0 ? State.DONE : State.FIXED_LENGTH_BODY;
+    }
+  }
+
+  private static void deliver(ByteBuffer input, int length, BodySink sink) throws IOException {
+    ByteBuffer data = input.duplicate();
+    data.limit(data.position() + length);
+    input.position(input.position() + length);
+    sink.onBodyData(data);
+  }
+
+  /** @return the next line without its terminator, or {@code null} if it is not complete yet. */
+  @Nullable
+  private String readLine(ByteBuffer input) throws IOException {
+    while (input.hasRemaining()) {
+      char c = (char) (input.get() & 0xff);
+      if (c == '\n') {
+        int length = lineBuffer.length();
+        if (length > 0 && lineBuffer.charAt(length - 1) == '\r') {
+          lineBuffer.setLength(length - 1);
+        }
+        String line = lineBuffer.toString();
+        lineBuffer.setLength(0);
+        return line;
+      }
+      if (lineBuffer.length() >= MAX_HEAD_SIZE) {
+        throw new ProtocolException("Line too long");
+      }
+      lineBuffer.append(c);
+    }
+    return null;
+  }
+}
@@ -0,0 +1,404 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A response stored by a {@link CachingHttpClient}, with what is needed to tell whether it is still
+ * fresh as defined by RFC 7234. The body is either held in memory or in a cache file.
+ */
+@Immutable
+final class HttpCacheEntry {
+  // Without an explicit expiration time, a response is fresh for this fraction of the time since
+  // it was last modified (RFC 7234 section 4.2.2)
+  private static final double HEURISTIC_FRESHNESS_FRACTION = 0.1;
+
+  // Headers of a 304 response that don't describe the stored response
+  private static final ImmutableSet<String> IGNORED_UPDATE_HEADERS =
+      ImmutableSet.of("content-length", "transfer-encoding", "connection");
+
+  private static final Splitter LIST_SPLITTER = Splitter.on(',').trimResults().omitEmptyStrings();
+
+  private final String url;
+  private final ImmutableListMultimap<String, String> headers;
+  private final ImmutableMap<String, String> varyHeaders;
+  private final long receivedAt;
+  @Nullable private final byte[] body;
+  @Nullable private final Path file;
+  private final long bodyOffset;
+  private final long bodyLength;
+
+  private HttpCacheEntry(
+      String url,
+      ImmutableListMultimap<String, String> headers,
+      ImmutableMap<String, String> varyHeaders,
+      long receivedAt,
+      @Nullable byte[] body,
+      @Nullable Path file,
+      long bodyOffset,
+      long bodyLength) {
+    this.url = checkNotNull(url);
+    this.headers = checkNotNull(headers);
+    this.varyHeaders = checkNotNull(varyHeaders);
+    this.receivedAt = receivedAt;
+    this.body = body;
+    this.file = file;
+    this.bodyOffset = bodyOffset;
+    this.bodyLength = bodyLength;
+  }
+
+  /**
+   * Returns an entry for the given response to the given request, without its body yet, or {@code
+   * null} if the response can't be stored.
+   */
+  @Nullable
+  static HttpCacheEntry of(HttpRequest request, HttpResponse response, long receivedAt) {
+    Map<String, String> cacheControl = directivesOf(response.headers().get("cache-control"));
+    if (response.responseCode() != 200 || cacheControl.containsKey("no-store")) {
+      return null;
+    }
+    ImmutableMap.Builder<String, String> varyHeaders = ImmutableMap.builder();
+    for (String vary : response.headers().get("vary")) {
+      for (String name : LIST_SPLITTER.split(vary)) {
+        if (name.equals("*")) {
+          return null;
+        }
+        String value = headerOf(request, name);
+        varyHeaders.put(name.toLowerCase(), value == null ? "" : value);
+      }
+    }
+    HttpCacheEntry entry =
+        new HttpCacheEntry(
+            request.url(), response.headers(), varyHeaders.build(), receivedAt, null, null, 0, -1);
+    // Nothing to gain from storing a response that can never be fresh nor revalidated
+    if (entry.freshnessLifetime() <= 0 && !entry.hasValidators()) {
+      return null;
+    }
+    return entry;
+  }
+
+  /** @return the entry stored in the given cache file. */
+  static HttpCacheEntry read(Path file) throws IOException {
+    try (DataInputStream input = new DataInputStream(Files.newInputStream(file))) {
+      int metadataLength = input.readInt();
+      String url = input.readUTF();
+      long receivedAt = input.readLong();
+      ImmutableListMultimap.Builder<String, String> headers = ImmutableListMultimap.builder();
+      for (int i = input.readInt(); i > 0; i--) {
+        headers.put(input.readUTF(), input.readUTF());
+      }
+      ImmutableMap.Builder<String, String> varyHeaders = ImmutableMap.builder();
+      for (int i = input.readInt(); i > 0; i--) {
+        varyHeaders.put(input.readUTF(), input.readUTF());
+      }
+      long bodyOffset = 4 + metadataLength;
+      return new HttpCacheEntry(
+          url,
+          headers.build(),
+          varyHeaders.build(),
+          receivedAt,
+          null,
+          file,
+          bodyOffset,
+          Files.size(file) - bodyOffset);
+    }
+  }
+
+  /** Writes the metadata of this entry, which goes before its body in a cache file. */
+  void writeMetadata(DataOutputStream output) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream metadata = new DataOutputStream(bytes);
+    metadata.writeUTF(url);
+    metadata.writeLong(receivedAt);
+    metadata.writeInt(headers.size());
+    for (Map.Entry<String, String> header : headers.entries()) {
+      metadata.writeUTF(header.getKey());
+      metadata.writeUTF(header.getValue());
+    }
+    metadata.writeInt(varyHeaders.size());
+    for (Map.Entry<String, String> varyHeader : varyHeaders.entrySet()) {
+      metadata.writeUTF(varyHeader.getKey());
+      metadata.writeUTF(varyHeader.getValue());
+    }
+    output.writeInt(bytes.size());
+    bytes.writeTo(output);
+  }
+
+  /** @return this entry with the given body, held in memory. */
+  HttpCacheEntry withBody(byte[] body) {
+    return new HttpCacheEntry(url, headers, varyHeaders, receivedAt, body, null, 0, body.length);
+  }
+
+  /**
+   * Returns this entry updated with the headers of a {@code 304 Not Modified} response to a
+   * revalidation of it.
+   */
+  HttpCacheEntry revalidated(ImmutableListMultimap<String, String> notModifiedHeaders, long now) {
+    ImmutableListMultimap.Builder<String, String> updatedHeaders = ImmutableListMultimap.builder();
+    for (Map.Entry<String, String> header : headers.entries()) {
+      if (IGNORED_UPDATE_HEADERS.contains(header.getKey())
+          || !notModifiedHeaders.containsKey(header.getKey())) {
+        updatedHeaders.put(header);
+      }
+    }
+    for (Map.Entry<String, String> header : notModifiedHeaders.entries()) {
+      if (!IGNORED_UPDATE_HEADERS.contains(header.getKey())) {
+        updatedHeaders.put(header);
+      }
+    }
+    return new HttpCacheEntry(
+        url, updatedHeaders.build(), varyHeaders, now, body, file, bodyOffset, bodyLength);
+  }
+
+  /** @return the url of the stored response. */
+  String url() {
+    return url;
+  }
+
+  /** @return {@code true} if the stored response can be used for the given request. */
+  boolean matches(HttpRequest request) {
+    if (!url.equals(request.url())) {
+      return false;
+    }
+    for (Map.Entry<String, String> varyHeader : varyHeaders.entrySet()) {
+      String value = headerOf(request, varyHeader.getKey());
+      if (!varyHeader.getValue().equals(value == null ? "" : value)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /** @return {@code true} if the stored response can be used without revalidating it. */
+  boolean isFresh(long now) {
+    Map<String, String> cacheControl = directivesOf(headers.get("cache-control"));
+    return !cacheControl.containsKey("no-cache") && currentAge(now) < freshnessLifetime();
+  }
+
+  /**
+   * Returns {@code true} if a conditional request with the given validators would get a {@code 304
+   * Not Modified} response for the stored one.
+   */
+  boolean isNotModified(@Nullable String ifNoneMatch, @Nullable String ifModifiedSince) {
+    if (ifNoneMatch != null) {
+      String entityTag = entityTag();
+      // The weak comparison of RFC 7232 section 2.3.2
+      return entityTag != null
+          && LIST_SPLITTER.splitToList(ifNoneMatch).stream()
+              .anyMatch(tag -> tag.equals("*") || weak(tag).equals(weak(entityTag)));
+    }
+    return ifModifiedSince != null && ifModifiedSince.equals(lastModified());
+  }
+
+  /** @return {@code true} if the stored response has a validator to revalidate it with. */
+  boolean hasValidators() {
+    return entityTag() != null || lastModified() != null;
+  }
+
+  @Nullable
+  String entityTag() {
+    return header("etag");
+  }
+
+  @Nullable
+  String lastModified() {
+    return header("last-modified");
+  }
+
+  /** @return {@code true} if the body of this entry is held in memory. */
+  boolean hasBodyInMemory() {
+    return body != null;
+  }
+
+  /** @return the number of bytes this entry holds in memory. */
+  int weight() {
+    return body == null ? 0 : body.length;
+  }
+
+  /** Copies the body of this entry to the given output. */
+  void copyBodyTo(OutputStream output) throws IOException {
+    if (body != null) {
+      output.write(body);
+      return;
+    }
+    try (InputStream input = openBody()) {
+      ByteStreams.copy(input, output);
+    }
+  }
+
+  /** @return the whole body of this entry. */
+  byte[] readBody() throws IOException {
+    if (body != null) {
+      return body;
+    }
+    try (InputStream input = openBody()) {
+      return ByteStreams.toByteArray(input);
+    }
+  }
+
+  /** @return the stored response, with its body streamed from the cache file if not in memory. */
+  HttpResponse toResponse(boolean streaming) throws IOException {
+    HttpResponse.Builder response = HttpResponse.newBuilder().setResponseCode(200);
+    response.setHeaders(headers);
+    if (body != null) {
+      response.setBody(body);
+    } else if (streaming) {
+      response.setResponseBody(HttpResponseBody.of(openBody(), bodyLength));
+    } else {
+      response.setBody(readBody());
+    }
+    return response.build();
+  }
+
+  /** @return a {@code 304 Not Modified} response for a conditional request of the stored one. */
+  HttpResponse notModified() {
+    return HttpResponse.newBuilder()
+        .setResponseCode(304)
+        .setHeaders(headers)
+        .setBody(new byte[0])
+        .build();
+  }
+
+  private InputStream openBody() throws IOException {
+    checkNotNull(file);
+    InputStream input = Files.newInputStream(file);
+    try {
+      ByteStreams.skipFully(input, bodyOffset);
+    } catch (IOException e) {
+      input.close();
+      throw e;
+    }
+    return input;
+  }
+
+  /** @return how long, in milliseconds, the stored response is fresh since it was generated. */
+  private long freshnessLifetime() {
+    Map<String, String> cacheControl = directivesOf(headers.get("cache-control"));
+    String maxAge = cacheControl.get("max-age");
+    if (maxAge != null) {
+      return TimeUnit.SECONDS.toMillis(parseSeconds(maxAge));
+    }
+    long date = date();
+    String expires = header("expires");
+    if (expires != null) {
+      // An invalid date, like "0", means already expired
+      long expiresAt = dateOf(expires);
+      return expiresAt == -1 ? 0 : expiresAt - date;
+    }
+    long lastModified = dateOf(lastModified());
+    if (lastModified != -1 && lastModified < date) {
+      return (long) ((date - lastModified) * HEURISTIC_FRESHNESS_FRACTION);
+    }
+    return 0;
+  }
+
+  /** @return how long ago, in milliseconds, the stored response was generated by the server. */
+  private long currentAge(long now) {
+    long apparentAge = Math.max(0, receivedAt - date());
+    String age = header("age");
+    long ageValue = age == null ? 0 : TimeUnit.SECONDS.toMillis(parseSeconds(age));
+    return Math.max(apparentAge, ageValue) + Math.max(0, now - receivedAt);
+  }
+
+  private long date() {
+    long date = dateOf(header("date"));
+    return date == -1 ? receivedAt : date;
+  }
+
+  @Nullable
+  private String header(String name) {
+    List<String> values = headers.get(name);
+    return values.isEmpty() ? null : values.get(0);
+  }
+
+  /** @return the directives of the given {@code Cache-Control} headers, by lower case name. */
+  static Map<String, String> directivesOf(List<String> cacheControls) {
+    Map<String, String> directives = new HashMap<>();
+    for (String cacheControl : cacheControls) {
+      for (String directive : LIST_SPLITTER.split(cacheControl)) {
+        int equals = directive.indexOf('=');
+        if (equals == -1) {
+          directives.put(directive.toLowerCase(), "");
+        } else {
+          directives.put(
+              directive.substring(0, equals).trim().toLowerCase(),
+              directive.substring(equals + 1).trim().replace("\"", ""));
+        }
+      }
+    }
+    return directives;
+  }
+
+  /** @return the value of the given request header, ignoring the case of its name. */
+  @Nullable
+  static String headerOf(HttpRequest request, String name) {
+    for (Map.Entry<String, String> header : request.headers().entrySet()) {
+      if (header.getKey().equalsIgnoreCase(name)) {
+        return header.getValue();
+      }
+    }
+    return null;
+  }
+
+  private static String weak(String entityTag) {
+    return entityTag.startsWith("W/") ? entityTag.substring(2) : entityTag;
+  }
+
+  private static long parseSeconds(String seconds) {
+    try {
+      return Math.max(0, Long.parseLong(seconds));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /** @return the given HTTP date in milliseconds since the epoch, or {@code -1} if invalid. */
+  private static long dateOf(@Nullable String date) {
+    if (date == null) {
+      return -1;
+    }
+    try {
+      return DateTimeFormatter.RFC_1123_DATE_TIME.parse(date, Instant::from).toEpochMilli();
+    } catch (DateTimeParseException e) {
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import com.google.auto.value.AutoValue;
+
+import javax.annotation.concurrent.Immutable;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/** Options for the cache of a {@link CachingHttpClient}. */
+@AutoValue
+@Immutable
+public abstract class HttpCacheOptions {
+  public static final HttpCacheOptions DEFAULT_OPTIONS = HttpCacheOptions.newBuilder().build();
+
+  /** @return a new builder to create a {@link HttpCacheOptions}. */
+  public static Builder newBuilder() {
+    return new AutoValue_HttpCacheOptions.Builder()
+        .setMaximumMemorySize(8 * 1024 * 1024)
+        .setOptionalDiskDirectory(Optional.empty())
+        .setMaximumDiskSize(256 * 1024 * 1024);
+  }
+
+  /** @return the maximum number of bytes of response bodies cached in memory. */
+  public abstract long maximumMemorySize();
+
+  /**
+   * Returns the directory to cache responses on disk in, if any. Streamed responses, like
+   * downloads, are only cached on disk.
+   */
+  public abstract Optional<Path> optionalDiskDirectory();
+
+  /** @return the maximum number of bytes cached on disk. */
+  public abstract long maximumDiskSize();
+
+  /** Builder to create {@link HttpCacheOptions}s. */
+  @AutoValue.Builder
+  public abstract static class Builder {
+    /** Sets the maximum number of bytes of response bodies cached in memory. */
+    public abstract Builder setMaximumMemorySize(long maximumMemorySize);
+
+    /** Sets the directory to cache responses on disk in. */
+    public abstract Builder setOptionalDiskDirectory(Optional<Path> optionalDiskDirectory);
+
+    /** Sets the maximum number of bytes cached on disk. */
+    public abstract Builder setMaximumDiskSize(long maximumDiskSize);
+
+    /** @return a new {@link HttpCacheOptions} based from this builder. */
+    public abstract HttpCacheOptions build();
+  }
+}
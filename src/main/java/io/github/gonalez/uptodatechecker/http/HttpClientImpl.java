@@ -17,6 +17,7 @@ package io.github.gonalez.uptodatechecker.http;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
@@ -25,9 +26,13 @@ import io.github.gonalez.uptodatechecker.concurrent.LegacyFutures;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Executor;
 
 /** A basic implementation for {@link HttpClient} which uses {@link HttpURLConnection}. */
@@ -52,6 +57,7 @@ public class HttpClientImpl implements HttpClient {
         LegacyFutures.callAsync(
             () -> {
               HttpURLConnection urlConnection = null;
+              boolean completed = false;
               try {
                 urlConnection = (HttpURLConnection) url.openConnection();
                 urlConnection.setConnectTimeout(request.options().connectTimeout());
@@ -59,23 +65,46 @@ public class HttpClientImpl implements HttpClient {
 
                 urlConnection.setDoInput(true);
                 urlConnection.setInstanceFollowRedirects(true);
+                urlConnection.setRequestMethod(request.method());
+                urlConnection.setDoOutput(request.optionalBody().isPresent());
+                request.headers().forEach(urlConnection::setRequestProperty);
 
                 int responseCode;
                 try {
                   urlConnection.connect();
+                  if (request.optionalBody().isPresent()) {
+                    try (OutputStream output = urlConnection.getOutputStream()) {
+                      output.write(request.optionalBody().get().getBytes(StandardCharsets.UTF_8));
+                    }
+                  }
                   responseCode = urlConnection.getResponseCode();
                 } catch (IOException e) {
                   return Futures.immediateFailedFuture(
                       UpToDateCheckerExceptionCode.FAIL_TO_CONNECT_CODE.toException());
                 }
+                if (responseCode >= 400) {
+                  throw new HttpResponseException(responseCode, url.toString());
+                }
                 HttpResponse.Builder builder =
-                    HttpResponse.newBuilder().setResponseCode(responseCode);
-                try (InputStream input = urlConnection.getInputStream()) {
-                  builder.setBody(ByteStreams.toByteArray(input));
+                    HttpResponse.newBuilder()
+                        .setResponseCode(responseCode)
+                        .setHeaders(headersOf(urlConnection));
+                if (request.streaming()) {
+                  // Closing the stream gives the connection back to the keep-alive cache
+                  builder.setResponseBody(
+                      HttpResponseBody.of(
+                          urlConnection.getInputStream(), urlConnection.getContentLengthLong()));
+                } else {
+                  try (InputStream input = urlConnection.getInputStream()) {
+                    builder.setBody(ByteStreams.toByteArray(input));
+                  }
                 }
+                completed = true;
                 return Futures.immediateFuture(builder.build());
               } finally {
-                if (urlConnection != null) {
+                // Once the body is fully read and closed the connection goes back to the JDK
+                // keep-alive cache, only disconnect if something went wrong.
+                if (urlConnection != null && !completed) {
                   urlConnection.disconnect();
                 }
               }
@@ -85,4 +114,15 @@ public class HttpClientImpl implements HttpClient {
         Futures::immediateFailedFuture,
         executor);
   }
+
+  private static ImmutableListMultimap<String, String> headersOf(HttpURLConnection urlConnection) {
+    ImmutableListMultimap.Builder<String, String> headers = ImmutableListMultimap.builder();
+    for (Map.Entry<String, List<String>> header : urlConnection.getHeaderFields().entrySet()) {
+      // The status line is mapped to a null key
+      if (header.getKey() != null) {
+        headers.putAll(header.getKey().toLowerCase(), header.getValue());
+      }
+    }
+    return headers.build();
+  }
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+/** A blocking HTTP/1.1 connection to an {@link Address} that can be reused between requests. */
+final class HttpConnection implements Closeable {
+  private final Address address;
+  private final Socket socket;
+  private final InputStream input;
+  private final OutputStream output;
+
+  private long idleAtNanos;
+
+  private HttpConnection(Address address, Socket socket) throws IOException {
+    this.address = checkNotNull(address);
+    this.socket = checkNotNull(socket);
+    this.input = new BufferedInputStream(socket.getInputStream());
+    this.output = new BufferedOutputStream(socket.getOutputStream());
+  }
+
+  /**
+   * Opens a new connection to the given address, the TLS handshake is performed using the given
+   * {@code sslSocketFactory} so sessions cached by it can be resumed.
+   */
+  static HttpConnection connect(
+      Address address, int connectTimeout, SSLSocketFactory sslSocketFactory) throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.setTcpNoDelay(true);
+      socket.connect(new InetSocketAddress(address.host(), address.port()), connectTimeout);
+      if (address.isSecure()) {
+        SSLSocket sslSocket =
+            (SSLSocket) sslSocketFactory.createSocket(
+                socket, address.host(), address.port(), true);
+        SSLParameters sslParameters = sslSocket.getSSLParameters();
+        sslParameters.setEndpointIdentificationAlgorithm("HTTPS");
+        sslSocket.setSSLParameters(sslParameters);
+        sslSocket.startHandshake();
+        socket = sslSocket;
+      }
+      return new HttpConnection(address, socket);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  Address address() {
+    return address;
+  }
+
+  InputStream input() {
+    return input;
+  }
+
+  OutputStream output() {
+    return output;
+  }
+
+  void setReadTimeout(int readTimeout) throws IOException {
+    socket.setSoTimeout(readTimeout);
+  }
+
+  /** Marks this connection as idle, starting from now. */
+  void markIdle() {
+    idleAtNanos = System.nanoTime();
+  }
+
+  /** @return for how long, in nanoseconds, this connection has been idle. */
+  long idleNanos(long nowNanos) {
+    return nowNanos - idleAtNanos;
+  }
+
+  /**
+   * Returns {@code true} if this idle connection can still be used. The peer may have closed the
+   * connection while it was idle, in which case a read returns end of stream right away.
+   */
+  boolean isHealthy() {
+    if (socket.isClosed() || socket.isInputShutdown() || socket.isOutputShutdown()) {
+      return false;
+    }
+    try {
+      int readTimeout = socket.getSoTimeout();
+      try {
+        socket.setSoTimeout(1);
+        // Either the end of the stream or unexpected data that we can't tell which response it
+        // belongs to, the connection can't be reused in both cases.
+        input.read();
+        return false;
+      } finally {
+        socket.setSoTimeout(readTimeout);
+      }
+    } catch (SocketTimeoutException e) {
+      return true;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      socket.close();
+    } catch (IOException ignored) {
+    }
+  }
+}
@@ -16,9 +16,12 @@
 package io.github.gonalez.uptodatechecker.http;
 
 import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableMap;
 import io.github.gonalez.uptodatechecker.Options;
 
 import javax.annotation.concurrent.Immutable;
+import java.util.Map;
+import java.util.Optional;
 
 /** Request of {@link HttpResponse}. */
 @AutoValue
@@ -26,24 +29,63 @@ import javax.annotation.concurrent.Immutable;
 public abstract class HttpRequest {
   /** @return a new builder to create a {@link HttpRequest}.*/
   public static Builder newBuilder() {
-    return new AutoValue_HttpRequest.Builder().setOptions(Options.DEFAULT_OPTIONS);
+    return new AutoValue_HttpRequest.Builder()
+        .setOptions(Options.DEFAULT_OPTIONS)
+        .setMethod("GET")
+        .setHeaders(ImmutableMap.of())
+        .setOptionalBody(Optional.empty())
+        .setStreaming(false);
   }
 
   /** @return the url to perform the request. */
   public abstract String url();
 
+  /** @return the method of the request, {@code GET} by default. */
+  public abstract String method();
+
   /** @return the options to be used for the request. */
   public abstract Options options();
 
+  /**
+   * Returns the headers to send with the request. Headers that the client needs to manage itself,
+   * like {@code Host} or {@code Connection}, may be ignored.
+   */
+  public abstract ImmutableMap<String, String> headers();
+
+  /** @return the body to send with the request, encoded in UTF-8. */
+  public abstract Optional<String> optionalBody();
+
+  /**
+   * Returns {@code true} if the body of the response should be streamed from the connection rather
+   * than read into memory before completing the request, in which case the {@link HttpResponse}
+   * must be closed once done with it.
+   */
+  public abstract boolean streaming();
+
+  /** @return a new builder initialized with the values of this request. */
+  public abstract Builder toBuilder();
+
   /** Builder for {@link HttpRequest}. */
   @AutoValue.Builder
   public abstract static class Builder {
     /** Sets the url of the request. */
     public abstract Builder setUrl(String url);
 
+    /** Sets the method of the request. */
+    public abstract Builder setMethod(String method);
+
     /** Sets the options of the request. */
     public abstract Builder setOptions(Options options);
 
+    /** Sets the headers to send with the request. */
+    public abstract Builder setHeaders(Map<String, String> headers);
+
+    /** Sets the optional body to send with the request. */
+    public abstract Builder setOptionalBody(Optional<String> optionalBody);
+
+    /** Sets whether the body of the response should be streamed. */
+    public abstract Builder setStreaming(boolean streaming);
+
     /** @return a new {@link HttpRequest} based from this builder. */
     public abstract HttpRequest build();
   }
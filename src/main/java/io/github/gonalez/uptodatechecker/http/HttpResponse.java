@@ -16,20 +16,50 @@
 package io.github.gonalez.uptodatechecker.http;
 
 import com.google.auto.value.AutoValue;
-import javax.annotation.concurrent.Immutable;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableListMultimap;
+
+import javax.annotation.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
 
-/** Response of {@link HttpClient#requestAsync(HttpRequest)}. */
+/**
+ * Response of {@link HttpClient#requestAsync(HttpRequest)}. If the request was {@link
+ * HttpRequest#streaming() streaming}, the body is read from the connection while it is consumed
+ * and the response must be closed once done with it.
+ */
 @AutoValue
-@Immutable
-public abstract class HttpResponse {
+public abstract class HttpResponse implements Closeable {
   /** @return a new builder to create a {@link HttpResponse}.*/
   public static HttpResponse.Builder newBuilder() {
-    return new AutoValue_HttpResponse.Builder();
+    return new AutoValue_HttpResponse.Builder().setHeaders(ImmutableListMultimap.of());
+  }
+
+  /** @return the body of the response, buffered or streamed. */
+  public abstract HttpResponseBody responseBody();
+
+  /**
+   * Returns the whole body of the response, a streamed body is read into memory on the first call.
+   *
+   * @see HttpResponseBody#bytes()
+   */
+  public byte[] body() {
+    return responseBody().bytes();
+  }
+
+  /** @return a stream to read the body of the response, see {@link HttpResponseBody#stream()}. */
+  public InputStream bodyStream() {
+    return responseBody().stream();
   }
 
-  /** @return the body of the response. */
-  public abstract byte[] body();
+  /** @return a channel to read the body of the response, see {@link HttpResponseBody#channel()}. */
+  public ReadableByteChannel bodyChannel() {
+    return responseBody().channel();
+  }
 
   /** @return the {@link #body() response body} as a {@link String}. */
   public String bodyString() {
@@ -39,15 +69,39 @@ public abstract class HttpResponse {
   /** @return the code of the response. */
   public abstract int responseCode();
 
+  /** @return the headers of the response, with lower case names. */
+  public abstract ImmutableListMultimap<String, String> headers();
+
+  /** @return the first value of the given header, or {@code null} if the response doesn't have it. */
+  @Nullable
+  public String header(String name) {
+    ImmutableList<String> values = headers().get(name.toLowerCase());
+    return values.isEmpty() ? null : values.get(0);
+  }
+
+  /** Closes the body of the response, releasing the connection if it is streamed. */
+  @Override
+  public void close() throws IOException {
+    responseBody().close();
+  }
+
   /** Builder for {@link HttpResponse}. */
   @AutoValue.Builder
   public abstract static class Builder {
     /** Sets the body of the response. */
-    public abstract Builder setBody(byte[] body);
+    public abstract Builder setResponseBody(HttpResponseBody responseBody);
+
+    /** Sets the body of the response to the given bytes. */
+    public Builder setBody(byte[] body) {
+      return setResponseBody(HttpResponseBody.of(body));
+    }
 
     /** Sets the code of the response. */
     public abstract Builder setResponseCode(int responseCode);
 
+    /** Sets the headers of the response, their names must be in lower case. */
+    public abstract Builder setHeaders(ImmutableListMultimap<String, String> headers);
+
     /** @return a new {@link HttpResponse} based from this builder. */
     public abstract HttpResponse build();
   }
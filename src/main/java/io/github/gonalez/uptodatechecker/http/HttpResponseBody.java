@@ -0,0 +1,146 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.io.ByteStreams;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * The body of a {@link HttpResponse}, either already buffered in memory or streamed from the
+ * connection while it is read.
+ *
+ * <p>A streamed body can be read only once, through {@link #stream()}, {@link #channel()} or
+ * {@link #bytes()}, and it must be {@link #close() closed} once done with it so the connection can
+ * be released. Closing a buffered body does nothing.
+ */
+@SuppressWarnings("UnstableApiUsage")
+@ThreadSafe
+public final class HttpResponseBody implements Closeable {
+  private final long contentLength;
+
+  @GuardedBy("this")
+  @Nullable
+  private InputStream stream;
+
+  @GuardedBy("this")
+  @Nullable
+  private byte[] bytes;
+
+  @GuardedBy("this")
+  private boolean consumed;
+
+  private HttpResponseBody(@Nullable InputStream stream, @Nullable byte[] bytes, long contentLength) {
+    this.stream = stream;
+    this.bytes = bytes;
+    this.contentLength = contentLength;
+  }
+
+  /** @return a body with the given, already read, bytes. */
+  public static HttpResponseBody of(byte[] bytes) {
+    checkNotNull(bytes);
+    return new HttpResponseBody(null, bytes, bytes.length);
+  }
+
+  /**
+   * Returns a body that is streamed from the given input. If the input is a {@link
+   * ReadableByteChannel} too, it is also used as the {@link #channel() channel} of the body.
+   *
+   * @param contentLength the length of the body in bytes, or {@code -1} if unknown.
+   */
+  public static HttpResponseBody of(InputStream stream, long contentLength) {
+    checkNotNull(stream);
+    checkArgument(contentLength >= -1, "invalid contentLength");
+    return new HttpResponseBody(stream, null, contentLength);
+  }
+
+  /** @return the length of the body in bytes, or {@code -1} if unknown. */
+  public long contentLength() {
+    return contentLength;
+  }
+
+  /**
+   * Returns a stream to read the body. A buffered body returns a new stream each time, a streamed
+   * body can only be read once.
+   *
+   * @throws IllegalStateException if the streamed body was already read or closed.
+   */
+  public synchronized InputStream stream() {
+    if (bytes != null) {
+      return new ByteArrayInputStream(bytes);
+    }
+    checkState(!consumed && stream != null, "The body was already consumed");
+    consumed = true;
+    return stream;
+  }
+
+  /**
+   * Returns a channel to read the body, the same rules as for {@link #stream()} apply.
+   *
+   * @throws IllegalStateException if the streamed body was already read or closed.
+   */
+  public ReadableByteChannel channel() {
+    InputStream stream = stream();
+    return stream instanceof ReadableByteChannel
+        ? (ReadableByteChannel) stream
+        : Channels.newChannel(stream);
+  }
+
+  /**
+   * Returns the whole body. A streamed body is read on the first call and kept in memory, releasing
+   * the connection.
+   *
+   * @throws IllegalStateException if the streamed body was already read through {@link #stream()}.
+   * @throws UncheckedIOException if the body could not be read.
+   */
+  public synchronized byte[] bytes() {
+    if (bytes == null) {
+      InputStream input = stream();
+      try (InputStream closing = input) {
+        bytes = ByteStreams.toByteArray(closing);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      } finally {
+        stream = null;
+      }
+    }
+    return bytes;
+  }
+
+  /** Closes the stream of the body, if it is streamed, releasing the connection. */
+  @Override
+  public synchronized void close() throws IOException {
+    consumed = true;
+    if (stream != null) {
+      InputStream closing = stream;
+      stream = null;
+      closing.close();
+    }
+  }
+}
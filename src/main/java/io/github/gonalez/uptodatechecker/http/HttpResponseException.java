@@ -0,0 +1,35 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import java.io.IOException;
+
+/** Thrown by a {@link HttpClient} when the server responds with an error code. */
+public class HttpResponseException extends IOException {
+  private static final long serialVersionUID = 1L;
+
+  private final int responseCode;
+
+  public HttpResponseException(int responseCode, String url) {
+    super(String.format("Server returned HTTP response code: %d for URL: %s", responseCode, url));
+    this.responseCode = responseCode;
+  }
+
+  /** @return the code of the response. */
+  public int responseCode() {
+    return responseCode;
+  }
+}
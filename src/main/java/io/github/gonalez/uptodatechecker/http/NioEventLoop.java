@@ -0,0 +1,536 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.github.gonalez.uptodatechecker.Options;
+
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.StandardSocketOptions;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single thread that drives many non-blocking connections through a {@link Selector}.
+ *
+ * <p>Everything but {@link #execute(Runnable)}, {@link #inEventLoop()}, {@link #isClosed()},
+ * {@link #idleConnectionCount()} and {@link #close()} must be called from the loop thread, which is
+ * why the connections and the idle connection pool need no locking.
+ *
+ * <p>Host names are resolved in a separate executor, a slow DNS lookup would otherwise stall every
+ * connection of the loop.
+ */
+final class NioEventLoop implements Runnable, Closeable {
+  // Upper bound for a select call, so idle connections get evicted even if nothing happens
+  private static final long MAX_SELECT_MILLIS = 1000;
+
+  /** A request sent through a {@link Connection}, its callbacks run on the loop thread. */
+  interface Exchange extends Http1ResponseParser.BodySink {
+    /** @return the options of the request. */
+    Options options();
+
+    /** @return the encoded request head, followed by its body if any, to write. */
+    byte[] encodedRequest();
+
+    /**
+     * Called once the head of the response has been read, before its body.
+     *
+     * @param connection the connection serving the exchange, reading the body can be paused
+     *     through it.
+     */
+    void onHead(ResponseHead head, Connection connection);
+
+    /** Called once the whole response has been read. */
+    void onResponse(ResponseHead head);
+
+    /**
+     * Called if the exchange failed.
+     *
+     * @param responseStarted if any byte of the response was received.
+     * @param pooledConnection if the exchange used a previously idle connection, which may have
+     *     been closed by the peer before we used it.
+     */
+    void onFailure(IOException cause, boolean responseStarted, boolean pooledConnection);
+  }
+
+  private final Selector selector;
+  private final Thread thread;
+  private final SSLContext sslContext;
+  private final int maxIdleConnections;
+  private final long idleTimeoutNanos;
+
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private final ByteBuffer readBuffer = ByteBuffer.allocate(64 * 1024);
+
+  private final Set<Connection> connections = new HashSet<>();
+  private final Map<Address, ArrayDeque<Connection>> idleConnections = new HashMap<>();
+
+  private volatile boolean closed;
+  // Set once the loop thread has exited, tasks are then run by the thread submitting them
+  private volatile boolean terminated;
+  // Written on the loop thread whenever the idle pool changes, read from any thread
+  private volatile int idleConnectionCount;
+
+  NioEventLoop(String name, SSLContext sslContext, Options options) throws IOException {
+    this.sslContext = checkNotNull(sslContext);
+    this.maxIdleConnections = options.maxIdleConnections();
+    this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(options.idleConnectionTimeout());
+    this.selector = Selector.open();
+    this.thread = new Thread(this, name);
+    this.thread.setDaemon(true);
+    this.thread.start();
+  }
+
+  /** @return {@code true} if called from the loop thread. */
+  boolean inEventLoop() {
+    return Thread.currentThread() == thread;
+  }
+
+  /**
+   * Runs the given task on the loop thread. Once the loop is terminated, the task is run right away
+   * by the calling thread, as there is no loop thread to run it.
+   */
+  void execute(Runnable task) {
+    tasks.add(task);
+    if (terminated) {
+      runTasks();
+    } else if (Thread.currentThread() != thread) {
+      selector.wakeup();
+    }
+  }
+
+  /** @return whether this loop was closed, it no longer sends exchanges. */
+  boolean isClosed() {
+    return closed;
+  }
+
+  /**
+   * Sends the given exchange to the given address, through an idle connection if there is one and
+   * {@code allowPooled} is set, or through a new connection otherwise.
+   *
+   * @return the connection used for the exchange.
+   */
+  Connection send(Address address, Exchange exchange, boolean allowPooled) {
+    Connection connection = allowPooled ? acquire(address) : null;
+    if (connection == null) {
+      connection = new Connection(address);
+      connections.add(connection);
+      connection.connect(exchange);
+    } else {
+      connection.reuse(exchange);
+    }
+    return connection;
+  }
+
+  /** @return the number of idle connections kept alive by this loop. */
+  int idleConnectionCount() {
+    return idleConnectionCount;
+  }
+
+  @Override
+  public void run() {
+    try {
+      while (!closed) {
+        selector.select(nextTimeoutMillis());
+        runTasks();
+        Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+          SelectionKey key = keys.next();
+          keys.remove();
+          ((Connection) key.attachment()).onReady();
+        }
+        expireConnections();
+      }
+    } catch (IOException e) {
+      // Selector failure, nothing we can do but to fail everything
+    } finally {
+      closed = true;
+      terminated = true;
+      runTasks();
+      for (Connection connection : new ArrayList<>(connections)) {
+        connection.fail(new IOException("The http client has been closed"));
+      }
+      try {
+        selector.close();
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    selector.wakeup();
+  }
+
+  private synchronized void runTasks() {
+    Runnable task;
+    while ((task = tasks.poll()) != null) {
+      try {
+        task.run();
+      } catch (RuntimeException e) {
+        // Report it without killing the loop, other connections still depend on it
+        Thread current = Thread.currentThread();
+        current.getUncaughtExceptionHandler().uncaughtException(current, e);
+      }
+    }
+  }
+
+  @Nullable
+  private Connection acquire(Address address) {
+    ArrayDeque<Connection> idle = idleConnections.get(address);
+    if (idle == null || idle.isEmpty()) {
+      return null;
+    }
+    idleConnectionCount--;
+    return idle.pollFirst();
+  }
+
+  private void release(Connection connection) {
+    if (maxIdleConnections <= 0) {
+      connection.close();
+      return;
+    }
+    ArrayDeque<Connection> idle =
+        idleConnections.computeIfAbsent(connection.address, unused -> new ArrayDeque<>());
+    idle.addFirst(connection);
+    idleConnectionCount++;
+    if (idle.size() > maxIdleConnections) {
+      idleConnectionCount--;
+      idle.pollLast().close();
+    }
+  }
+
+  private void removeIdle(Connection connection) {
+    ArrayDeque<Connection> idle = idleConnections.get(connection.address);
+    if (idle != null && idle.remove(connection)) {
+      idleConnectionCount--;
+      if (idle.isEmpty()) {
+        idleConnections.remove(connection.address);
+      }
+    }
+  }
+
+  private long nextTimeoutMillis() {
+    long now = System.nanoTime();
+    long next = TimeUnit.MILLISECONDS.toNanos(MAX_SELECT_MILLIS);
+    for (Connection connection : connections) {
+      if (connection.paused) {
+        continue;
+      }
+      next = Math.min(next, connection.deadlineNanos - now);
+    }
+    return Math.max(1, TimeUnit.NANOSECONDS.toMillis(next) + 1);
+  }
+
+  private void expireConnections() {
+    long now = System.nanoTime();
+    for (Connection connection : new ArrayList<>(connections)) {
+      if (!connection.paused && now - connection.deadlineNanos >= 0) {
+        if (connection.state == State.IDLE) {
+          connection.close();
+        } else {
+          connection.fail(new SocketTimeoutException(connection.state == State.READING
+              ? "Read timed out" : "Connect timed out"));
+        }
+      }
+    }
+  }
+
+  /** The threads resolving host names, shared by all the loops and created on first use. */
+  private static final class Resolver {
+    private static final Executor EXECUTOR =
+        Executors.newCachedThreadPool(
+            new ThreadFactoryBuilder()
+                .setNameFormat("uptodatechecker-nio-resolver-%d")
+                .setDaemon(true)
+                .build());
+  }
+
+  private enum State {
+    CONNECTING,
+    HANDSHAKING,
+    WRITING,
+    READING,
+    IDLE,
+    CLOSED
+  }
+
+  /** A non-blocking connection, owned by the loop. */
+  final class Connection {
+    private final Address address;
+
+    private SocketChannel channel;
+    private SelectionKey key;
+    private NioTransport transport;
+    private State state;
+    private long deadlineNanos;
+
+    private Exchange exchange;
+    private boolean pooled;
+    private boolean responseStarted;
+    // Reading the body is paused until the exchange catches up, the read timeout doesn't apply
+    private boolean paused;
+    private ByteBuffer encodedRequest;
+    private Http1ResponseParser parser;
+
+    private Connection(Address address) {
+      this.address = address;
+    }
+
+    /** @return {@code true} if the given exchange is still in progress on this connection. */
+    boolean isServing(Exchange exchange) {
+      return this.exchange == exchange;
+    }
+
+    /** Stops reading the body of the current exchange until {@link #resumeReading()}. */
+    void pauseReading() {
+      paused = true;
+    }
+
+    /** Continues reading the body of the current exchange, if it was paused. */
+    void resumeReading() {
+      if (!paused || state != State.READING) {
+        return;
+      }
+      paused = false;
+      deadlineNanos = System.nanoTime()
+          + TimeUnit.MILLISECONDS.toNanos(exchange.options().readTimeout());
+      onReady();
+    }
+
+    /** Cancels the current exchange, closing the connection. */
+    void abort() {
+      exchange = null;
+      close();
+    }
+
+    private void connect(Exchange exchange) {
+      start(exchange, false);
+      state = State.CONNECTING;
+      // The connect timeout includes the lookup
+      deadlineNanos = System.nanoTime()
+          + TimeUnit.MILLISECONDS.toNanos(exchange.options().connectTimeout());
+      Resolver.EXECUTOR.execute(
+          () -> {
+            // Lookups are cached by the JVM
+            InetSocketAddress socketAddress =
+                new InetSocketAddress(address.host(), address.port());
+            execute(() -> onResolved(socketAddress));
+          });
+    }
+
+    private void onResolved(InetSocketAddress socketAddress) {
+      if (state != State.CONNECTING || channel != null) {
+        // Timed out or aborted in the meantime
+        return;
+      }
+      try {
+        if (socketAddress.isUnresolved()) {
+          throw new UnknownHostException(address.host());
+        }
+        channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        key = channel.register(selector, 0, this);
+        if (address.isSecure()) {
+          SSLEngine sslEngine = sslContext.createSSLEngine(address.host(), address.port());
+          sslEngine.setUseClientMode(true);
+          SSLParameters sslParameters = sslEngine.getSSLParameters();
+          sslParameters.setEndpointIdentificationAlgorithm("HTTPS");
+          sslEngine.setSSLParameters(sslParameters);
+          transport = NioTransport.tls(channel, sslEngine);
+        } else {
+          transport = NioTransport.plain(channel);
+        }
+        if (channel.connect(socketAddress)) {
+          onReady();
+        } else {
+          key.interestOps(SelectionKey.OP_CONNECT);
+        }
+      } catch (IOException e) {
+        fail(e);
+      }
+    }
+
+    private void reuse(Exchange exchange) {
+      start(exchange, true);
+      state = State.WRITING;
+      // No longer idle, the idle timeout doesn't apply to the exchange
+      deadlineNanos = System.nanoTime()
+          + TimeUnit.MILLISECONDS.toNanos(exchange.options().readTimeout());
+      onReady();
+    }
+
+    private void start(Exchange exchange, boolean pooled) {
+      this.exchange = exchange;
+      this.pooled = pooled;
+      this.responseStarted = false;
+      this.paused = false;
+      this.encodedRequest = ByteBuffer.wrap(exchange.encodedRequest());
+      this.parser = new Http1ResponseParser();
+    }
+
+    private void onReady() {
+      try {
+        switch (state) {
+          case CONNECTING:
+            if (!channel.finishConnect()) {
+              return;
+            }
+            state = State.HANDSHAKING;
+            // fall through
+          case HANDSHAKING:
+            if (!transport.handshake()) {
+              key.interestOps(transport.interestOps());
+              return;
+            }
+            state = State.WRITING;
+            deadlineNanos = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(exchange.options().readTimeout());
+            // fall through
+          case WRITING:
+            if (!transport.write(encodedRequest)) {
+              key.interestOps(transport.interestOps());
+              return;
+            }
+            state = State.READING;
+            deadlineNanos = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(exchange.options().readTimeout());
+            // fall through
+          case READING:
+            readResponse();
+            break;
+          case IDLE:
+            // The peer closed the idle connection, or sent something we did not ask for
+            removeIdle(this);
+            close();
+            break;
+          default:
+            break;
+        }
+      } catch (IOException | CancelledKeyException e) {
+        fail(e instanceof IOException ? (IOException) e : new IOException(e));
+      }
+    }
+
+    private void readResponse() throws IOException {
+      while (true) {
+        readBuffer.clear();
+        int read = transport.read(readBuffer);
+        if (read == -1) {
+          parser.endOfStream();
+          complete(false);
+          return;
+        }
+        if (read == 0) {
+          key.interestOps(transport.interestOps());
+          return;
+        }
+        responseStarted = true;
+        deadlineNanos = System.nanoTime()
+            + TimeUnit.MILLISECONDS.toNanos(exchange.options().readTimeout());
+        readBuffer.flip();
+        while (readBuffer.hasRemaining() && !parser.isDone()) {
+          if (parser.parse(readBuffer, exchange)) {
+            exchange.onHead(parser.head(), this);
+          }
+          if (state != State.READING) {
+            // Aborted by the exchange
+            return;
+          }
+        }
+        if (parser.isDone()) {
+          // Extra bytes after the response, we can't tell what they are
+          complete(!readBuffer.hasRemaining());
+          return;
+        }
+        if (paused) {
+          key.interestOps(0);
+          return;
+        }
+      }
+    }
+
+    private void complete(boolean reusable) {
+      Exchange completed = exchange;
+      ResponseHead head = parser.head();
+      exchange = null;
+      parser = null;
+      if (reusable && head.isKeepAlive() && Http1.isSelfDelimited(head)) {
+        state = State.IDLE;
+        deadlineNanos = System.nanoTime() + idleTimeoutNanos;
+        key.interestOps(SelectionKey.OP_READ);
+        release(this);
+      } else {
+        close();
+      }
+      completed.onResponse(head);
+    }
+
+    private void fail(IOException cause) {
+      Exchange failed = exchange;
+      exchange = null;
+      close();
+      if (failed != null) {
+        failed.onFailure(cause, responseStarted, pooled);
+      }
+    }
+
+    private void close() {
+      if (state == State.CLOSED) {
+        return;
+      }
+      state = State.CLOSED;
+      connections.remove(this);
+      removeIdle(this);
+      if (key != null) {
+        key.cancel();
+      }
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException ignored) {
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,443 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import io.github.gonalez.uptodatechecker.Options;
+import io.github.gonalez.uptodatechecker.UpToDateCheckerExceptionCode;
+
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLContext;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link HttpClient} built on non-blocking sockets. A few event loop threads drive all the
+ * requests through a {@link java.nio.channels.Selector} and complete the returned futures, so no
+ * thread is parked while waiting for a slow server and thousands of checks can be in flight at
+ * once.
+ *
+ * <p>Like the {@link PooledHttpClient}, idle connections are kept alive per host and TLS sessions
+ * are resumed, as configured by the given {@link Options}. The returned futures are completed on
+ * the event loop threads, so any expensive work on the response should be done in another
+ * executor. This is a must for {@link HttpRequest#streaming() streamed} responses, whose body can't
+ * be read from the event loop threads.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class NioHttpClient implements HttpClient, Closeable {
+  // Same limit as HttpURLConnection
+  private static final int MAX_REDIRECTS = 20;
+
+  private final NioEventLoop[] eventLoops;
+  private final AtomicInteger nextEventLoop = new AtomicInteger();
+
+  /** Creates a client with a single event loop thread and the default options. */
+  public NioHttpClient() {
+    this(1, Options.DEFAULT_OPTIONS);
+  }
+
+  /**
+   * Creates a client that uses the given number of event loop threads.
+   *
+   * @param eventLoopThreads the number of event loop threads, usually one is enough.
+   * @param options options for the connection pool and TLS sessions of the client.
+   */
+  public NioHttpClient(int eventLoopThreads, Options options) {
+    checkArgument(eventLoopThreads > 0, "eventLoopThreads must be positive");
+    checkNotNull(options);
+    SSLContext sslContext = TlsContexts.newClientContext(options);
+    this.eventLoops = new NioEventLoop[eventLoopThreads];
+    try {
+      for (int i = 0; i < eventLoopThreads; i++) {
+        eventLoops[i] = new NioEventLoop("uptodatechecker-nio-" + i, sslContext, options);
+      }
+    } catch (IOException e) {
+      close();
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * <p>Once the client is {@link #close() closed}, the returned future fails with an {@link
+   * IllegalStateException}.
+   */
+  @Override
+  public ListenableFuture<HttpResponse> requestAsync(HttpRequest request) {
+    final URL url;
+    try {
+      url = new URL(request.url());
+    } catch (MalformedURLException e) {
+      return Futures.immediateFailedFuture(
+          UpToDateCheckerExceptionCode.INVALID_URL_CODE.toException());
+    }
+    NioEventLoop eventLoop =
+        eventLoops[Math.floorMod(nextEventLoop.getAndIncrement(), eventLoops.length)];
+    if (eventLoop.isClosed()) {
+      return Futures.immediateFailedFuture(newClosedException());
+    }
+    Call call = new Call(eventLoop, request, url);
+    eventLoop.execute(call::start);
+    call.future.addListener(
+        () -> {
+          if (call.future.isCancelled()) {
+            eventLoop.execute(call::cancel);
+          }
+        },
+        MoreExecutors.directExecutor());
+    return call.future;
+  }
+
+  /** @return the number of idle connections kept alive by this client. */
+  public int idleConnectionCount() {
+    int count = 0;
+    for (NioEventLoop eventLoop : eventLoops) {
+      count += eventLoop.idleConnectionCount();
+    }
+    return count;
+  }
+
+  /** Stops the event loop threads, failing any request still in flight. */
+  @Override
+  public void close() {
+    for (NioEventLoop eventLoop : eventLoops) {
+      if (eventLoop != null) {
+        eventLoop.close();
+      }
+    }
+  }
+
+  private static IllegalStateException newClosedException() {
+    return new IllegalStateException("The http client has been closed");
+  }
+
+  /** A request and its redirects, confined to an event loop once started. */
+  private static final class Call implements NioEventLoop.Exchange {
+    private final SettableFuture<HttpResponse> future = SettableFuture.create();
+    private final NioEventLoop eventLoop;
+    private HttpRequest request;
+    private URL url;
+    private int redirects;
+    private boolean retried;
+    private NioEventLoop.Connection connection;
+    private ByteArrayOutputStream body;
+    // Set once a streamed response has been handed to the caller
+    private BodyStream stream;
+
+    Call(NioEventLoop eventLoop, HttpRequest request, URL url) {
+      this.eventLoop = eventLoop;
+      this.request = request;
+      this.url = url;
+    }
+
+    void start() {
+      if (eventLoop.isClosed()) {
+        // Closed after the request was made
+        future.setException(newClosedException());
+        return;
+      }
+      send(true);
+    }
+
+    void resume() {
+      if (connection != null && connection.isServing(this)) {
+        connection.resumeReading();
+      }
+    }
+
+    void cancel() {
+      if (connection != null && connection.isServing(this)) {
+        connection.abort();
+      }
+      connection = null;
+    }
+
+    private void send(boolean allowPooled) {
+      if (future.isDone()) {
+        return;
+      }
+      if (!url.getProtocol().equals("http") && !url.getProtocol().equals("https")) {
+        future.setException(UpToDateCheckerExceptionCode.INVALID_URL_CODE.toException());
+        return;
+      }
+      body = new ByteArrayOutputStream();
+      NioEventLoop.Connection sent = eventLoop.send(Address.of(url), this, allowPooled);
+      // The exchange may have already completed or failed while sending it
+      if (sent.isServing(this)) {
+        connection = sent;
+      }
+    }
+
+    @Override
+    public Options options() {
+      return request.options();
+    }
+
+    @Override
+    public byte[] encodedRequest() {
+      return Http1.encodeRequest(url, request);
+    }
+
+    @Override
+    public void onHead(ResponseHead head, NioEventLoop.Connection connection) {
+      this.connection = connection;
+      if (!request.streaming()
+          || (head.isRedirect() && redirects < MAX_REDIRECTS)
+          || head.responseCode() >= 400) {
+        return;
+      }
+      stream = new BodyStream(eventLoop, this);
+      future.set(
+          HttpResponse.newBuilder()
+              .setResponseCode(head.responseCode())
+              .setHeaders(head.headers())
+              .setResponseBody(HttpResponseBody.of(stream, Http1.contentLength(head)))
+              .build());
+    }
+
+    @Override
+    public void onBodyData(ByteBuffer data) {
+      if (stream != null) {
+        if (!stream.offer(data)) {
+          connection.pauseReading();
+        }
+        return;
+      }
+      if (data.hasArray()) {
+        body.write(data.array(), data.arrayOffset() + data.position(), data.remaining());
+        data.position(data.limit());
+      } else {
+        while (data.hasRemaining()) {
+          body.write(data.get());
+        }
+      }
+    }
+
+    @Override
+    public void onResponse(ResponseHead head) {
+      connection = null;
+      if (stream != null) {
+        stream.finish(null);
+        return;
+      }
+      if (head.isRedirect() && redirects < MAX_REDIRECTS) {
+        URL location;
+        try {
+          location = new URL(url, head.header("location"));
+        } catch (MalformedURLException e) {
+          future.setException(UpToDateCheckerExceptionCode.INVALID_URL_CODE.toException());
+          return;
+        }
+        request = Http1.redirectRequest(request, head, url, location);
+        url = location;
+        redirects++;
+        send(true);
+        return;
+      }
+      if (head.responseCode() >= 400) {
+        future.setException(new HttpResponseException(head.responseCode(), url.toString()));
+        return;
+      }
+      future.set(
+          HttpResponse.newBuilder()
+              .setResponseCode(head.responseCode())
+              .setHeaders(head.headers())
+              .setBody(body.toByteArray())
+              .build());
+    }
+
+    @Override
+    public void onFailure(IOException cause, boolean responseStarted, boolean pooledConnection) {
+      connection = null;
+      if (stream != null) {
+        stream.finish(cause);
+        return;
+      }
+      if (pooledConnection && !responseStarted && !retried) {
+        // The idle connection was most likely closed by the server, try a fresh one
+        retried = true;
+        send(false);
+        return;
+      }
+      if (!responseStarted) {
+        future.setException(UpToDateCheckerExceptionCode.FAIL_TO_CONNECT_CODE.toException());
+      } else {
+        future.setException(cause);
+      }
+    }
+  }
+
+  /**
+   * The body of a streamed response, filled by the event loop and read by the caller. Reading the
+   * connection is paused while too much of the body is waiting to be read, and resumed once the
+   * caller catches up.
+   */
+  private static final class BodyStream extends InputStream implements ReadableByteChannel {
+    // Bytes waiting to be read before pausing the connection, reading resumes at half of it
+    private static final int MAX_BUFFERED_BYTES = 256 * 1024;
+
+    private final NioEventLoop eventLoop;
+    private final Call call;
+
+    private final ArrayDeque<ByteBuffer> chunks = new ArrayDeque<>();
+    private long bufferedBytes;
+    private boolean paused;
+    private boolean finished;
+    private IOException failure;
+    private boolean closed;
+
+    BodyStream(NioEventLoop eventLoop, Call call) {
+      this.eventLoop = eventLoop;
+      this.call = call;
+    }
+
+    /**
+     * Called from the event loop with the next bytes of the body.
+     *
+     * @return {@code false} if reading the connection should be paused.
+     */
+    synchronized boolean offer(ByteBuffer data) {
+      if (closed) {
+        data.position(data.limit());
+        return true;
+      }
+      ByteBuffer copy = ByteBuffer.allocate(data.remaining());
+      copy.put(data);
+      copy.flip();
+      chunks.add(copy);
+      bufferedBytes += copy.remaining();
+      notifyAll();
+      paused = bufferedBytes >= MAX_BUFFERED_BYTES;
+      return !paused;
+    }
+
+    /** Called from the event loop once the body ends, or with the cause if it failed. */
+    synchronized void finish(@Nullable IOException cause) {
+      finished = true;
+      failure = cause;
+      notifyAll();
+    }
+
+    @Override
+    public int read() throws IOException {
+      byte[] single = new byte[1];
+      return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      return read(ByteBuffer.wrap(b, off, len));
+    }
+
+    @Override
+    public synchronized int read(ByteBuffer destination) throws IOException {
+      if (!destination.hasRemaining()) {
+        return 0;
+      }
+      ByteBuffer chunk = awaitChunk();
+      if (chunk == null) {
+        return -1;
+      }
+      int length = Math.min(chunk.remaining(), destination.remaining());
+      ByteBuffer slice = chunk.duplicate();
+      slice.limit(slice.position() + length);
+      destination.put(slice);
+      chunk.position(chunk.position() + length);
+      if (!chunk.hasRemaining()) {
+        chunks.poll();
+      }
+      bufferedBytes -= length;
+      if (paused && bufferedBytes <= MAX_BUFFERED_BYTES / 2) {
+        paused = false;
+        eventLoop.execute(call::resume);
+      }
+      return length;
+    }
+
+    @Override
+    public synchronized int available() {
+      return (int) Math.min(bufferedBytes, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public synchronized boolean isOpen() {
+      return !closed;
+    }
+
+    /** Closes the stream, closing the connection too if the body was not fully read. */
+    @Override
+    public synchronized void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      chunks.clear();
+      bufferedBytes = 0;
+      if (!finished) {
+        eventLoop.execute(call::cancel);
+      }
+      notifyAll();
+    }
+
+    /** @return the next chunk with bytes to read, or {@code null} at the end of the body. */
+    @Nullable
+    private ByteBuffer awaitChunk() throws IOException {
+      while (true) {
+        if (closed) {
+          throw new IOException("Stream closed");
+        }
+        ByteBuffer chunk = chunks.peek();
+        if (chunk != null) {
+          return chunk;
+        }
+        if (failure != null) {
+          throw failure;
+        }
+        if (finished) {
+          return null;
+        }
+        // The event loop is the one filling the stream, waiting there would never return
+        checkState(
+            !eventLoop.inEventLoop(),
+            "The body of a streamed response can't be read from the event loop thread");
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new InterruptedIOException();
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import javax.annotation.concurrent.NotThreadSafe;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Reads and writes application data through a non-blocking {@link SocketChannel}, either as is or
+ * through TLS. Methods never block, when no progress can be made they return and {@link
+ * #interestOps()} tells which readiness to wait for.
+ */
+@NotThreadSafe
+abstract class NioTransport {
+  private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+  final SocketChannel channel;
+
+  private NioTransport(SocketChannel channel) {
+    this.channel = checkNotNull(channel);
+  }
+
+  static NioTransport plain(SocketChannel channel) {
+    return new PlainTransport(channel);
+  }
+
+  static NioTransport tls(SocketChannel channel, SSLEngine sslEngine) throws SSLException {
+    return new TlsTransport(channel, sslEngine);
+  }
+
+  /**
+   * Makes progress on the handshake, if any.
+   *
+   * @return {@code true} once the transport is ready for application data.
+   */
+  abstract boolean handshake() throws IOException;
+
+  /**
+   * Reads application data into the given buffer.
+   *
+   * @return the number of bytes read, possibly {@code 0}, or {@code -1} at the end of stream.
+   */
+  abstract int read(ByteBuffer destination) throws IOException;
+
+  /**
+   * Writes as much of the given application data as possible.
+   *
+   * @return {@code true} once all the data has been written to the channel.
+   */
+  abstract boolean write(ByteBuffer source) throws IOException;
+
+  /** @return the {@link SelectionKey} operations to wait for when no progress can be made. */
+  abstract int interestOps();
+
+  /** Plain, unencrypted transport. */
+  private static final class PlainTransport extends NioTransport {
+    private int interestOps = SelectionKey.OP_READ;
+
+    PlainTransport(SocketChannel channel) {
+      super(channel);
+    }
+
+    @Override
+    boolean handshake() {
+      return true;
+    }
+
+    @Override
+    int read(ByteBuffer destination) throws IOException {
+      interestOps = SelectionKey.OP_READ;
+      return channel.read(destination);
+    }
+
+    @Override
+    boolean write(ByteBuffer source) throws IOException {
+      while (source.hasRemaining()) {
+        if (channel.write(source) == 0) {
+          interestOps = SelectionKey.OP_WRITE;
+          return false;
+        }
+      }
+      interestOps = SelectionKey.OP_READ;
+      return true;
+    }
+
+    @Override
+    int interestOps() {
+      return interestOps;
+    }
+  }
+
+  /** Transport that encrypts the application data through a client mode {@link SSLEngine}. */
+  private static final class TlsTransport extends NioTransport {
+    private final SSLEngine engine;
+
+    // Encrypted bytes read from the channel, in write mode
+    private ByteBuffer netIn;
+    // Encrypted bytes waiting to be written to the channel, in read mode
+    private ByteBuffer netOut;
+    // Decrypted bytes that did not fit in the caller buffer, in write mode
+    private ByteBuffer appIn;
+
+    private int interestOps = SelectionKey.OP_READ;
+    private boolean endOfStream;
+
+    TlsTransport(SocketChannel channel, SSLEngine engine) throws SSLException {
+      super(channel);
+      this.engine = checkNotNull(engine);
+      int packetBufferSize = engine.getSession().getPacketBufferSize();
+      this.netIn = ByteBuffer.allocate(packetBufferSize);
+      this.netOut = ByteBuffer.allocate(packetBufferSize);
+      this.netOut.flip();
+      this.appIn = ByteBuffer.allocate(engine.getSession().getApplicationBufferSize());
+      engine.beginHandshake();
+    }
+
+    @Override
+    boolean handshake() throws IOException {
+      while (true) {
+        if (!flush()) {
+          return false;
+        }
+        switch (engine.getHandshakeStatus()) {
+          case FINISHED:
+          case NOT_HANDSHAKING:
+            interestOps = SelectionKey.OP_READ;
+            return true;
+          case NEED_TASK:
+            runDelegatedTasks();
+            break;
+          case NEED_WRAP:
+            wrap(EMPTY);
+            break;
+          case NEED_UNWRAP:
+            if (!unwrap()) {
+              if (endOfStream) {
+                throw new EOFException("Connection closed during the TLS handshake");
+              }
+              if (!readNetwork()) {
+                return false;
+              }
+            }
+            break;
+          default:
+            throw new SSLException("Unexpected handshake status " + engine.getHandshakeStatus());
+        }
+      }
+    }
+
+    @Override
+    int read(ByteBuffer destination) throws IOException {
+      while (true) {
+        if (appIn.position() > 0) {
+          appIn.flip();
+          int length = Math.min(appIn.remaining(), destination.remaining());
+          ByteBuffer slice = appIn.duplicate();
+          slice.limit(slice.position() + length);
+          destination.put(slice);
+          appIn.position(appIn.position() + length);
+          appIn.compact();
+          return length;
+        }
+        if (!handshake()) {
+          // Post-handshake messages, like a TLS 1.3 key update
+          return 0;
+        }
+        if (!unwrap()) {
+          if (endOfStream) {
+            return -1;
+          }
+          if (!readNetwork()) {
+            return endOfStream ? -1 : 0;
+          }
+        }
+      }
+    }
+
+    @Override
+    boolean write(ByteBuffer source) throws IOException {
+      while (true) {
+        if (!flush()) {
+          return false;
+        }
+        if (!source.hasRemaining()) {
+          interestOps = SelectionKey.OP_READ;
+          return true;
+        }
+        wrap(source);
+      }
+    }
+
+    @Override
+    int interestOps() {
+      return interestOps;
+    }
+
+    /** Writes the pending encrypted bytes, @return {@code true} if all of them were written. */
+    private boolean flush() throws IOException {
+      while (netOut.hasRemaining()) {
+        if (channel.write(netOut) == 0) {
+          interestOps = SelectionKey.OP_WRITE;
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Encrypts the given application data into {@link #netOut}, which must be empty. */
+    private void wrap(ByteBuffer source) throws IOException {
+      netOut.clear();
+      try {
+        while (true) {
+          SSLEngineResult result = engine.wrap(source, netOut);
+          switch (result.getStatus()) {
+            case OK:
+              return;
+            case BUFFER_OVERFLOW:
+              netOut = ByteBuffer.allocate(netOut.capacity() * 2);
+              break;
+            case CLOSED:
+              throw new SSLException("TLS engine closed");
+            default:
+              throw new SSLException("Unexpected wrap status " + result.getStatus());
+          }
+        }
+      } finally {
+        netOut.flip();
+      }
+    }
+
+    /**
+     * Decrypts what we have in {@link #netIn} into {@link #appIn}.
+     *
+     * @return {@code false} if more bytes must be read from the channel first.
+     */
+    private boolean unwrap() throws IOException {
+      netIn.flip();
+      try {
+        while (true) {
+          SSLEngineResult result = engine.unwrap(netIn, appIn);
+          switch (result.getStatus()) {
+            case OK:
+              if (result.bytesConsumed() == 0 && result.bytesProduced() == 0) {
+                return false;
+              }
+              return true;
+            case BUFFER_UNDERFLOW:
+              if (netIn.limit() == netIn.capacity()) {
+                // The record does not fit, happens with a larger negotiated packet size
+                ByteBuffer larger =
+                    ByteBuffer.allocate(
+                        Math.max(netIn.capacity() * 2, engine.getSession().getPacketBufferSize()));
+                larger.put(netIn);
+                larger.flip();
+                netIn = larger;
+              }
+              return false;
+            case BUFFER_OVERFLOW:
+              ByteBuffer larger =
+                  ByteBuffer.allocate(
+                      Math.max(
+                          appIn.capacity() * 2, engine.getSession().getApplicationBufferSize()));
+              appIn.flip();
+              larger.put(appIn);
+              appIn = larger;
+              break;
+            case CLOSED:
+              endOfStream = true;
+              return false;
+            default:
+              throw new SSLException("Unexpected unwrap status " + result.getStatus());
+          }
+        }
+      } finally {
+        netIn.compact();
+      }
+    }
+
+    /** Reads encrypted bytes from the channel, @return {@code false} if none are available. */
+    private boolean readNetwork() throws IOException {
+      int read = channel.read(netIn);
+      if (read == -1) {
+        endOfStream = true;
+        if (isHandshaking()) {
+          throw new EOFException("Connection closed during the TLS handshake");
+        }
+        try {
+          engine.closeInbound();
+        } catch (SSLException e) {
+          // Truncation, the HTTP layer fails if the response was not complete
+        }
+        return false;
+      }
+      if (read == 0) {
+        interestOps = SelectionKey.OP_READ;
+        return false;
+      }
+      return true;
+    }
+
+    private boolean isHandshaking() {
+      SSLEngineResult.HandshakeStatus status = engine.getHandshakeStatus();
+      return status != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING
+          && status != SSLEngineResult.HandshakeStatus.FINISHED;
+    }
+
+    private void runDelegatedTasks() {
+      Runnable task;
+      while ((task = engine.getDelegatedTask()) != null) {
+        task.run();
+      }
+    }
+  }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.github.gonalez.uptodatechecker.Options;
+import io.github.gonalez.uptodatechecker.UpToDateCheckerExceptionCode;
+import io.github.gonalez.uptodatechecker.concurrent.LegacyFutures;
+
+import javax.net.ssl.SSLSocketFactory;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link HttpClient} that keeps connections alive and reuses them for later requests to the same
+ * host, so periodic checks don't pay for a new TCP and TLS handshake each time.
+ *
+ * <p>Connections are kept in a per-host pool, configured by {@link Options#maxIdleConnections()}
+ * and {@link Options#idleConnectionTimeout()}. TLS sessions are cached, as configured by {@link
+ * Options#tlsSessionCacheSize()} and {@link Options#tlsSessionTimeout()}, so new connections to a
+ * host we already talked to can resume the previous session with an abbreviated handshake.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class PooledHttpClient implements HttpClient, Closeable {
+  // Same limit as HttpURLConnection
+  private static final int MAX_REDIRECTS = 20;
+
+  private final Executor executor;
+  private final ConnectionPool connectionPool;
+  private final SSLSocketFactory sslSocketFactory;
+
+  public PooledHttpClient(Executor executor) {
+    this(executor, Options.DEFAULT_OPTIONS);
+  }
+
+  public PooledHttpClient(Executor executor, Options options) {
+    this.executor = checkNotNull(executor);
+    checkNotNull(options);
+    this.connectionPool =
+        new ConnectionPool(
+            options.maxIdleConnections(), options.idleConnectionTimeout(), TimeUnit.MILLISECONDS);
+    this.sslSocketFactory = TlsContexts.newClientContext(options).getSocketFactory();
+  }
+
+  @Override
+  public ListenableFuture<HttpResponse> requestAsync(HttpRequest request) {
+    final URL url;
+    try {
+      url = new URL(request.url());
+    } catch (MalformedURLException e) {
+      return Futures.immediateFailedFuture(
+          UpToDateCheckerExceptionCode.INVALID_URL_CODE.toException());
+    }
+    return LegacyFutures.callAsync(
+        () -> {
+          URL currentUrl = url;
+          HttpRequest currentRequest = request;
+          for (int redirects = 0; ; redirects++) {
+            if (!currentUrl.getProtocol().equals("http")
+                && !currentUrl.getProtocol().equals("https")) {
+              return Futures.immediateFailedFuture(
+                  UpToDateCheckerExceptionCode.INVALID_URL_CODE.toException());
+            }
+            Exchange exchange;
+            try {
+              exchange = openExchange(currentUrl, currentRequest);
+            } catch (IOException e) {
+              return Futures.immediateFailedFuture(
+                  UpToDateCheckerExceptionCode.FAIL_TO_CONNECT_CODE.toException());
+            }
+            ResponseHead head = exchange.head;
+            if (head.isRedirect() && redirects < MAX_REDIRECTS) {
+              exchange.discardBody();
+              URL location = new URL(currentUrl, head.header("location"));
+              currentRequest = Http1.redirectRequest(currentRequest, head, currentUrl, location);
+              currentUrl = location;
+              continue;
+            }
+            if (head.responseCode() >= 400) {
+              exchange.discardBody();
+              throw new HttpResponseException(head.responseCode(), currentUrl.toString());
+            }
+            HttpResponseBody body =
+                request.streaming()
+                    ? HttpResponseBody.of(exchange.new BodyStream(), Http1.contentLength(head))
+                    : HttpResponseBody.of(exchange.readBody());
+            return Futures.immediateFuture(
+                HttpResponse.newBuilder()
+                    .setResponseCode(head.responseCode())
+                    .setHeaders(head.headers())
+                    .setResponseBody(body)
+                    .build());
+          }
+        },
+        executor);
+  }
+
+  /** @return the number of idle connections that are kept alive by this client. */
+  public int idleConnectionCount() {
+    return connectionPool.idleConnectionCount();
+  }
+
+  /** Closes all the idle connections of this client. */
+  @Override
+  public void close() {
+    connectionPool.evictAll();
+  }
+
+  /**
+   * Sends a request for the given url and reads the head of the response, reusing a pooled
+   * connection when possible. A pooled connection may have been closed by the peer even if it
+   * looked healthy, if so we retry once with a fresh connection.
+   */
+  private Exchange openExchange(URL url, HttpRequest request) throws IOException {
+    Address address = Address.of(url);
+    HttpConnection connection = connectionPool.acquire(address);
+    if (connection != null) {
+      try {
+        return startExchange(connection, url, request);
+      } catch (IOException e) {
+        connection.close();
+      }
+    }
+    connection =
+        HttpConnection.connect(address, request.options().connectTimeout(), sslSocketFactory);
+    try {
+      return startExchange(connection, url, request);
+    } catch (IOException e) {
+      connection.close();
+      throw e;
+    }
+  }
+
+  private Exchange startExchange(HttpConnection connection, URL url, HttpRequest request)
+      throws IOException {
+    connection.setReadTimeout(request.options().readTimeout());
+    Http1.writeRequest(connection.output(), url, request);
+    return new Exchange(connection, Http1.readResponseHead(connection.input()));
+  }
+
+  /** A request sent through a connection and the head of its response. */
+  private final class Exchange {
+    private final HttpConnection connection;
+    private final ResponseHead head;
+    private final InputStream body;
+
+    private boolean finished;
+
+    private Exchange(HttpConnection connection, ResponseHead head) {
+      this.connection = connection;
+      this.head = head;
+      this.body = Http1.bodyStream(head, connection.input());
+    }
+
+    /** Reads the whole body and gives the connection back to the pool if it can be reused. */
+    byte[] readBody() throws IOException {
+      try (InputStream input = new BodyStream()) {
+        return ByteStreams.toByteArray(input);
+      }
+    }
+
+    void discardBody() throws IOException {
+      readBody();
+    }
+
+    /** Gives the connection back to the pool once the body has been fully read. */
+    private void release() {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      if (head.isKeepAlive() && Http1.isSelfDelimited(head)) {
+        connectionPool.release(connection);
+      } else {
+        connection.close();
+      }
+    }
+
+    /** Closes the connection, the rest of the body can't be told apart from the next response. */
+    private void abort() {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      connection.close();
+    }
+
+    /**
+     * Streams the body from the connection. The connection is released once the end of the body
+     * is reached, or closed if the stream is closed before that.
+     */
+    final class BodyStream extends FilterInputStream {
+      BodyStream() {
+        super(body);
+      }
+
+      @Override
+      public int read() throws IOException {
+        try {
+          int read = in.read();
+          if (read == -1) {
+            release();
+          }
+          return read;
+        } catch (IOException e) {
+          abort();
+          throw e;
+        }
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+        try {
+          int read = in.read(b, off, len);
+          if (read == -1) {
+            release();
+          }
+          return read;
+        } catch (IOException e) {
+          abort();
+          throw e;
+        }
+      }
+
+      @Override
+      public void close() {
+        abort();
+      }
+    }
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import com.google.auto.value.AutoValue;
+import com.google.common.collect.ImmutableListMultimap;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.Immutable;
+
+/** The status line and headers of an HTTP/1.1 response, as read by {@link Http1}. */
+@AutoValue
+@Immutable
+abstract class ResponseHead {
+  static ResponseHead create(
+      boolean http11, int responseCode, ImmutableListMultimap<String, String> headers) {
+    return new AutoValue_ResponseHead(http11, responseCode, headers);
+  }
+
+  /** @return {@code true} if the response uses HTTP/1.1, {@code false} for HTTP/1.0. */
+  abstract boolean http11();
+
+  /** @return the code of the response. */
+  abstract int responseCode();
+
+  /** @return the headers of the response, keyed by their lower-case name. */
+  abstract ImmutableListMultimap<String, String> headers();
+
+  /** @return the first value of the given header, or {@code null} if it is not present. */
+  @Nullable
+  String header(String name) {
+    return headers().get(name.toLowerCase()).stream().findFirst().orElse(null);
+  }
+
+  /** @return {@code true} if the connection can be reused after reading this response. */
+  boolean isKeepAlive() {
+    String connection = header("connection");
+    if (connection != null) {
+      if (connection.equalsIgnoreCase("close")) {
+        return false;
+      }
+      if (connection.equalsIgnoreCase("keep-alive")) {
+        return true;
+      }
+    }
+    return http11();
+  }
+
+  /** @return {@code true} if the response code is a redirect we should follow. */
+  boolean isRedirect() {
+    switch (responseCode()) {
+      case 301:
+      case 302:
+      case 303:
+      case 307:
+      case 308:
+        return header("location") != null;
+      default:
+        return false;
+    }
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import io.github.gonalez.uptodatechecker.Options;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/** Creates the {@link SSLContext}s used by the socket based {@link HttpClient}s. */
+final class TlsContexts {
+  private TlsContexts() {}
+
+  /**
+   * Returns a new client {@link SSLContext} whose session cache is configured from the given
+   * options. Each client gets its own context so the cache settings don't affect the rest of the
+   * JVM, and so sessions can be resumed when reconnecting to the same host and port.
+   */
+  static SSLContext newClientContext(Options options) {
+    try {
+      SSLContext sslContext = SSLContext.getInstance("TLS");
+      sslContext.init(null, null, null);
+      SSLSessionContext sessionContext = sslContext.getClientSessionContext();
+      sessionContext.setSessionCacheSize(options.tlsSessionCacheSize());
+      sessionContext.setSessionTimeout(
+          (int) TimeUnit.MILLISECONDS.toSeconds(options.tlsSessionTimeout()));
+      return sslContext;
+    } catch (GeneralSecurityException e) {
+      throw new IllegalStateException("TLS is not available", e);
+    }
+  }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.providers;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import io.github.gonalez.uptodatechecker.BatchVersionProvider;
+import io.github.gonalez.uptodatechecker.UpToDateCheckerExceptionCode;
+import io.github.gonalez.uptodatechecker.concurrent.LegacyFutures;
+import io.github.gonalez.uptodatechecker.concurrent.RequestBatcher;
+import io.github.gonalez.uptodatechecker.http.HttpClient;
+import io.github.gonalez.uptodatechecker.http.HttpRequest;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * A {@link BatchVersionProvider} that gets the latest release of many GitHub repositories with a
+ * single query to the GitHub GraphQL API, instead of a request per repository like {@link
+ * GithubVersionProvider}. The GraphQL API requires a token.
+ *
+ * <p>Single repositories asked for with {@link #findLatestVersion} are batched too, a query is sent
+ * once {@code maxBatchSize} repositories are waiting, or {@code lingerMillis} after the first one.
+ */
+public class GithubGraphQlVersionProvider
+    implements BatchVersionProvider<GithubVersionProviderContext> {
+  /** The maximum number of repositories asked for in a single query by default. */
+  public static final int DEFAULT_MAX_BATCH_SIZE = 50;
+  /** How long, in milliseconds, single repositories wait to be batched with others by default. */
+  public static final long DEFAULT_LINGER_MILLIS = 20;
+
+  private static final String GRAPHQL_URL = "https://api.github.com/graphql";
+
+  private final ScheduledExecutorService executor;
+  private final HttpClient httpClient;
+  private final String token;
+  private final String url;
+  private final int maxBatchSize;
+  private final RequestBatcher<GithubVersionProviderContext, String> requestBatcher;
+
+  public GithubGraphQlVersionProvider(
+      ScheduledExecutorService executor, HttpClient httpClient, String token) {
+    this(executor, httpClient, token, DEFAULT_MAX_BATCH_SIZE, DEFAULT_LINGER_MILLIS);
+  }
+
+  public GithubGraphQlVersionProvider(
+      ScheduledExecutorService executor,
+      HttpClient httpClient,
+      String token,
+      int maxBatchSize,
+      long lingerMillis) {
+    this(executor, httpClient, token, GRAPHQL_URL, maxBatchSize, lingerMillis);
+  }
+
+  GithubGraphQlVersionProvider(
+      ScheduledExecutorService executor,
+      HttpClient httpClient,
+      String token,
+      String url,
+      int maxBatchSize,
+      long lingerMillis) {
+    this.executor = checkNotNull(executor);
+    this.httpClient = checkNotNull(httpClient);
+    this.token = checkNotNull(token);
+    this.url = checkNotNull(url);
+    this.maxBatchSize = maxBatchSize;
+    this.requestBatcher =
+        new RequestBatcher<>(executor, maxBatchSize, lingerMillis, this::findLatestVersions);
+  }
+
+  @Override
+  public String name() {
+    return "github";
+  }
+
+  @Override
+  public Class<GithubVersionProviderContext> contextType() {
+    return GithubVersionProviderContext.class;
+  }
+
+  @Override
+  public ListenableFuture<String> findLatestVersion(GithubVersionProviderContext context) {
+    return LegacyFutures.catchingAsync(
+        requestBatcher.add(context),
+        NoSuchElementException.class,
+        e ->
+            Futures.immediateFailedFuture(
+                UpToDateCheckerExceptionCode.FAIL_TO_GET_LATEST_VERSION_FROM_CONTEXT
+                    .toException()),
+        executor);
+  }
+
+  /**
+   * Returns the latest releases of the given repositories, with a query for each {@code
+   * maxBatchSize} of them. Repositories that don't exist or have no release are left out.
+   */
+  @Override
+  public ListenableFuture<ImmutableMap<GithubVersionProviderContext, String>> findLatestVersions(
+      ImmutableSet<GithubVersionProviderContext> contexts) {
+    List<ListenableFuture<ImmutableMap<GithubVersionProviderContext, String>>> queries =
+        new ArrayList<>();
+    for (List<GithubVersionProviderContext> batch : Iterables.partition(contexts, maxBatchSize)) {
+      queries.add(query(ImmutableList.copyOf(batch)));
+    }
+    return Futures.transform(
+        Futures.allAsList(queries),
+        results -> {
+          ImmutableMap.Builder<GithubVersionProviderContext, String> latestVersions =
+              ImmutableMap.builder();
+          results.forEach(latestVersions::putAll);
+          return latestVersions.build();
+        },
+        MoreExecutors.directExecutor());
+  }
+
+  private ListenableFuture<ImmutableMap<GithubVersionProviderContext, String>> query(
+      ImmutableList<GithubVersionProviderContext> contexts) {
+    // query { r0: repository(owner: "gonalez", name: "uptodatechecker") { ... } r1: ... }
+    StringBuilder query = new StringBuilder("query {");
+    for (int i = 0; i < contexts.size(); i++) {
+      GithubVersionProviderContext context = contexts.get(i);
+      query
+          .append(" r")
+          .append(i)
+          .append(": repository(owner: ")
+          .append(new JsonPrimitive(context.repoOwner()))
+          .append(", name: ")
+          .append(new JsonPrimitive(context.repoName()))
+          .append(") { latestRelease { tagName } }");
+    }
+    query.append(" }");
+    JsonObject body = new JsonObject();
+    body.addProperty("query", query.toString());
+    HttpRequest request =
+        HttpRequest.newBuilder()
+            .setUrl(url)
+            .setMethod("POST")
+            .setHeaders(
+                ImmutableMap.of(
+                    "Authorization", "bearer " + token, "Content-Type", "application/json"))
+            .setOptionalBody(Optional.of(body.toString()))
+            .build();
+    return LegacyFutures.transformAsync(
+        httpClient.requestAsync(request),
+        response -> {
+          JsonElement data =
+              JsonParser.parseString(response.bodyString()).getAsJsonObject().get("data");
+          if (data == null || !data.isJsonObject()) {
+            return Futures.immediateFailedFuture(
+                UpToDateCheckerExceptionCode.FAIL_TO_PARSE_VERSION_CODE.toException());
+          }
+          ImmutableMap.Builder<GithubVersionProviderContext, String> latestVersions =
+              ImmutableMap.builder();
+          for (int i = 0; i < contexts.size(); i++) {
+            String tagName = tagNameOf(data.getAsJsonObject().get("r" + i));
+            if (tagName != null) {
+              latestVersions.put(contexts.get(i), tagName);
+            }
+          }
+          return Futures.immediateFuture(latestVersions.build());
+        },
+        executor);
+  }
+
+  /** @return the tag name of the latest release of the given repository, or {@code null}. */
+  @Nullable
+  private static String tagNameOf(JsonElement repository) {
+    if (repository == null || !repository.isJsonObject()) {
+      return null;
+    }
+    JsonElement latestRelease = repository.getAsJsonObject().get("latestRelease");
+    if (latestRelease == null || !latestRelease.isJsonObject()) {
+      return null;
+    }
+    JsonElement tagName = latestRelease.getAsJsonObject().get("tagName");
+    return tagName == null || !tagName.isJsonPrimitive() ? null : tagName.getAsString();
+  }
+}
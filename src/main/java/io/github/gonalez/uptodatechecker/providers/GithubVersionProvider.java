@@ -15,9 +15,9 @@
  */
 package io.github.gonalez.uptodatechecker.providers;
 
-import com.google.gson.JsonElement;
+import io.github.gonalez.uptodatechecker.JsonFieldPath;
 import io.github.gonalez.uptodatechecker.VersionProvider;
-import io.github.gonalez.uptodatechecker.HttpVersionProvider;
+import io.github.gonalez.uptodatechecker.JsonFieldHttpVersionProvider;
 import io.github.gonalez.uptodatechecker.http.HttpClient;
 import io.github.gonalez.uptodatechecker.http.HttpRequest;
 
@@ -25,12 +25,13 @@ import java.util.concurrent.Executor;
 
 /** A {@link VersionProvider} that can get the latest version of an GitHub repository. */
 public class GithubVersionProvider
-    extends HttpVersionProvider<GithubVersionProviderContext> {
+    extends JsonFieldHttpVersionProvider<GithubVersionProviderContext> {
   private static final String LATEST_VERSION_URL =
       "https://api.github.com/repos/%s/%s/releases/latest";
+  private static final JsonFieldPath VERSION_FIELD_PATH = JsonFieldPath.of("tag_name");
 
   public GithubVersionProvider(Executor executor, HttpClient httpClient) {
-    super(executor, httpClient);
+    super(executor, httpClient, VERSION_FIELD_PATH);
   }
 
   @Override
@@ -49,9 +50,4 @@ public class GithubVersionProvider
         .setUrl(String.format(LATEST_VERSION_URL, context.repoOwner(), context.repoName()))
         .build();
   }
-
-  @Override
-  protected String readVersion(JsonElement jsonElement) {
-    return jsonElement.getAsJsonObject().get("tag_name").getAsString();
-  }
 }
@@ -22,6 +22,11 @@ public abstract class GithubVersionProviderContext implements VersionProviderCon
   /** @return the name of the repository. */
   public abstract String repoName();
 
+  @Override
+  public String key() {
+    return repoOwner() + '/' + repoName();
+  }
+
   /** Builder for {@link GithubVersionProviderContext}. */
   @AutoValue.Builder
   public abstract static class Builder {
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.providers;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import io.github.gonalez.uptodatechecker.BatchVersionProvider;
+import io.github.gonalez.uptodatechecker.JsonFieldPath;
+import io.github.gonalez.uptodatechecker.UpToDateCheckerExceptionCode;
+import io.github.gonalez.uptodatechecker.concurrent.LegacyFutures;
+import io.github.gonalez.uptodatechecker.concurrent.RequestBatcher;
+import io.github.gonalez.uptodatechecker.http.HttpClient;
+import io.github.gonalez.uptodatechecker.http.HttpRequest;
+import io.github.gonalez.uptodatechecker.http.HttpResponse;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * A {@link BatchVersionProvider} that finds the latest versions of many Spigot resources with a few
+ * paged requests, instead of a request per resource like {@link SpigetVersionProvider}.
+ *
+ * <p>The resources of each {@link SpigetVersionProviderContext#optionalAuthorId() author} are found
+ * in the pages of the resources of the author, which are read one after another and only until all
+ * of them were found. The future of each resource completes as soon as it is found. The pages only
+ * tell the id of the latest version of each resource, so its name is only asked for if the id
+ * changed since it was last asked for. Resources without an author are asked for one by one.
+ *
+ * <p>Single resources asked for with {@link #findLatestVersion} wait {@code lingerMillis} to be
+ * batched with others.
+ */
+public class SpigetBatchVersionProvider
+    implements BatchVersionProvider<SpigetVersionProviderContext> {
+  /** How long, in milliseconds, single resources wait to be batched with others by default. */
+  public static final long DEFAULT_LINGER_MILLIS = 20;
+
+  private static final String API_URL = "https://api.spiget.org/v2";
+  private static final int PAGE_SIZE = 100;
+  private static final int MAX_BATCH_SIZE = 1000;
+  private static final long MAX_KNOWN_VERSIONS = 10_000;
+  private static final JsonFieldPath NAME_FIELD_PATH = JsonFieldPath.of("name");
+
+  private final ScheduledExecutorService executor;
+  private final HttpClient httpClient;
+  private final String apiUrl;
+  private final RequestBatcher<SpigetVersionProviderContext, ListenableFuture<String>>
+      requestBatcher;
+
+  // The id and name of the latest version last found for each resource, the least recently used
+  // resources are evicted first
+  private final Cache<String, Map.Entry<String, String>> knownVersions =
+      CacheBuilder.newBuilder().maximumSize(MAX_KNOWN_VERSIONS).build();
+
+  public SpigetBatchVersionProvider(ScheduledExecutorService executor, HttpClient httpClient) {
+    this(executor, httpClient, DEFAULT_LINGER_MILLIS);
+  }
+
+  public SpigetBatchVersionProvider(
+      ScheduledExecutorService executor, HttpClient httpClient, long lingerMillis) {
+    this(executor, httpClient, API_URL, lingerMillis);
+  }
+
+  SpigetBatchVersionProvider(
+      ScheduledExecutorService executor, HttpClient httpClient, String apiUrl, long lingerMillis) {
+    this.executor = checkNotNull(executor);
+    this.httpClient = checkNotNull(httpClient);
+    this.apiUrl = checkNotNull(apiUrl);
+    // The batch completes once the requests are started, each resource completes on its own
+    this.requestBatcher =
+        new RequestBatcher<>(
+            executor,
+            MAX_BATCH_SIZE,
+            lingerMillis,
+            contexts -> Futures.immediateFuture(findEach(contexts)));
+  }
+
+  @Override
+  public String name() {
+    return "spiget";
+  }
+
+  @Override
+  public Class<SpigetVersionProviderContext> contextType() {
+    return SpigetVersionProviderContext.class;
+  }
+
+  @Override
+  public ListenableFuture<String> findLatestVersion(SpigetVersionProviderContext context) {
+    // Unwraps the future of the resource once the batch started, without a thread hop
+    return LegacyFutures.transformAsync(
+        requestBatcher.add(context),
+        latestVersion -> latestVersion,
+        MoreExecutors.directExecutor());
+  }
+
+  /** Returns the latest versions of the given resources, the ones not found are left out. */
+  @Override
+  public ListenableFuture<ImmutableMap<SpigetVersionProviderContext, String>> findLatestVersions(
+      ImmutableSet<SpigetVersionProviderContext> contexts) {
+    ImmutableMap<SpigetVersionProviderContext, ListenableFuture<String>> latestVersions =
+        findEach(contexts);
+    return Futures.transform(
+        Futures.successfulAsList(latestVersions.values()),
+        versions -> {
+          ImmutableMap.Builder<SpigetVersionProviderContext, String> found =
+              ImmutableMap.builder();
+          // The failed ones are null
+          int i = 0;
+          for (SpigetVersionProviderContext context : latestVersions.keySet()) {
+            String version = versions.get(i++);
+            if (version != null) {
+              found.put(context, version);
+            }
+          }
+          return found.build();
+        },
+        MoreExecutors.directExecutor());
+  }
+
+  /** Starts finding the latest version of each of the given resources. */
+  private ImmutableMap<SpigetVersionProviderContext, ListenableFuture<String>> findEach(
+      ImmutableSet<SpigetVersionProviderContext> contexts) {
+    ImmutableMap.Builder<SpigetVersionProviderContext, ListenableFuture<String>> latestVersions =
+        ImmutableMap.builder();
+    Map<String, Map<String, SettableFuture<String>>> resourcesByAuthor = new LinkedHashMap<>();
+    for (SpigetVersionProviderContext context : contexts) {
+      if (context.optionalAuthorId().isPresent()) {
+        SettableFuture<String> latestVersion = SettableFuture.create();
+        resourcesByAuthor
+            .computeIfAbsent(context.optionalAuthorId().get(), unused -> new LinkedHashMap<>())
+            .put(context.resourceId(), latestVersion);
+        latestVersions.put(context, latestVersion);
+      } else {
+        latestVersions.put(
+            context,
+            LegacyFutures.callAsync(
+                () -> readName(apiUrl + "/resources/" + context.resourceId() + "/versions/latest"),
+                executor));
+      }
+    }
+    resourcesByAuthor.forEach((authorId, resources) -> findInPage(authorId, resources, 1));
+    return latestVersions.build();
+  }
+
+  /**
+   * Reads the given page of the resources of the given author, and the next ones until all the
+   * given resources were found. The resources that are not found fail.
+   */
+  private void findInPage(
+      String authorId, Map<String, SettableFuture<String>> resources, int page) {
+    HttpRequest request =
+        HttpRequest.newBuilder()
+            .setUrl(
+                String.format(
+                    "%s/authors/%s/resources?size=%d&page=%d&fields=id,version",
+                    apiUrl, authorId, PAGE_SIZE, page))
+            .setStreaming(true)
+            .build();
+    ListenableFuture<Integer> pageSize =
+        LegacyFutures.transformAsync(
+            httpClient.requestAsync(request),
+            response -> {
+              try (HttpResponse pageResponse = response) {
+                return Futures.immediateFuture(readPage(pageResponse, resources));
+              }
+            },
+            executor);
+    Futures.addCallback(
+        pageSize,
+        new FutureCallback<Integer>() {
+          @Override
+          public void onSuccess(Integer resourcesInPage) {
+            if (resources.isEmpty()) {
+              return;
+            }
+            if (resourcesInPage == PAGE_SIZE) {
+              findInPage(authorId, resources, page + 1);
+            } else {
+              failAll(
+                  resources,
+                  UpToDateCheckerExceptionCode.FAIL_TO_GET_LATEST_VERSION_FROM_CONTEXT
+                      .toException());
+            }
+          }
+
+          @Override
+          public void onFailure(Throwable t) {
+            failAll(resources, t);
+          }
+        },
+        executor);
+  }
+
+  /**
+   * Reads the resources of a page, resolving the given resources found in it as soon as they are
+   * read.
+   *
+   * @return the number of resources in the page.
+   */
+  private int readPage(HttpResponse response, Map<String, SettableFuture<String>> resources)
+      throws IOException {
+    int resourcesInPage = 0;
+    try (JsonReader reader =
+        new JsonReader(new InputStreamReader(response.bodyStream(), StandardCharsets.UTF_8))) {
+      reader.beginArray();
+      while (reader.hasNext()) {
+        resourcesInPage++;
+        String resourceId = null;
+        String versionId = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+          String name = reader.nextName();
+          if (name.equals("id") && reader.peek() != JsonToken.NULL) {
+            resourceId = reader.nextString();
+          } else if (name.equals("version") && reader.peek() == JsonToken.BEGIN_OBJECT) {
+            versionId = JsonFieldPath.of("id").read(reader);
+            while (reader.hasNext()) {
+              reader.skipValue();
+            }
+            reader.endObject();
+          } else {
+            reader.skipValue();
+          }
+        }
+        reader.endObject();
+        SettableFuture<String> latestVersion =
+            resourceId == null ? null : resources.remove(resourceId);
+        if (latestVersion != null) {
+          if (versionId == null) {
+            latestVersion.setException(
+                UpToDateCheckerExceptionCode.FAIL_TO_PARSE_VERSION_CODE.toException());
+          } else {
+            latestVersion.setFuture(versionName(resourceId, versionId));
+          }
+        }
+      }
+    }
+    return resourcesInPage;
+  }
+
+  /** @return the name of the given version of the given resource. */
+  private ListenableFuture<String> versionName(String resourceId, String versionId) {
+    Map.Entry<String, String> knownVersion = knownVersions.getIfPresent(resourceId);
+    if (knownVersion != null && knownVersion.getKey().equals(versionId)) {
+      return Futures.immediateFuture(knownVersion.getValue());
+    }
+    return LegacyFutures.callAsync(
+        () -> {
+          ListenableFuture<String> name =
+              readName(apiUrl + "/resources/" + resourceId + "/versions/" + versionId);
+          return Futures.transform(
+              name,
+              versionName -> {
+                knownVersions.put(resourceId, Maps.immutableEntry(versionId, versionName));
+                return versionName;
+              },
+              MoreExecutors.directExecutor());
+        },
+        executor);
+  }
+
+  /** @return the name field of the version at the given url. */
+  private ListenableFuture<String> readName(String url) {
+    return LegacyFutures.transformAsync(
+        httpClient.requestAsync(HttpRequest.newBuilder().setUrl(url).setStreaming(true).build()),
+        response -> {
+          String name;
+          try (HttpResponse versionResponse = response;
+              JsonReader reader =
+                  new JsonReader(
+                      new InputStreamReader(
+                          versionResponse.bodyStream(), StandardCharsets.UTF_8))) {
+            name = NAME_FIELD_PATH.read(reader);
+          }
+          return name == null
+              ? Futures.immediateFailedFuture(
+                  UpToDateCheckerExceptionCode.FAIL_TO_PARSE_VERSION_CODE.toException())
+              : Futures.immediateFuture(name);
+        },
+        executor);
+  }
+
+  private static void failAll(Map<String, SettableFuture<String>> resources, Throwable t) {
+    List<SettableFuture<String>> failed = new ArrayList<>(resources.values());
+    resources.clear();
+    for (SettableFuture<String> latestVersion : failed) {
+      latestVersion.setException(t);
+    }
+  }
+}
@@ -15,9 +15,9 @@
  */
 package io.github.gonalez.uptodatechecker.providers;
 
-import com.google.gson.JsonElement;
+import io.github.gonalez.uptodatechecker.JsonFieldPath;
 import io.github.gonalez.uptodatechecker.VersionProvider;
-import io.github.gonalez.uptodatechecker.HttpVersionProvider;
+import io.github.gonalez.uptodatechecker.JsonFieldHttpVersionProvider;
 import io.github.gonalez.uptodatechecker.http.HttpClient;
 import io.github.gonalez.uptodatechecker.http.HttpRequest;
 
@@ -25,12 +25,13 @@ import java.util.concurrent.Executor;
 
 /** A {@link VersionProvider} that can get the latest version of a Spigot resource. */
 public class SpigetVersionProvider
-    extends HttpVersionProvider<SpigetVersionProviderContext> {
+    extends JsonFieldHttpVersionProvider<SpigetVersionProviderContext> {
   private static final String LATEST_VERSION_URL =
       "https://api.spiget.org/v2/resources/%s/versions/latest";
+  private static final JsonFieldPath VERSION_FIELD_PATH = JsonFieldPath.of("name");
 
   public SpigetVersionProvider(Executor executor, HttpClient httpClient) {
-    super(executor, httpClient);
+    super(executor, httpClient, VERSION_FIELD_PATH);
   }
 
   @Override
@@ -49,9 +50,4 @@ public class SpigetVersionProvider
         .setUrl(String.format(LATEST_VERSION_URL, context.resourceId()))
         .build();
   }
-
-  @Override
-  protected String readVersion(JsonElement jsonElement) {
-    return jsonElement.getAsJsonObject().get("name").getAsString();
-  }
 }
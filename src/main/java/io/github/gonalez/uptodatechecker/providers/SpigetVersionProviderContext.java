@@ -18,23 +18,41 @@ package io.github.gonalez.uptodatechecker.providers;
 import com.google.auto.value.AutoValue;
 import io.github.gonalez.uptodatechecker.VersionProviderContext;
 
+import java.util.Optional;
+
 /** Context to get the {@link SpigetVersionProvider latest version} of a Spigot resource. */
 @AutoValue
 public abstract class SpigetVersionProviderContext implements VersionProviderContext {
   /** @return a new builder to create a {@link SpigetVersionProviderContext}. */
   public static SpigetVersionProviderContext.Builder newBuilder() {
-    return new AutoValue_SpigetVersionProviderContext.Builder();
+    return new AutoValue_SpigetVersionProviderContext.Builder()
+        .setOptionalAuthorId(Optional.empty());
   }
 
   /** @return the spigot resource-id to get the latest version for. */
   public abstract String resourceId();
 
+  /**
+   * Returns the id of the author of the resource. If present, a {@link SpigetBatchVersionProvider}
+   * finds the latest version of the resource among the resources of the author, together with the
+   * other resources of the same author.
+   */
+  public abstract Optional<String> optionalAuthorId();
+
+  @Override
+  public String key() {
+    return resourceId();
+  }
+
   /** Builder for {@link SpigetVersionProviderContext}. */
   @AutoValue.Builder
   public abstract static class Builder {
     /** Sets the spigot resource-id that will be used to get the latest version. */
     public abstract Builder setResourceId(String resourceId);
 
+    /** Sets the optional id of the author of the resource. */
+    public abstract Builder setOptionalAuthorId(Optional<String> optionalAuthorId);
+
     /** @return a new {@link SpigetVersionProviderContext} from this builder. */
     public abstract SpigetVersionProviderContext build();
   }
@@ -0,0 +1,257 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.version;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * A parsed version, like {@code 1.2.0}, {@code v1.2}, {@code 1.0.0-beta.2+build5} or {@code
+ * 2.1-SNAPSHOT}. It is made of numeric components and an optional qualifier, so versions of
+ * semantic versioning, Maven and most release tags can be compared with each other.
+ *
+ * <p>A leading {@code v} and build metadata, after a {@code +}, are ignored, and so are trailing
+ * zero components, {@code 1.2} and {@code 1.2.0} are the same version. Qualifiers are ordered
+ * {@code alpha < beta < milestone < rc < (unknown) < snapshot < (none) < sp}, unknown qualifiers
+ * are ordered by their name, and each qualifier can be followed by a number, as in {@code rc2}.
+ *
+ * <p>Versions are compared without allocating, and {@link #parse(String)} keeps the last parsed
+ * versions in a bounded table, so comparing the same versions over and over does not parse them
+ * again.
+ */
+@Immutable
+public final class Version implements Comparable<Version> {
+  private static final int INTERNED_VERSIONS = 4096;
+
+  private static final Cache<String, Version> INTERNED =
+      CacheBuilder.newBuilder().maximumSize(INTERNED_VERSIONS).build();
+
+  // The ranks of the qualifiers, in order
+  private static final int ALPHA = 0;
+  private static final int BETA = 1;
+  private static final int MILESTONE = 2;
+  private static final int RELEASE_CANDIDATE = 3;
+  private static final int UNKNOWN = 4;
+  private static final int SNAPSHOT = 5;
+  private static final int RELEASE = 6;
+  private static final int SERVICE_PACK = 7;
+
+  private final String version;
+  private final int[] components;
+  private final int qualifierRank;
+  // Only kept for unknown qualifiers, which are ordered by name
+  private final String qualifier;
+  private final int qualifierNumber;
+
+  private Version(
+      String version, int[] components, int qualifierRank, String qualifier, int qualifierNumber) {
+    this.version = version;
+    this.components = components;
+    this.qualifierRank = qualifierRank;
+    this.qualifier = qualifier;
+    this.qualifierNumber = qualifierNumber;
+  }
+
+  /** @return the parsed version, from the table of the last parsed versions if it's there. */
+  public static Version parse(String version) {
+    checkNotNull(version);
+    Version parsed = INTERNED.getIfPresent(version);
+    if (parsed == null) {
+      parsed = parseUncached(version);
+      INTERNED.put(version, parsed);
+    }
+    return parsed;
+  }
+
+  /**
+   * Compares the given versions.
+   *
+   * @return a negative number, zero, or a positive number as the first version is older, the same
+   *     or newer than the second one.
+   */
+  public static int compare(String first, String second) {
+    return parse(first).compareTo(parse(second));
+  }
+
+  private static Version parseUncached(String version) {
+    String trimmed = version.trim();
+    int start = 0;
+    int end = trimmed.indexOf('+');
+    if (end == -1) {
+      end = trimmed.length();
+    }
+    if (start < end
+        && (trimmed.charAt(start) == 'v' || trimmed.charAt(start) == 'V')
+        && start + 1 < end
+        && Character.isDigit(trimmed.charAt(start + 1))) {
+      start++;
+    }
+    int[] components = new int[4];
+    int count = 0;
+    int position = start;
+    while (position < end && Character.isDigit(trimmed.charAt(position))) {
+      int component = 0;
+      while (position < end && Character.isDigit(trimmed.charAt(position))) {
+        component = saturatedAdd(component, trimmed.charAt(position++) - '0');
+      }
+      if (count == components.length) {
+        components = Arrays.copyOf(components, count * 2);
+      }
+      components[count++] = component;
+      if (position + 1 < end
+          && trimmed.charAt(position) == '.'
+          && Character.isDigit(trimmed.charAt(position + 1))) {
+        position++;
+      } else {
+        break;
+      }
+    }
+    while (count > 0 && components[count - 1] == 0) {
+      count--;
+    }
+    components = Arrays.copyOf(components, count);
+
+    // 1.0-rc.1, 1.0rc1, 1.0.Final
+    while (position < end && isSeparator(trimmed.charAt(position))) {
+      position++;
+    }
+    int labelEnd = position;
+    while (labelEnd < end && !Character.isDigit(trimmed.charAt(labelEnd))) {
+      labelEnd++;
+    }
+    String label = trimmed.substring(position, labelEnd);
+    int labelLength = label.length();
+    while (labelLength > 0 && isSeparator(label.charAt(labelLength - 1))) {
+      labelLength--;
+    }
+    label = label.substring(0, labelLength).toLowerCase(Locale.ROOT);
+    int qualifierNumber = 0;
+    int numberEnd = labelEnd;
+    while (numberEnd < end && Character.isDigit(trimmed.charAt(numberEnd))) {
+      qualifierNumber = saturatedAdd(qualifierNumber, trimmed.charAt(numberEnd++) - '0');
+    }
+    int qualifierRank = rankOf(label);
+    String qualifier = "";
+    if (qualifierRank == UNKNOWN || numberEnd < end) {
+      // Anything past the qualifier number is ordered by name too
+      qualifierRank = qualifierRank == RELEASE ? UNKNOWN : qualifierRank;
+      qualifier = trimmed.substring(position, end).toLowerCase(Locale.ROOT);
+    }
+    return new Version(version, components, qualifierRank, qualifier, qualifierNumber);
+  }
+
+  private static int saturatedAdd(int value, int digit) {
+    return value > (Integer.MAX_VALUE - digit) / 10 ? Integer.MAX_VALUE : value * 10 + digit;
+  }
+
+  private static boolean isSeparator(char c) {
+    return c == '-' || c == '.' || c == '_';
+  }
+
+  private static int rankOf(String label) {
+    switch (label) {
+      case "a":
+      case "alpha":
+        return ALPHA;
+      case "b":
+      case "beta":
+        return BETA;
+      case "m":
+      case "milestone":
+        return MILESTONE;
+      case "rc":
+      case "cr":
+        return RELEASE_CANDIDATE;
+      case "snapshot":
+        return SNAPSHOT;
+      case "":
+      case "ga":
+      case "final":
+      case "release":
+        return RELEASE;
+      case "sp":
+        return SERVICE_PACK;
+      default:
+        return UNKNOWN;
+    }
+  }
+
+  /** @return the numeric component at the given index, or {@code 0} if there is no such one. */
+  public int component(int index) {
+    return index < components.length ? components[index] : 0;
+  }
+
+  /** @return the number of numeric components, without the trailing zero ones. */
+  public int componentCount() {
+    return components.length;
+  }
+
+  /** @return whether this version has a qualifier that marks it as a pre-release. */
+  public boolean isPreRelease() {
+    return qualifierRank < RELEASE;
+  }
+
+  @Override
+  public int compareTo(Version other) {
+    int length = Math.max(components.length, other.components.length);
+    for (int i = 0; i < length; i++) {
+      int compare = Integer.compare(component(i), other.component(i));
+      if (compare != 0) {
+        return compare;
+      }
+    }
+    int compare = Integer.compare(qualifierRank, other.qualifierRank);
+    if (compare != 0) {
+      return compare;
+    }
+    compare = Integer.compare(qualifierNumber, other.qualifierNumber);
+    if (compare != 0) {
+      return compare;
+    }
+    return qualifier.compareTo(other.qualifier);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof Version)) {
+      return false;
+    }
+    return compareTo((Version) obj) == 0;
+  }
+
+  @Override
+  public int hashCode() {
+    int hashCode = Arrays.hashCode(components);
+    hashCode = 31 * hashCode + qualifierRank;
+    hashCode = 31 * hashCode + qualifierNumber;
+    return 31 * hashCode + qualifier.hashCode();
+  }
+
+  /** @return the version as it was given to {@link #parse(String)}. */
+  @Override
+  public String toString() {
+    return version;
+  }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.version;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Splitter;
+
+import javax.annotation.concurrent.Immutable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A constraint on the versions to update to, like {@code >=2.0 <3.0}, {@code stable} or {@code
+ * same-major}. It is parsed once into bounds and flags, so checking a version against it only
+ * compares the already parsed {@link Version}s.
+ *
+ * <p>A constraint is made of terms separated by spaces or commas, a version must match all of them:
+ *
+ * <ul>
+ *   <li>{@code =}, {@code !=}, {@code >}, {@code >=}, {@code <} or {@code <=} followed by a version.
+ *   <li>{@code stable}, for versions that are not {@link Version#isPreRelease() pre-releases}.
+ *   <li>{@code same-major} or {@code same-minor}, for versions with the same major, or major and
+ *       minor, components as the current version.
+ *   <li>{@code *}, for any version.
+ * </ul>
+ */
+@Immutable
+public final class VersionConstraint {
+  /** A constraint that any version matches. */
+  public static final VersionConstraint ANY = parse("*");
+
+  private static final int EQUAL = 0;
+  private static final int NOT_EQUAL = 1;
+  private static final int GREATER = 2;
+  private static final int GREATER_OR_EQUAL = 3;
+  private static final int LESS = 4;
+  private static final int LESS_OR_EQUAL = 5;
+
+  private static final String[] OPERATORS = {"=", "!=", ">", ">=", "<", "<="};
+
+  private final String constraint;
+  private final int[] operators;
+  private final Version[] bounds;
+  private final boolean stable;
+  // The number of leading components that must be the same as the current version
+  private final int sameComponents;
+
+  private VersionConstraint(
+      String constraint, int[] operators, Version[] bounds, boolean stable, int sameComponents) {
+    this.constraint = constraint;
+    this.operators = operators;
+    this.bounds = bounds;
+    this.stable = stable;
+    this.sameComponents = sameComponents;
+  }
+
+  /**
+   * Parses the given constraint.
+   *
+   * @throws IllegalArgumentException if the constraint is not valid.
+   */
+  public static VersionConstraint parse(String constraint) {
+    List<Integer> operators = new ArrayList<>();
+    List<Version> bounds = new ArrayList<>();
+    boolean stable = false;
+    int sameComponents = 0;
+    for (String term :
+        Splitter.on(CharMatcher.anyOf(", \t")).omitEmptyStrings().split(constraint)) {
+      switch (term) {
+        case "*":
+          break;
+        case "stable":
+          stable = true;
+          break;
+        case "same-major":
+          sameComponents = Math.max(sameComponents, 1);
+          break;
+        case "same-minor":
+          sameComponents = Math.max(sameComponents, 2);
+          break;
+        default:
+          int operator = operatorOf(term);
+          String version = term.substring(OPERATORS[operator].length());
+          checkArgument(!version.isEmpty(), "Missing version in constraint: %s", constraint);
+          operators.add(operator);
+          bounds.add(Version.parse(version));
+      }
+    }
+    return new VersionConstraint(
+        constraint,
+        operators.stream().mapToInt(Integer::intValue).toArray(),
+        bounds.toArray(new Version[0]),
+        stable,
+        sameComponents);
+  }
+
+  private static int operatorOf(String term) {
+    if (term.startsWith(">=")) {
+      return GREATER_OR_EQUAL;
+    } else if (term.startsWith("<=")) {
+      return LESS_OR_EQUAL;
+    } else if (term.startsWith("!=")) {
+      return NOT_EQUAL;
+    } else if (term.startsWith(">")) {
+      return GREATER;
+    } else if (term.startsWith("<")) {
+      return LESS;
+    } else if (term.startsWith("=")) {
+      return EQUAL;
+    }
+    throw new IllegalArgumentException("Invalid version constraint term: " + term);
+  }
+
+  /** @return whether the given version matches this constraint, for the given current version. */
+  public boolean matches(Version currentVersion, Version version) {
+    if (stable && version.isPreRelease()) {
+      return false;
+    }
+    for (int i = 0; i < sameComponents; i++) {
+      if (version.component(i) != currentVersion.component(i)) {
+        return false;
+      }
+    }
+    for (int i = 0; i < operators.length; i++) {
+      int compare = version.compareTo(bounds[i]);
+      boolean matches;
+      switch (operators[i]) {
+        case EQUAL:
+          matches = compare == 0;
+          break;
+        case NOT_EQUAL:
+          matches = compare != 0;
+          break;
+        case GREATER:
+          matches = compare > 0;
+          break;
+        case GREATER_OR_EQUAL:
+          matches = compare >= 0;
+          break;
+        case LESS:
+          matches = compare < 0;
+          break;
+        default:
+          matches = compare <= 0;
+      }
+      if (!matches) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns whether the current version is up-to-date with the latest version, that is, unless the
+   * latest version is newer than the current version and matches this constraint.
+   */
+  public boolean isUpToDate(String currentVersion, String latestVersion) {
+    Version current = Version.parse(currentVersion);
+    Version latest = Version.parse(latestVersion);
+    return latest.compareTo(current) <= 0 || !matches(current, latest);
+  }
+
+  /** Constraints are equal if they are parsed into the same bounds and flags. */
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (!(obj instanceof VersionConstraint)) {
+      return false;
+    }
+    VersionConstraint other = (VersionConstraint) obj;
+    return stable == other.stable
+        && sameComponents == other.sameComponents
+        && Arrays.equals(operators, other.operators)
+        && Arrays.equals(bounds, other.bounds);
+  }
+
+  @Override
+  public int hashCode() {
+    int hashCode = Arrays.hashCode(operators);
+    hashCode = 31 * hashCode + Arrays.hashCode(bounds);
+    hashCode = 31 * hashCode + Boolean.hashCode(stable);
+    return 31 * hashCode + sameComponents;
+  }
+
+  @Override
+  public String toString() {
+    return constraint;
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.version;
+
+import java.util.function.BiFunction;
+
+/**
+ * Version match strategies, to be given to {@link
+ * io.github.gonalez.uptodatechecker.UpToDateCheckerBuilder#setVersionMatchStrategy(BiFunction)},
+ * that compare the current and latest versions as parsed {@link Version}s instead of as strings.
+ */
+public final class VersionMatchStrategies {
+  private VersionMatchStrategies() {}
+
+  /**
+   * Returns a strategy for which the current version is up-to-date if it is the same as, or newer
+   * than, the latest version, so {@code v1.2} is up-to-date with {@code 1.2.0} and so is a {@code
+   * 1.3-SNAPSHOT} build.
+   */
+  public static BiFunction<String, String, Boolean> newerOrEqual() {
+    return (currentVersion, latestVersion) -> Version.compare(currentVersion, latestVersion) >= 0;
+  }
+
+  /**
+   * Returns a strategy for which the current version is up-to-date only if it is the same as the
+   * latest version, like {@code v1.2} and {@code 1.2.0}.
+   */
+  public static BiFunction<String, String, Boolean> equivalent() {
+    return (currentVersion, latestVersion) -> Version.compare(currentVersion, latestVersion) == 0;
+  }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Virtual threads, where the runtime supports them. This is the version of the class used on Java
+ * 21 and newer, from the {@code META-INF/versions/21} directory of the multi-release jar.
+ */
+public final class VirtualThreads {
+  private VirtualThreads() {}
+
+  /** @return whether the runtime supports virtual threads. */
+  public static boolean isSupported() {
+    return true;
+  }
+
+  /**
+   * Returns an executor which runs each task in a new virtual thread, so blocking tasks don't hold
+   * a platform thread while they wait.
+   */
+  public static ExecutorService newVirtualThreadPerTaskExecutor() {
+    return Executors.newThreadPerTaskExecutor(
+        Thread.ofVirtual().name("uptodatechecker-virtual-", 0).factory());
+  }
+}
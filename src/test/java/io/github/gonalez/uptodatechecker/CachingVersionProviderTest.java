@@ -0,0 +1,117 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import io.github.gonalez.uptodatechecker.providers.GithubVersionProviderContext;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Tests for {@link CachingVersionProvider}. */
+public class CachingVersionProviderTest {
+  private static final GithubVersionProviderContext CONTEXT =
+      GithubVersionProviderContext.newBuilder()
+          .setRepoOwner("gonalez")
+          .setRepoName("uptodatechecker")
+          .build();
+
+  private static final GithubVersionProviderContext OTHER_CONTEXT =
+      GithubVersionProviderContext.newBuilder()
+          .setRepoOwner("gonalez")
+          .setRepoName("znpc-servers")
+          .build();
+
+  private final AtomicLong nanos = new AtomicLong();
+  private final Ticker ticker =
+      new Ticker() {
+        @Override
+        public long read() {
+          return nanos.get();
+        }
+      };
+
+  private final CountingVersionProvider countingVersionProvider = new CountingVersionProvider();
+
+  @Test
+  public void testCachesUntilExpired() throws Exception {
+    CachingVersionProvider<GithubVersionProviderContext> versionProvider =
+        new CachingVersionProvider<>(
+            countingVersionProvider,
+            VersionCacheOptions.newBuilder().setExpireAfterWrite(1000).build(),
+            ticker);
+
+    assertThat(versionProvider.findLatestVersion(CONTEXT).get()).isEqualTo("1");
+    assertThat(versionProvider.findLatestVersion(CONTEXT).get()).isEqualTo("1");
+
+    nanos.addAndGet(TimeUnit.SECONDS.toNanos(1));
+    assertThat(versionProvider.findLatestVersion(CONTEXT).get()).isEqualTo("2");
+    assertThat(versionProvider.stats().hitCount()).isEqualTo(1);
+    assertThat(versionProvider.stats().missCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void testEvictsWhenFull() throws Exception {
+    CachingVersionProvider<GithubVersionProviderContext> versionProvider =
+        new CachingVersionProvider<>(
+            countingVersionProvider,
+            VersionCacheOptions.newBuilder().setMaximumSize(1).build(),
+            ticker);
+
+    versionProvider.findLatestVersion(CONTEXT).get();
+    versionProvider.findLatestVersion(OTHER_CONTEXT).get();
+    versionProvider.findLatestVersion(CONTEXT).get();
+    assertThat(countingVersionProvider.calls.get()).isEqualTo(3);
+    assertThat(versionProvider.stats().evictionCount()).isAtLeast(1);
+  }
+
+  @Test
+  public void testRejectsInvalidOptions() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> VersionCacheOptions.newBuilder().setExpireAfterWrite(0).build());
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> VersionCacheOptions.newBuilder().setMaximumSize(-1).build());
+  }
+
+  private static class CountingVersionProvider
+      implements VersionProvider<GithubVersionProviderContext> {
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public String name() {
+      return "counting";
+    }
+
+    @Override
+    public Class<GithubVersionProviderContext> contextType() {
+      return GithubVersionProviderContext.class;
+    }
+
+    @Override
+    public ListenableFuture<String> findLatestVersion(GithubVersionProviderContext context) {
+      return Futures.immediateFuture(String.valueOf(calls.incrementAndGet()));
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/** Tests for {@link FileVersionSnapshotStore}. */
+public class FileVersionSnapshotStoreTest {
+  private static final String KEY = "github:uptodatechecker";
+  private static final String OTHER_KEY = "spiget:80940";
+
+  private static final VersionSnapshot SNAPSHOT =
+      VersionSnapshot.newBuilder()
+          .setLatestVersion("0.0.2")
+          .setTimestamp(1000)
+          .setValidators(ImmutableMap.of("etag", "\"v1\""))
+          .build();
+
+  private static final VersionSnapshot OTHER_SNAPSHOT =
+      VersionSnapshot.newBuilder().setLatestVersion("4.4").setTimestamp(2000).build();
+
+  @Test
+  public void testLoadsSavedSnapshots(@TempDir Path directory) throws Exception {
+    Path path = directory.resolve("versions.bin");
+    FileVersionSnapshotStore store = new FileVersionSnapshotStore(path);
+    assertThat(store.load()).isEmpty();
+    store.save(KEY, OTHER_SNAPSHOT);
+    store.save(KEY, SNAPSHOT);
+    store.save(OTHER_KEY, OTHER_SNAPSHOT);
+
+    assertThat(new FileVersionSnapshotStore(path).load())
+        .isEqualTo(ImmutableMap.of(KEY, SNAPSHOT, OTHER_KEY, OTHER_SNAPSHOT));
+  }
+
+  @Test
+  public void testDropsTornRecord(@TempDir Path directory) throws Exception {
+    Path path = directory.resolve("versions.bin");
+    FileVersionSnapshotStore store = new FileVersionSnapshotStore(path);
+    store.save(KEY, SNAPSHOT);
+    store.save(OTHER_KEY, OTHER_SNAPSHOT);
+    // As if the process died while writing the last record
+    try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      fileChannel.truncate(fileChannel.size() - 3);
+    }
+
+    store = new FileVersionSnapshotStore(path);
+    assertThat(store.load()).isEqualTo(ImmutableMap.of(KEY, SNAPSHOT));
+    store.save(OTHER_KEY, OTHER_SNAPSHOT);
+    assertThat(new FileVersionSnapshotStore(path).load())
+        .isEqualTo(ImmutableMap.of(KEY, SNAPSHOT, OTHER_KEY, OTHER_SNAPSHOT));
+  }
+
+  @Test
+  public void testCompactsOldRecords(@TempDir Path directory) throws Exception {
+    Path path = directory.resolve("versions.bin");
+    FileVersionSnapshotStore store = new FileVersionSnapshotStore(path);
+    store.save(KEY, SNAPSHOT);
+    long size = Files.size(path);
+    for (int i = 0; i < 1000; i++) {
+      store.save(KEY, SNAPSHOT.toBuilder().setTimestamp(i).build());
+    }
+
+    assertThat(Files.size(path)).isLessThan(size * 200);
+    assertThat(new FileVersionSnapshotStore(path).load().get(KEY).timestamp()).isEqualTo(999L);
+  }
+}
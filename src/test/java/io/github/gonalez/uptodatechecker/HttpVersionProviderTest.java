@@ -0,0 +1,170 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import io.github.gonalez.uptodatechecker.http.HttpClientImpl;
+import io.github.gonalez.uptodatechecker.http.HttpRequest;
+import io.github.gonalez.uptodatechecker.providers.GithubVersionProviderContext;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/** Tests for {@link HttpVersionProvider}. */
+public class HttpVersionProviderTest {
+  private static final Executor EXECUTOR = MoreExecutors.directExecutor();
+
+  private static final byte[] RELEASE =
+      "{\"tag_name\": \"0.0.2\"}".getBytes(StandardCharsets.UTF_8);
+
+  private static final GithubVersionProviderContext CONTEXT =
+      GithubVersionProviderContext.newBuilder()
+          .setRepoOwner("gonalez")
+          .setRepoName("uptodatechecker")
+          .build();
+
+  private static final List<Integer> RESPONSE_CODES = new CopyOnWriteArrayList<>();
+
+  private static HttpServer server;
+  private static String baseUrl;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/releases/latest",
+        exchange -> {
+          exchange.getResponseHeaders().set("ETag", "\"v1\"");
+          if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            RESPONSE_CODES.add(304);
+            exchange.sendResponseHeaders(304, -1);
+          } else {
+            RESPONSE_CODES.add(200);
+            exchange.sendResponseHeaders(200, RELEASE.length);
+            exchange.getResponseBody().write(RELEASE);
+          }
+          exchange.close();
+        });
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @AfterAll
+  static void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testRevalidatesWithEntityTag() throws Exception {
+    RESPONSE_CODES.clear();
+    HttpVersionProvider<GithubVersionProviderContext> versionProvider = newVersionProvider();
+
+    assertThat(versionProvider.findLatestVersion(CONTEXT).get()).isEqualTo("0.0.2");
+    assertThat(versionProvider.findLatestVersion(CONTEXT).get()).isEqualTo("0.0.2");
+    assertThat(RESPONSE_CODES).containsExactly(200, 304).inOrder();
+  }
+
+  @Test
+  public void testRevalidatesGivenSnapshot() throws Exception {
+    RESPONSE_CODES.clear();
+    VersionSnapshot snapshot =
+        newVersionProvider().findLatestSnapshot(CONTEXT, Optional.empty()).get();
+    assertThat(snapshot.validators()).containsExactly("etag", "\"v1\"");
+
+    // As if the snapshot was loaded from a store after a restart
+    assertThat(
+            newVersionProvider()
+                .findLatestSnapshot(CONTEXT, Optional.of(snapshot))
+                .get()
+                .latestVersion())
+        .isEqualTo("0.0.2");
+    assertThat(RESPONSE_CODES).containsExactly(200, 304).inOrder();
+  }
+
+  @Test
+  public void testOnlyRemembersVersionsFoundWithoutSnapshot() throws Exception {
+    RESPONSE_CODES.clear();
+    HttpVersionProvider<GithubVersionProviderContext> versionProvider = newVersionProvider();
+    versionProvider.findLatestSnapshot(CONTEXT, Optional.empty()).get();
+
+    // The snapshot is kept by the caller, the provider asks for the whole version again
+    assertThat(versionProvider.findLatestVersion(CONTEXT).get()).isEqualTo("0.0.2");
+    assertThat(RESPONSE_CODES).containsExactly(200, 200).inOrder();
+  }
+
+  @Test
+  public void testReadsVersionField() throws Exception {
+    JsonFieldHttpVersionProvider<GithubVersionProviderContext> versionProvider =
+        new JsonFieldHttpVersionProvider<GithubVersionProviderContext>(
+            EXECUTOR, new HttpClientImpl(EXECUTOR), JsonFieldPath.of("tag_name")) {
+          @Override
+          protected HttpRequest buildRequest(GithubVersionProviderContext context) {
+            return HttpRequest.newBuilder().setUrl(baseUrl + "/releases/latest").build();
+          }
+
+          @Override
+          public String name() {
+            return "test";
+          }
+
+          @Override
+          public Class<GithubVersionProviderContext> contextType() {
+            return GithubVersionProviderContext.class;
+          }
+        };
+
+    assertThat(versionProvider.findLatestVersion(CONTEXT).get()).isEqualTo("0.0.2");
+    assertThat(versionProvider.readVersion(JsonParser.parseString("{\"tag_name\": \"0.0.3\"}")))
+        .isEqualTo("0.0.3");
+  }
+
+  private static HttpVersionProvider<GithubVersionProviderContext> newVersionProvider() {
+    return new HttpVersionProvider<GithubVersionProviderContext>(
+        EXECUTOR, new HttpClientImpl(EXECUTOR)) {
+      @Override
+      protected HttpRequest buildRequest(GithubVersionProviderContext context) {
+        return HttpRequest.newBuilder().setUrl(baseUrl + "/releases/latest").build();
+      }
+
+      @Override
+      protected String readVersion(JsonElement jsonElement) {
+        return jsonElement.getAsJsonObject().get("tag_name").getAsString();
+      }
+
+      @Override
+      public String name() {
+        return "test";
+      }
+
+      @Override
+      public Class<GithubVersionProviderContext> contextType() {
+        return GithubVersionProviderContext.class;
+      }
+    };
+  }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.gson.stream.JsonReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/** Tests for {@link JsonFieldPath}. */
+public class JsonFieldPathTest {
+  private static final String RELEASE =
+      "{\"id\":1,\"author\":{\"login\":\"gonalez\",\"tags\":[1,2]},"
+          + "\"assets\":[{\"name\":\"a.jar\"},{\"name\":\"b.jar\",\"size\":42}],"
+          + "\"tag_name\":\"0.2\",\"draft\":false}";
+
+  @Test
+  public void testReadsField() throws IOException {
+    assertThat(read(JsonFieldPath.of("tag_name"), RELEASE)).isEqualTo("0.2");
+    assertThat(read(JsonFieldPath.of("author", "login"), RELEASE)).isEqualTo("gonalez");
+    assertThat(read(JsonFieldPath.parse("assets[1].name"), RELEASE)).isEqualTo("b.jar");
+    assertThat(read(JsonFieldPath.parse("assets[1].size"), RELEASE)).isEqualTo("42");
+    assertThat(read(JsonFieldPath.parse("draft"), RELEASE)).isEqualTo("false");
+    assertThat(read(JsonFieldPath.parse("[0]"), "[\"0.1\",\"0.2\"]")).isEqualTo("0.1");
+  }
+
+  @Test
+  public void testMissingFieldIsNull() throws IOException {
+    assertThat(read(JsonFieldPath.of("name"), RELEASE)).isNull();
+    assertThat(read(JsonFieldPath.parse("assets[2].name"), RELEASE)).isNull();
+    assertThat(read(JsonFieldPath.parse("tag_name.name"), RELEASE)).isNull();
+    // Not a string, number or boolean
+    assertThat(read(JsonFieldPath.of("author"), RELEASE)).isNull();
+  }
+
+  @Test
+  public void testStopsAtField() throws IOException {
+    // Nothing after the field is read, so it does not have to be valid
+    assertThat(read(JsonFieldPath.of("tag_name"), "{\"tag_name\":\"0.2\", ]]]"))
+        .isEqualTo("0.2");
+  }
+
+  private static String read(JsonFieldPath path, String json) throws IOException {
+    return path.read(new JsonReader(new StringReader(json)));
+  }
+}
@@ -16,19 +16,35 @@
 package io.github.gonalez.uptodatechecker;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import io.github.gonalez.uptodatechecker.concurrent.Deadline;
 import io.github.gonalez.uptodatechecker.http.HttpClientImpl;
 import io.github.gonalez.uptodatechecker.providers.SpigetVersionProvider;
 import io.github.gonalez.uptodatechecker.providers.SpigetVersionProviderContext;
+import io.github.gonalez.uptodatechecker.version.VersionConstraint;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -181,4 +197,713 @@ public class UpToDateCheckerTest {
 
     assertThat(atomicInteger.get()).isEqualTo(1);
   }
-}
\ No newline at end of file
+
+  private static class TestContext implements VersionProviderContext {}
+
+  @Test
+  public void testResolvesProvidersAsTheyAreAdded() throws Exception {
+    UpToDateChecker checker =
+        new UpToDateCheckerImpl(MoreExecutors.directExecutor(), Optional.empty(), EQUAL_STRATEGY);
+    CheckUpToDateRequest request =
+        CheckUpToDateRequest.newBuilder()
+            .setCurrentVersion("0.1")
+            .setContext(new TestContext() {})
+            .build();
+    ListenableFuture<CheckUpToDateResponse> withoutProvider =
+        checker.checkWithDownloadingAndScheduling().requesting(request).response();
+    assertThrows(ExecutionException.class, withoutProvider::get);
+
+    assertThat(
+            checker
+                .addVersionProvider(
+                    new VersionProvider<TestContext>() {
+                      @Override
+                      public String name() {
+                        return "test-context";
+                      }
+
+                      @Override
+                      public Class<TestContext> contextType() {
+                        return TestContext.class;
+                      }
+
+                      @Override
+                      public ListenableFuture<String> findLatestVersion(TestContext context) {
+                        return Futures.immediateFuture("1.0");
+                      }
+                    })
+                .isDone())
+        .isTrue();
+    checker.addVersionProvider(new TestVersionProvider());
+    assertThat(
+            checker.checkWithDownloadingAndScheduling()
+                .requesting(request)
+                .response()
+                .get()
+                .latestVersion())
+        .isEqualTo("1.0");
+    assertThat(
+            checker.checkWithDownloadingAndScheduling()
+                .requesting(
+                    CheckUpToDateRequest.newBuilder()
+                        .setCurrentVersion("0.1")
+                        .setContext(new VersionProviderContext() {})
+                        .build())
+                .response()
+                .get()
+                .latestVersion())
+        .isEqualTo("0.2");
+  }
+
+  @Test
+  public void testCheckAllBatchesRequests() throws Exception {
+    AtomicInteger batches = new AtomicInteger();
+    UpToDateChecker checker =
+        new UpToDateCheckerImpl(MoreExecutors.directExecutor(), Optional.empty(), EQUAL_STRATEGY);
+    checker.addVersionProvider(
+        new BatchVersionProvider<TestContext>() {
+          @Override
+          public String name() {
+            return "test-batch";
+          }
+
+          @Override
+          public Class<TestContext> contextType() {
+            return TestContext.class;
+          }
+
+          @Override
+          public ListenableFuture<String> findLatestVersion(TestContext context) {
+            throw new AssertionError("Not batched");
+          }
+
+          @Override
+          public ListenableFuture<ImmutableMap<TestContext, String>> findLatestVersions(
+              ImmutableSet<TestContext> contexts) {
+            batches.incrementAndGet();
+            ImmutableMap.Builder<TestContext, String> latestVersions = ImmutableMap.builder();
+            for (TestContext context : contexts) {
+              if (!context.toString().equals("unknown")) {
+                latestVersions.put(context, "1.0");
+              }
+            }
+            return Futures.immediateFuture(latestVersions.build());
+          }
+        });
+    List<CheckUpToDateRequest> requests = new ArrayList<>();
+    for (String name : new String[] {"first", "second", "unknown"}) {
+      requests.add(
+          CheckUpToDateRequest.newBuilder()
+              .setCurrentVersion(name.equals("first") ? "1.0" : "0.9")
+              .setContext(
+                  new TestContext() {
+                    @Override
+                    public String toString() {
+                      return name;
+                    }
+                  })
+              .build());
+    }
+
+    // An equal request still gets its own response
+    requests.add(requests.get(1));
+
+    ImmutableList<ListenableFuture<CheckUpToDateResponse>> responses = checker.checkAll(requests);
+    assertThat(batches.get()).isEqualTo(1);
+    assertThat(responses).hasSize(4);
+    assertThat(responses.get(0).get().isUpToDate()).isTrue();
+    assertThat(responses.get(1).get().isUpToDate()).isFalse();
+    assertThrows(ExecutionException.class, () -> responses.get(2).get());
+    assertThat(responses.get(3).get().isUpToDate()).isFalse();
+  }
+
+  @Test
+  public void testCheckAllDeadlineDoesNotFailTheBatch() throws Exception {
+    SettableFuture<ImmutableMap<TestContext, String>> latestVersions = SettableFuture.create();
+    UpToDateChecker checker =
+        new UpToDateCheckerImpl(MoreExecutors.directExecutor(), Optional.empty(), EQUAL_STRATEGY);
+    checker.addVersionProvider(
+        new BatchVersionProvider<TestContext>() {
+          @Override
+          public String name() {
+            return "test-batch";
+          }
+
+          @Override
+          public Class<TestContext> contextType() {
+            return TestContext.class;
+          }
+
+          @Override
+          public ListenableFuture<String> findLatestVersion(TestContext context) {
+            throw new AssertionError("Not batched");
+          }
+
+          @Override
+          public ListenableFuture<ImmutableMap<TestContext, String>> findLatestVersions(
+              ImmutableSet<TestContext> contexts) {
+            return latestVersions;
+          }
+        });
+    TestContext first = new TestContext();
+    TestContext second = new TestContext();
+    ImmutableList<ListenableFuture<CheckUpToDateResponse>> responses =
+        checker.checkAll(
+            ImmutableList.of(
+                CheckUpToDateRequest.newBuilder()
+                    .setCurrentVersion("0.1")
+                    .setContext(first)
+                    .setOptionalDeadline(
+                        Optional.of(Deadline.after(100, TimeUnit.MILLISECONDS)))
+                    .build(),
+                CheckUpToDateRequest.newBuilder()
+                    .setCurrentVersion("0.1")
+                    .setContext(second)
+                    .build()));
+
+    ExecutionException e = assertThrows(ExecutionException.class, () -> responses.get(0).get());
+    assertThat(((UpToDateCheckerException) e.getCause()).getExceptionCode())
+        .isEqualTo(UpToDateCheckerExceptionCode.DEADLINE_EXCEEDED_CODE);
+    assertThat(latestVersions.isCancelled()).isFalse();
+
+    latestVersions.set(ImmutableMap.of(first, "1.0", second, "1.0"));
+    assertThat(responses.get(1).get(5, TimeUnit.SECONDS).latestVersion()).isEqualTo("1.0");
+  }
+
+  @Test
+  public void testSoftTtlServesLastKnownVersion() throws Exception {
+    AtomicInteger versions = new AtomicInteger();
+    UpToDateChecker checker =
+        new UpToDateCheckerImpl(MoreExecutors.directExecutor(), Optional.empty(), EQUAL_STRATEGY);
+    checker.addVersionProvider(
+        new TestVersionProvider() {
+          @Override
+          public ListenableFuture<String> findLatestVersion(VersionProviderContext context) {
+            return Futures.immediateFuture("0." + versions.incrementAndGet());
+          }
+        });
+    VersionProviderContext context = new VersionProviderContext() {};
+    List<String> notifiedVersions = new ArrayList<>();
+    CheckUpToDateRequest.Builder request =
+        CheckUpToDateRequest.newBuilder()
+            .setCurrentVersion("0.1")
+            .setContext(context)
+            .setOptionalCallback(
+                Optional.of(
+                    new UpToDateChecker.Callback() {
+                      @Override
+                      public void onSuccess(CheckUpToDateResponse response) {
+                        notifiedVersions.add(response.latestVersion());
+                      }
+                    }));
+
+    // Nothing known yet, the provider is asked
+    assertThat(
+            checker.checkWithDownloadingAndScheduling()
+                .requesting(request.setOptionalSoftTtl(Optional.of(0L)).build())
+                .response()
+                .get()
+                .latestVersion())
+        .isEqualTo("0.1");
+    // Stale, served as is while the provider is asked again
+    assertThat(
+            checker.checkWithDownloadingAndScheduling()
+                .requesting(request.build())
+                .response()
+                .get()
+                .latestVersion())
+        .isEqualTo("0.1");
+    assertThat(notifiedVersions).containsExactly("0.1", "0.1", "0.2").inOrder();
+
+    // Fresh, the provider is not asked
+    assertThat(
+            checker.checkWithDownloadingAndScheduling()
+                .requesting(request.setOptionalSoftTtl(Optional.of(60000L)).build())
+                .response()
+                .get()
+                .latestVersion())
+        .isEqualTo("0.2");
+    assertThat(versions.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testProviderFailureReachesTheCallbackWithoutStoreOrSoftTtl() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    UpToDateChecker checker =
+        new UpToDateCheckerImpl(MoreExecutors.directExecutor(), Optional.empty(), EQUAL_STRATEGY);
+    checker.addVersionProvider(
+        new TestVersionProvider() {
+          @Override
+          public ListenableFuture<String> findLatestVersion(VersionProviderContext context) {
+            return calls.incrementAndGet() > 1
+                ? Futures.immediateFailedFuture(new IOException("unavailable"))
+                : Futures.immediateFuture("1.0");
+          }
+        });
+    List<Throwable> errors = new ArrayList<>();
+    CheckUpToDateRequest request =
+        CheckUpToDateRequest.newBuilder()
+            .setCurrentVersion("0.1")
+            .setContext(new VersionProviderContext() {})
+            .setOptionalCallback(
+                Optional.of(
+                    new UpToDateChecker.Callback() {
+                      @Override
+                      public void onError(Throwable throwable) {
+                        errors.add(throwable);
+                      }
+                    }))
+            .build();
+    assertThat(
+            checker.checkWithDownloadingAndScheduling()
+                .requesting(request)
+                .response()
+                .get()
+                .latestVersion())
+        .isEqualTo("1.0");
+
+    // The version is known, but nothing asked to be answered with it
+    ListenableFuture<CheckUpToDateResponse> response =
+        checker.checkWithDownloadingAndScheduling().requesting(request).response();
+    ExecutionException e = assertThrows(ExecutionException.class, response::get);
+    assertThat(e.getCause()).isInstanceOf(IOException.class);
+    assertThat(errors).hasSize(1);
+    assertThat(errors.get(0)).isInstanceOf(IOException.class);
+  }
+
+  @Test
+  public void testRevalidationBypassesTheCache() throws Exception {
+    AtomicInteger versions = new AtomicInteger();
+    UpToDateChecker checker =
+        new UpToDateCheckerImpl(
+            MoreExecutors.directExecutor(),
+            Optional.empty(),
+            EQUAL_STRATEGY,
+            Optional.of(VersionCacheOptions.DEFAULT_OPTIONS),
+            Optional.empty());
+    checker.addVersionProvider(
+        new TestVersionProvider() {
+          @Override
+          public ListenableFuture<String> findLatestVersion(VersionProviderContext context) {
+            int version = versions.incrementAndGet();
+            return version > 2
+                ? Futures.immediateFailedFuture(new IOException("unavailable"))
+                : Futures.immediateFuture("0." + version);
+          }
+        });
+    List<String> events = new ArrayList<>();
+    CheckUpToDateRequest request =
+        CheckUpToDateRequest.newBuilder()
+            .setCurrentVersion("0.1")
+            .setContext(new VersionProviderContext() {})
+            .setOptionalSoftTtl(Optional.of(0L))
+            .setOptionalCallback(
+                Optional.of(
+                    new UpToDateChecker.Callback() {
+                      @Override
+                      public void onSuccess(CheckUpToDateResponse response) {
+                        events.add(response.latestVersion());
+                      }
+
+                      @Override
+                      public void onError(Throwable throwable) {
+                        events.add("error");
+                      }
+
+                      @Override
+                      public void onRevalidationError(Throwable throwable) {
+                        events.add("revalidation error");
+                      }
+                    }))
+            .build();
+
+    checker.checkWithDownloadingAndScheduling().requesting(request).response().get();
+    // The cached 0.1 is not served again to the revalidation
+    checker.checkWithDownloadingAndScheduling().requesting(request).response().get();
+    // The request succeeds with the stale version, only its revalidation fails
+    checker.checkWithDownloadingAndScheduling().requesting(request).response().get();
+    assertThat(events)
+        .containsExactly("0.1", "0.1", "0.2", "0.2", "revalidation error")
+        .inOrder();
+  }
+
+  @Test
+  public void testKeepsSnapshotsAcrossStarts(@TempDir Path directory) throws Exception {
+    Path path = directory.resolve("versions.bin");
+    List<Optional<VersionSnapshot>> lastKnownSnapshots = new ArrayList<>();
+    AtomicInteger calls = new AtomicInteger();
+    SnapshotVersionProvider<KeyedContext> versionProvider =
+        new SnapshotVersionProvider<KeyedContext>() {
+          @Override
+          public String name() {
+            return "snapshots";
+          }
+
+          @Override
+          public Class<KeyedContext> contextType() {
+            return KeyedContext.class;
+          }
+
+          @Override
+          public ListenableFuture<String> findLatestVersion(KeyedContext context) {
+            throw new UnsupportedOperationException();
+          }
+
+          @Override
+          public ListenableFuture<VersionSnapshot> findLatestSnapshot(
+              KeyedContext context, Optional<VersionSnapshot> lastKnownSnapshot) {
+            lastKnownSnapshots.add(lastKnownSnapshot);
+            if (calls.incrementAndGet() > 2) {
+              return Futures.immediateFailedFuture(new IOException("unavailable"));
+            }
+            return Futures.immediateFuture(
+                VersionSnapshot.newBuilder()
+                    .setLatestVersion("1.0")
+                    .setTimestamp(System.currentTimeMillis())
+                    .setValidators(ImmutableMap.of("etag", "\"v1\""))
+                    .build());
+          }
+        };
+    CheckUpToDateRequest request =
+        CheckUpToDateRequest.newBuilder()
+            .setCurrentVersion("0.1")
+            .setContext(new KeyedContext())
+            .build();
+
+    List<Long> sizes = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      UpToDateChecker checker =
+          new UpToDateCheckerImpl(
+              MoreExecutors.directExecutor(),
+              Optional.empty(),
+              EQUAL_STRATEGY,
+              Optional.empty(),
+              Optional.of(new FileVersionSnapshotStore(path)));
+      checker.addVersionProvider(versionProvider);
+      // The last start fails to find the version and is answered with the last known one
+      assertThat(
+              checker.checkWithDownloadingAndScheduling()
+                  .requesting(request)
+                  .response()
+                  .get()
+                  .latestVersion())
+          .isEqualTo("1.0");
+      sizes.add(Files.size(path));
+    }
+    assertThat(lastKnownSnapshots.get(0).isPresent()).isFalse();
+    for (Optional<VersionSnapshot> lastKnownSnapshot : lastKnownSnapshots.subList(1, 3)) {
+      assertThat(lastKnownSnapshot.get().validators()).containsExactly("etag", "\"v1\"");
+    }
+    // Finding the same snapshot again is not written
+    assertThat(ImmutableSet.copyOf(sizes)).hasSize(1);
+    assertThat(new FileVersionSnapshotStore(path).load().keySet())
+        .containsExactly("snapshots:keyed");
+  }
+
+  @Test
+  public void testContextKeys() {
+    assertThat(new VersionProviderContext() {}.key()).isNull();
+    // A string form is not a key
+    VersionProviderContext describedContext =
+        new TestContext() {
+          @Override
+          public String toString() {
+            return "test";
+          }
+        };
+    assertThat(describedContext.key()).isNull();
+    assertThat(new KeyedContext().key()).isEqualTo("keyed");
+    assertThat(checkUpToDateRequest.context().key()).isEqualTo(RESOURCE_ID);
+  }
+
+  private static class KeyedContext implements VersionProviderContext {
+    private final String key;
+
+    KeyedContext() {
+      this("keyed");
+    }
+
+    KeyedContext(String key) {
+      this.key = key;
+    }
+
+    @Override
+    public String key() {
+      return key;
+    }
+  }
+
+  private abstract static class SnapshotBatchVersionProvider
+      implements SnapshotVersionProvider<KeyedContext>, BatchVersionProvider<KeyedContext> {
+    @Override
+    public String name() {
+      return "snapshots";
+    }
+
+    @Override
+    public Class<KeyedContext> contextType() {
+      return KeyedContext.class;
+    }
+
+    @Override
+    public ListenableFuture<String> findLatestVersion(KeyedContext context) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  @Test
+  public void testCheckAllKeepsTheValidatorsOfTheSameVersion(@TempDir Path directory)
+      throws Exception {
+    Path path = directory.resolve("versions.bin");
+    List<Optional<VersionSnapshot>> lastKnownSnapshots = new ArrayList<>();
+    UpToDateChecker checker =
+        new UpToDateCheckerImpl(
+            MoreExecutors.directExecutor(),
+            Optional.empty(),
+            EQUAL_STRATEGY,
+            Optional.empty(),
+            Optional.of(new FileVersionSnapshotStore(path)));
+    checker.addVersionProvider(
+        new SnapshotBatchVersionProvider() {
+          @Override
+          public ListenableFuture<VersionSnapshot> findLatestSnapshot(
+              KeyedContext context, Optional<VersionSnapshot> lastKnownSnapshot) {
+            lastKnownSnapshots.add(lastKnownSnapshot);
+            return Futures.immediateFuture(
+                VersionSnapshot.newBuilder()
+                    .setLatestVersion("1.0")
+                    .setTimestamp(System.currentTimeMillis())
+                    .setValidators(ImmutableMap.of("etag", "\"v1\""))
+                    .build());
+          }
+
+          @Override
+          public ListenableFuture<ImmutableMap<KeyedContext, String>> findLatestVersions(
+              ImmutableSet<KeyedContext> contexts) {
+            return Futures.immediateFuture(Maps.toMap(contexts, unused -> "1.0"));
+          }
+        });
+    KeyedContext first = new KeyedContext("first");
+    CheckUpToDateRequest request =
+        CheckUpToDateRequest.newBuilder().setCurrentVersion("0.1").setContext(first).build();
+    checker.checkWithDownloadingAndScheduling().requesting(request).response().get();
+    for (ListenableFuture<CheckUpToDateResponse> response :
+        checker.checkAll(
+            ImmutableList.of(
+                request,
+                CheckUpToDateRequest.newBuilder()
+                    .setCurrentVersion("0.1")
+                    .setContext(new KeyedContext("second"))
+                    .build()))) {
+      assertThat(response.get().latestVersion()).isEqualTo("1.0");
+    }
+    checker.checkWithDownloadingAndScheduling().requesting(request).response().get();
+
+    assertThat(lastKnownSnapshots).hasSize(2);
+    assertThat(lastKnownSnapshots.get(1).get().validators()).containsExactly("etag", "\"v1\"");
+    ImmutableMap<String, VersionSnapshot> savedSnapshots =
+        new FileVersionSnapshotStore(path).load();
+    assertThat(savedSnapshots.get("snapshots:first").validators())
+        .containsExactly("etag", "\"v1\"");
+    assertThat(savedSnapshots.get("snapshots:second").validators()).isEmpty();
+  }
+
+  @Test
+  public void testExposesCacheStats() throws Exception {
+    UpToDateChecker checker =
+        new UpToDateCheckerImpl(
+            MoreExecutors.directExecutor(),
+            Optional.empty(),
+            EQUAL_STRATEGY,
+            Optional.of(VersionCacheOptions.DEFAULT_OPTIONS),
+            Optional.empty());
+    assertThat(checker.cacheStats()).isEmpty();
+
+    checker.addVersionProvider(new TestVersionProvider());
+    CheckUpToDateRequest request =
+        CheckUpToDateRequest.newBuilder()
+            .setCurrentVersion("0.1")
+            .setContext(new VersionProviderContext() {})
+            .build();
+    checker.checkWithDownloadingAndScheduling().requesting(request).response().get();
+    checker.checkWithDownloadingAndScheduling().requesting(request).response().get();
+
+    assertThat(checker.cacheStats().keySet()).containsExactly("test");
+    assertThat(checker.cacheStats().get("test").hitCount()).isEqualTo(1);
+    assertThat(checker.cacheStats().get("test").missCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void testSchedulingKeepsVersionsRejectedByTheConstraint() throws Exception {
+    AtomicInteger calls = new AtomicInteger();
+    UpToDateChecker checker =
+        new UpToDateCheckerImpl(EXECUTOR_SERVICE, Optional.empty(), EQUAL_STRATEGY);
+    checker.addVersionProvider(
+        new TestVersionProvider() {
+          @Override
+          public ListenableFuture<String> findLatestVersion(VersionProviderContext context) {
+            return Futures.immediateFuture(calls.incrementAndGet() < 3 ? "2.0" : "1.1");
+          }
+        });
+    CountDownLatch notUpToDate = new CountDownLatch(1);
+    ListenableFuture<CheckUpToDateResponse> responseFuture =
+        checker.checkWithDownloadingAndScheduling()
+            .requesting(
+                CheckUpToDateRequest.newBuilder()
+                    .setCurrentVersion("1.0")
+                    .setContext(new VersionProviderContext() {})
+                    .setOptionalVersionConstraint(
+                        Optional.of(VersionConstraint.parse("same-major")))
+                    .setOptionalCallback(
+                        Optional.of(
+                            new UpToDateChecker.Callback() {
+                              @Override
+                              public void onNotUpToDate(CheckUpToDateResponse response) {
+                                notUpToDate.countDown();
+                              }
+                            }))
+                    .build())
+            .then()
+            .schedule(10, TimeUnit.MILLISECONDS)
+            .response();
+    try {
+      // 2.0 is not updated to, so 1.1 is still newer than the current version
+      assertThat(notUpToDate.await(5, TimeUnit.SECONDS)).isTrue();
+    } finally {
+      responseFuture.cancel(true);
+    }
+  }
+
+  @Test
+  public void testFailsOnceTheDeadlineExpires() throws Exception {
+    SettableFuture<String> latestVersion = SettableFuture.create();
+    UpToDateChecker checker =
+        new UpToDateCheckerImpl(MoreExecutors.directExecutor(), Optional.empty(), EQUAL_STRATEGY);
+    checker.addVersionProvider(
+        new VersionProvider<TestContext>() {
+          @Override
+          public String name() {
+            return "never-completes";
+          }
+
+          @Override
+          public Class<TestContext> contextType() {
+            return TestContext.class;
+          }
+
+          @Override
+          public ListenableFuture<String> findLatestVersion(TestContext context) {
+            return latestVersion;
+          }
+        });
+    ListenableFuture<CheckUpToDateResponse> response =
+        checker.checkWithDownloadingAndScheduling()
+            .requesting(
+                CheckUpToDateRequest.newBuilder()
+                    .setCurrentVersion("0.1")
+                    .setContext(new TestContext())
+                    .setOptionalDeadline(
+                        Optional.of(Deadline.after(100, TimeUnit.MILLISECONDS)))
+                    .build())
+            .response();
+
+    ExecutionException e = assertThrows(ExecutionException.class, response::get);
+    assertThat(e.getCause()).isInstanceOf(UpToDateCheckerException.class);
+    assertThat(((UpToDateCheckerException) e.getCause()).getExceptionCode())
+        .isEqualTo(UpToDateCheckerExceptionCode.DEADLINE_EXCEEDED_CODE);
+    // The work still in flight is cancelled
+    CountDownLatch done = new CountDownLatch(1);
+    latestVersion.addListener(done::countDown, MoreExecutors.directExecutor());
+    assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+    assertThat(latestVersion.isCancelled()).isTrue();
+  }
+
+  @Test
+  public void testRunsEachStageInItsExecutor() throws Exception {
+    ExecutorService ioExecutor =
+        Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "io"));
+    ExecutorService callbackExecutor =
+        Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "callback"));
+    try {
+      CountDownLatch blocked = new CountDownLatch(1);
+      List<String> threadNames = new CopyOnWriteArrayList<>();
+      UpToDateChecker checker =
+          UpToDateCheckerBuilder.newBuilder()
+              .setExecutor(MoreExecutors.directExecutor())
+              .setIoExecutor(ioExecutor)
+              .setCallbackExecutor(callbackExecutor)
+              .setVersionMatchStrategy(EQUAL_STRATEGY)
+              .addVersionProvider(
+                  new VersionProvider<TestContext>() {
+                    @Override
+                    public String name() {
+                      return "blocking";
+                    }
+
+                    @Override
+                    public Class<TestContext> contextType() {
+                      return TestContext.class;
+                    }
+
+                    @Override
+                    public ListenableFuture<String> findLatestVersion(TestContext context) {
+                      threadNames.add(Thread.currentThread().getName());
+                      return Futures.immediateFuture("1.0");
+                    }
+                  })
+              .build();
+      CheckUpToDateRequest request =
+          CheckUpToDateRequest.newBuilder()
+              .setCurrentVersion("0.1")
+              .setContext(new TestContext())
+              .setOptionalCallback(
+                  Optional.of(
+                      new UpToDateChecker.Callback() {
+                        @Override
+                        public void onSuccess(CheckUpToDateResponse response) {
+                          threadNames.add(Thread.currentThread().getName());
+                        }
+                      }))
+              .build();
+      assertThat(
+              checker.checkWithDownloadingAndScheduling()
+                  .requesting(request)
+                  .response()
+                  .get()
+                  .latestVersion())
+          .isEqualTo("1.0");
+      assertThat(threadNames).containsExactly("io", "callback").inOrder();
+
+      // A blocking call does not delay the callbacks of the checks already answered
+      ioExecutor.execute(
+          () -> {
+            try {
+              blocked.await();
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+          });
+      ListenableFuture<CheckUpToDateResponse> blockedResponse =
+          checker.checkWithDownloadingAndScheduling().requesting(request).response();
+      assertThat(
+              checker.checkWithDownloadingAndScheduling()
+                  .requesting(
+                      CheckUpToDateRequest.newBuilder()
+                          .setCurrentVersion("0.1")
+                          .setContext(request.context())
+                          .setOptionalSoftTtl(Optional.of(60000L))
+                          .setOptionalCallback(request.optionalCallback())
+                          .build())
+                  .response()
+                  .get(5, TimeUnit.SECONDS)
+                  .latestVersion())
+          .isEqualTo("1.0");
+      assertThat(blockedResponse.isDone()).isFalse();
+      blocked.countDown();
+      assertThat(blockedResponse.get().latestVersion()).isEqualTo("1.0");
+    } finally {
+      ioExecutor.shutdown();
+      callbackExecutor.shutdown();
+    }
+  }
+}
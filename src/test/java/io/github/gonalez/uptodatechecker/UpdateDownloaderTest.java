@@ -16,16 +16,34 @@
 package io.github.gonalez.uptodatechecker;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import com.google.common.collect.Range;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.sun.net.httpserver.HttpServer;
+import io.github.gonalez.uptodatechecker.http.HttpClient;
 import io.github.gonalez.uptodatechecker.http.HttpClientImpl;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /** Tests for {@link UpdateDownloader}. */
 public class UpdateDownloaderTest {
@@ -34,15 +52,84 @@ public class UpdateDownloaderTest {
 
   private static final Executor EXECUTOR = MoreExecutors.directExecutor();
 
+  private static final byte[] LARGE_FILE = new byte[4 * 1024 * 1024];
+
   @TempDir private static Path temporaryDirectory;
 
   private static UpdateDownloader updateDownloader;
 
+  private static final List<String> FLAKY_RANGES = new CopyOnWriteArrayList<>();
+  private static final List<String> SEGMENT_RANGES = new CopyOnWriteArrayList<>();
+
+  private static HttpServer server;
+  private static String baseUrl;
+
   @BeforeAll
   static void setup() throws Exception {
     updateDownloader =
         new FileUpdateDownloader(EXECUTOR, new HttpClientImpl(EXECUTOR),
             Options.DEFAULT_OPTIONS);
+
+    new Random(1).nextBytes(LARGE_FILE);
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/large.jar",
+        exchange -> {
+          exchange.sendResponseHeaders(200, LARGE_FILE.length);
+          exchange.getResponseBody().write(LARGE_FILE);
+          exchange.close();
+        });
+    server.createContext(
+        "/missing.jar",
+        exchange -> {
+          exchange.sendResponseHeaders(404, -1);
+          exchange.close();
+        });
+    server.createContext(
+        "/flaky.jar",
+        exchange -> {
+          String range = exchange.getRequestHeaders().getFirst("Range");
+          FLAKY_RANGES.add(String.valueOf(range));
+          exchange.getResponseHeaders().add("ETag", "\"v1\"");
+          if (range == null) {
+            // Drop the connection halfway through the body
+            exchange.sendResponseHeaders(200, LARGE_FILE.length);
+            exchange.getResponseBody().write(LARGE_FILE, 0, LARGE_FILE.length / 2);
+            exchange.getResponseBody().flush();
+            exchange.close();
+            return;
+          }
+          int start = Integer.parseInt(range.substring("bytes=".length(), range.indexOf('-')));
+          exchange.getResponseHeaders().add(
+              "Content-Range",
+              "bytes " + start + "-" + (LARGE_FILE.length - 1) + "/" + LARGE_FILE.length);
+          exchange.sendResponseHeaders(206, LARGE_FILE.length - start);
+          exchange.getResponseBody().write(LARGE_FILE, start, LARGE_FILE.length - start);
+          exchange.close();
+        });
+    server.createContext(
+        "/ranged.jar",
+        exchange -> {
+          String range = exchange.getRequestHeaders().getFirst("Range");
+          SEGMENT_RANGES.add(range);
+          // bytes=start-end
+          int dash = range.indexOf('-');
+          int start = Integer.parseInt(range.substring("bytes=".length(), dash));
+          int end = Integer.parseInt(range.substring(dash + 1));
+          exchange.getResponseHeaders().add(
+              "Content-Range", "bytes " + start + "-" + end + "/" + LARGE_FILE.length);
+          exchange.sendResponseHeaders(206, end - start + 1);
+          exchange.getResponseBody().write(LARGE_FILE, start, end - start + 1);
+          exchange.close();
+        });
+    server.setExecutor(Executors.newCachedThreadPool());
+    server.start();
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @AfterAll
+  static void tearDown() {
+    server.stop(0);
   }
 
   @Test
@@ -62,4 +149,246 @@ public class UpdateDownloaderTest {
     File downloadedFile = tempFiles[0];
     assertThat(downloadedFile.getName()).isEqualTo("example.zip");
   }
+
+  @Test
+  public void testFileUpdateDownloaderStreamsToFile(@TempDir Path directory) throws Exception {
+    Path downloadPath = directory.resolve("large.jar");
+    updateDownloader
+        .downloadUpdate(
+            UpdateDownloaderRequest.newBuilder()
+                .setUrlToDownload(baseUrl + "/large.jar")
+                .setDownloadPath(downloadPath.toFile())
+                .build())
+        .get();
+
+    assertThat(Files.readAllBytes(downloadPath)).isEqualTo(LARGE_FILE);
+    assertThat(directory.toFile().list()).asList().containsExactly("large.jar");
+  }
+
+  @Test
+  public void testFileUpdateDownloaderKeepsFileOnFailure(@TempDir Path directory)
+      throws Exception {
+    Path downloadPath = directory.resolve("missing.jar");
+    byte[] previous = {1, 2, 3};
+    Files.write(downloadPath, previous);
+
+    ExecutionException exception =
+        assertThrows(
+            ExecutionException.class,
+            () ->
+                updateDownloader
+                    .downloadUpdate(
+                        UpdateDownloaderRequest.newBuilder()
+                            .setUrlToDownload(baseUrl + "/missing.jar")
+                            .setDownloadPath(downloadPath.toFile())
+                            .build())
+                    .get());
+    assertThat(exception).hasCauseThat().isInstanceOf(IOException.class);
+    assertThat(Files.readAllBytes(downloadPath)).isEqualTo(previous);
+  }
+
+  @Test
+  public void testFileUpdateDownloaderResumesInterruptedDownload(@TempDir Path directory)
+      throws Exception {
+    FLAKY_RANGES.clear();
+    Path downloadPath = directory.resolve("flaky.jar");
+    updateDownloader
+        .downloadUpdate(
+            UpdateDownloaderRequest.newBuilder()
+                .setUrlToDownload(baseUrl + "/flaky.jar")
+                .setDownloadPath(downloadPath.toFile())
+                .setMaxAttempts(2)
+                .build())
+        .get();
+
+    assertThat(Files.readAllBytes(downloadPath)).isEqualTo(LARGE_FILE);
+    assertThat(FLAKY_RANGES).containsExactly("null", "bytes=" + LARGE_FILE.length / 2 + "-");
+    assertThat(directory.toFile().list()).asList().containsExactly("flaky.jar");
+  }
+
+  @Test
+  public void testFileUpdateDownloaderSkipsMatchingFile(@TempDir Path directory) throws Exception {
+    Path downloadPath = directory.resolve("missing.jar");
+    Files.write(downloadPath, LARGE_FILE);
+
+    // The url doesn't exist, the existing file must not be downloaded again
+    assertThat(
+            updateDownloader
+                .downloadUpdate(
+                    UpdateDownloaderRequest.newBuilder()
+                        .setUrlToDownload(baseUrl + "/missing.jar")
+                        .setDownloadPath(downloadPath.toFile())
+                        .setExpectedDigest(Optional.of(sha256(LARGE_FILE)))
+                        .setExpectedSize(Optional.of((long) LARGE_FILE.length))
+                        .build())
+                .get())
+        .isTrue();
+    assertThat(Files.readAllBytes(downloadPath)).isEqualTo(LARGE_FILE);
+  }
+
+  @Test
+  public void testFileUpdateDownloaderVerifiesResumedDownload(@TempDir Path directory)
+      throws Exception {
+    Path downloadPath = directory.resolve("flaky.jar");
+    Files.write(downloadPath, new byte[] {1, 2, 3});
+    updateDownloader
+        .downloadUpdate(
+            UpdateDownloaderRequest.newBuilder()
+                .setUrlToDownload(baseUrl + "/flaky.jar")
+                .setDownloadPath(downloadPath.toFile())
+                .setMaxAttempts(2)
+                .setExpectedDigest(Optional.of(sha256(LARGE_FILE).toUpperCase()))
+                .build())
+        .get();
+
+    assertThat(Files.readAllBytes(downloadPath)).isEqualTo(LARGE_FILE);
+  }
+
+  @Test
+  public void testFileUpdateDownloaderRejectsWrongDigest(@TempDir Path directory)
+      throws Exception {
+    Path downloadPath = directory.resolve("large.jar");
+    ExecutionException exception =
+        assertThrows(
+            ExecutionException.class,
+            () ->
+                updateDownloader
+                    .downloadUpdate(
+                        UpdateDownloaderRequest.newBuilder()
+                            .setUrlToDownload(baseUrl + "/large.jar")
+                            .setDownloadPath(downloadPath.toFile())
+                            .setExpectedDigest(Optional.of(sha256(new byte[0])))
+                            .build())
+                    .get());
+    assertThat(exception).hasCauseThat().isInstanceOf(UpToDateCheckerException.class);
+    assertThat(((UpToDateCheckerException) exception.getCause()).getExceptionCode())
+        .isEqualTo(UpToDateCheckerExceptionCode.FAIL_TO_VERIFY_DOWNLOAD_CODE);
+    assertThat(directory.toFile().list()).asList().isEmpty();
+  }
+
+  @Test
+  public void testSegmentedUpdateDownloader(@TempDir Path directory) throws Exception {
+    SEGMENT_RANGES.clear();
+    ExecutorService executorService = Executors.newFixedThreadPool(4);
+    try {
+      UpdateDownloader segmentedUpdateDownloader =
+          new SegmentedUpdateDownloader(
+              executorService, new HttpClientImpl(executorService), Options.DEFAULT_OPTIONS);
+      Path downloadPath = directory.resolve("ranged.jar");
+      segmentedUpdateDownloader
+          .downloadUpdate(
+              UpdateDownloaderRequest.newBuilder()
+                  .setUrlToDownload(baseUrl + "/ranged.jar")
+                  .setDownloadPath(downloadPath.toFile())
+                  .setSegmentSize(1024 * 1024)
+                  .setParallelism(3)
+                  .build())
+          .get();
+
+      assertThat(Files.readAllBytes(downloadPath)).isEqualTo(LARGE_FILE);
+      assertThat(SEGMENT_RANGES)
+          .containsExactly(
+              "bytes=0-0",
+              "bytes=0-1048575",
+              "bytes=1048576-2097151",
+              "bytes=2097152-3145727",
+              "bytes=3145728-4194303");
+      assertThat(directory.toFile().list()).asList().containsExactly("ranged.jar");
+    } finally {
+      executorService.shutdown();
+    }
+  }
+
+  @Test
+  public void testSegmentedUpdateDownloaderDiscardsCancelledDownload(@TempDir Path directory)
+      throws Exception {
+    HttpClient httpClient = new HttpClientImpl(EXECUTOR);
+    UpdateDownloader segmentedUpdateDownloader =
+        new SegmentedUpdateDownloader(
+            EXECUTOR,
+            request ->
+                // Only the probe for the length of the file is answered
+                request.headers().get("Range").equals("bytes=0-0")
+                    ? httpClient.requestAsync(request)
+                    : SettableFuture.create(),
+            Options.DEFAULT_OPTIONS);
+    ListenableFuture<Boolean> download =
+        segmentedUpdateDownloader.downloadUpdate(
+            UpdateDownloaderRequest.newBuilder()
+                .setUrlToDownload(baseUrl + "/ranged.jar")
+                .setDownloadPath(directory.resolve("ranged.jar").toFile())
+                .setSegmentSize(1024 * 1024)
+                .build());
+
+    assertThat(directory.toFile().list()).asList().containsExactly("ranged.jar.part");
+
+    download.cancel(false);
+    assertThat(directory.toFile().list()).isEmpty();
+  }
+
+  @Test
+  public void testSegmentedUpdateDownloaderWithoutRangeSupport(@TempDir Path directory)
+      throws Exception {
+    UpdateDownloader segmentedUpdateDownloader =
+        new SegmentedUpdateDownloader(EXECUTOR, new HttpClientImpl(EXECUTOR),
+            Options.DEFAULT_OPTIONS);
+    Path downloadPath = directory.resolve("large.jar");
+    segmentedUpdateDownloader
+        .downloadUpdate(
+            UpdateDownloaderRequest.newBuilder()
+                .setUrlToDownload(baseUrl + "/large.jar")
+                .setDownloadPath(downloadPath.toFile())
+                .setSegmentSize(1024 * 1024)
+                .build())
+        .get();
+
+    assertThat(Files.readAllBytes(downloadPath)).isEqualTo(LARGE_FILE);
+  }
+
+  @Test
+  public void testRequestRejectsNoAttempts() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            UpdateDownloaderRequest.newBuilder()
+                .setUrlToDownload(baseUrl + "/large.jar")
+                .setDownloadPath("large.jar")
+                .setMaxAttempts(0)
+                .build());
+  }
+
+  @Test
+  public void testRetryDelayGrowsWithAttempts() {
+    UpdateDownloaderRequest request =
+        UpdateDownloaderRequest.newBuilder()
+            .setUrlToDownload(baseUrl + "/large.jar")
+            .setDownloadPath("large.jar")
+            .setRetryDelayMillis(1000)
+            .build();
+    assertThat(FileUpdateDownloader.retryDelayMillis(request, 1)).isIn(Range.closed(500L, 1000L));
+    assertThat(FileUpdateDownloader.retryDelayMillis(request, 3)).isIn(Range.closed(2000L, 4000L));
+    assertThat(FileUpdateDownloader.retryDelayMillis(request, 100))
+        .isIn(
+            Range.closed(
+                FileUpdateDownloader.MAX_RETRY_DELAY_MILLIS / 2,
+                FileUpdateDownloader.MAX_RETRY_DELAY_MILLIS));
+
+    UpdateDownloaderRequest longDelayRequest =
+        UpdateDownloaderRequest.newBuilder()
+            .setUrlToDownload(baseUrl + "/large.jar")
+            .setDownloadPath("large.jar")
+            .setRetryDelayMillis(Long.MAX_VALUE / 2)
+            .build();
+    for (int attempt : new int[] {1, 2, 17, 100}) {
+      assertThat(FileUpdateDownloader.retryDelayMillis(longDelayRequest, attempt))
+          .isIn(
+              Range.closed(
+                  FileUpdateDownloader.MAX_RETRY_DELAY_MILLIS / 2,
+                  FileUpdateDownloader.MAX_RETRY_DELAY_MILLIS));
+    }
+  }
+
+  private static String sha256(byte[] bytes) {
+    return Hashing.sha256().hashBytes(bytes).toString();
+  }
 }
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.concurrent;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.base.Ticker;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+/** Tests for {@link Deadline}. */
+public class DeadlineTest {
+  private static final class FakeTicker extends Ticker {
+    private long nanos;
+
+    @Override
+    public long read() {
+      return nanos;
+    }
+  }
+
+  @Test
+  public void testExpires() {
+    FakeTicker ticker = new FakeTicker();
+    Deadline deadline = Deadline.after(100, TimeUnit.MILLISECONDS, ticker);
+    assertThat(deadline.isExpired()).isFalse();
+    assertThat(deadline.timeRemaining(TimeUnit.MILLISECONDS)).isEqualTo(100);
+
+    ticker.nanos = TimeUnit.MILLISECONDS.toNanos(60);
+    assertThat(deadline.timeRemaining(TimeUnit.MILLISECONDS)).isEqualTo(40);
+
+    ticker.nanos = TimeUnit.MILLISECONDS.toNanos(100);
+    assertThat(deadline.isExpired()).isTrue();
+
+    // Restarting gives the whole timeout again
+    Deadline restarted = deadline.restarted();
+    assertThat(restarted.isExpired()).isFalse();
+    assertThat(restarted.timeRemaining(TimeUnit.MILLISECONDS)).isEqualTo(100);
+  }
+}
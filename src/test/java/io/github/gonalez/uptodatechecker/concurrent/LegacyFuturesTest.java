@@ -20,9 +20,18 @@ import static com.google.common.truth.Truth.assertThat;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /** Tests for {@link LegacyFutures}. */
 public class LegacyFuturesTest {
@@ -53,4 +62,91 @@ public class LegacyFuturesTest {
             Futures.immediateFuture(BAR), s -> Futures.immediateFuture(FOO), EXECUTOR);
     assertThat(future.get()).isEqualTo(FOO);
   }
+
+  @Test
+  public void testTransformRunsInlineWhenDone() {
+    Thread caller = Thread.currentThread();
+    ListenableFuture<Thread> future =
+        LegacyFutures.transform(
+            Futures.immediateFuture(BAR), unused -> Thread.currentThread(), EXECUTOR);
+    // No thread handoff, the result is there right away
+    assertThat(future.isDone()).isTrue();
+    assertThat(Futures.getUnchecked(future)).isSameInstanceAs(caller);
+  }
+
+  @Test
+  public void testTransformAsyncPropagatesCancellation() {
+    SettableFuture<String> input = SettableFuture.create();
+    ListenableFuture<String> future =
+        LegacyFutures.transformAsync(input, s -> Futures.immediateFuture(FOO), EXECUTOR);
+    future.cancel(false);
+    assertThat(input.isCancelled()).isTrue();
+  }
+
+  @Test
+  public void testSchedulePeriodicAsync() throws Exception {
+    int tasks = 1000;
+    CountDownLatch calledTwice = new CountDownLatch(tasks);
+    Set<String> threadNames = ConcurrentHashMap.newKeySet();
+    List<ListenableFuture<String>> futures = new ArrayList<>();
+    for (int i = 0; i < tasks; i++) {
+      AtomicInteger calls = new AtomicInteger();
+      futures.add(
+          LegacyFutures.schedulePeriodicAsync(
+              () -> {
+                threadNames.add(Thread.currentThread().getName());
+                if (calls.incrementAndGet() == 2) {
+                  calledTwice.countDown();
+                }
+                return Futures.immediateFuture(FOO + calls.get());
+              },
+              10,
+              TimeUnit.MILLISECONDS,
+              EXECUTOR));
+    }
+
+    assertThat(calledTwice.await(10, TimeUnit.SECONDS)).isTrue();
+    // The result of the first call is kept
+    assertThat(futures.get(0).get()).isEqualTo(FOO + 1);
+    // Every task was called by the one timer thread, no thread waited between calls
+    assertThat(threadNames).hasSize(1);
+    futures.forEach(future -> future.cancel(false));
+  }
+
+  @Test
+  public void testSchedulePeriodicAsyncStopsOnCancel() throws Exception {
+    CountDownLatch ticks = new CountDownLatch(3);
+    ScheduledThreadPoolExecutor timer =
+        new ScheduledThreadPoolExecutor(1) {
+          @Override
+          protected void afterExecute(Runnable runnable, Throwable throwable) {
+            ticks.countDown();
+          }
+        };
+    timer.setRemoveOnCancelPolicy(true);
+    try {
+      AtomicInteger calls = new AtomicInteger();
+      ListenableFuture<String> future =
+          LegacyFutures.schedulePeriodicAsync(
+              () -> {
+                calls.incrementAndGet();
+                return SettableFuture.create();
+              },
+              1,
+              TimeUnit.MILLISECONDS,
+              EXECUTOR,
+              timer);
+      assertThat(ticks.await(5, TimeUnit.SECONDS)).isTrue();
+      // The first call never completes, so no other call is made
+      assertThat(calls.get()).isEqualTo(1);
+
+      future.cancel(false);
+      assertThat(future.isCancelled()).isTrue();
+      // Nothing is left to call it again
+      assertThat(timer.getQueue()).isEmpty();
+      assertThat(calls.get()).isEqualTo(1);
+    } finally {
+      timer.shutdown();
+    }
+  }
 }
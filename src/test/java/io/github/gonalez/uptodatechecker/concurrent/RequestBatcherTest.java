@@ -0,0 +1,88 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.concurrent;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** Tests for {@link RequestBatcher}. */
+public class RequestBatcherTest {
+  private static final ScheduledExecutorService SCHEDULED_EXECUTOR_SERVICE =
+      Executors.newSingleThreadScheduledExecutor();
+
+  @AfterAll
+  static void tearDown() {
+    SCHEDULED_EXECUTOR_SERVICE.shutdownNow();
+  }
+
+  @Test
+  public void testSendsFullBatch() throws Exception {
+    List<ImmutableSet<String>> batches = new CopyOnWriteArrayList<>();
+    RequestBatcher<String, Integer> requestBatcher =
+        new RequestBatcher<>(
+            SCHEDULED_EXECUTOR_SERVICE,
+            2,
+            TimeUnit.HOURS.toMillis(1),
+            keys -> {
+              batches.add(keys);
+              ImmutableMap.Builder<String, Integer> values = ImmutableMap.builder();
+              keys.forEach(key -> values.put(key, key.length()));
+              return Futures.immediateFuture(values.build());
+            });
+
+    ListenableFuture<Integer> first = requestBatcher.add("a");
+    ListenableFuture<Integer> same = requestBatcher.add("a");
+    assertThat(first.isDone()).isFalse();
+    ListenableFuture<Integer> second = requestBatcher.add("bb");
+
+    assertThat(first.get()).isEqualTo(1);
+    assertThat(same.get()).isEqualTo(1);
+    assertThat(second.get()).isEqualTo(2);
+    assertThat(batches).containsExactly(ImmutableSet.of("a", "bb"));
+  }
+
+  @Test
+  public void testSendsBatchAfterLinger() throws Exception {
+    RequestBatcher<String, Integer> requestBatcher =
+        new RequestBatcher<>(
+            SCHEDULED_EXECUTOR_SERVICE,
+            100,
+            10,
+            keys -> Futures.immediateFuture(ImmutableMap.of("a", 1)));
+
+    ListenableFuture<Integer> found = requestBatcher.add("a");
+    ListenableFuture<Integer> missing = requestBatcher.add("b");
+
+    assertThat(found.get(5, TimeUnit.SECONDS)).isEqualTo(1);
+    ExecutionException e = assertThrows(ExecutionException.class, missing::get);
+    assertThat(e.getCause()).isInstanceOf(NoSuchElementException.class);
+  }
+}
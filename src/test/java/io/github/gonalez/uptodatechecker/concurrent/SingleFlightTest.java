@@ -0,0 +1,87 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.concurrent;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/** Tests for {@link SingleFlight}. */
+public class SingleFlightTest {
+  private static final String KEY = "key";
+  private static final String FOO = "foo";
+
+  @Test
+  public void testCoalescesCallsInFlight() throws Exception {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    AtomicInteger calls = new AtomicInteger();
+    SettableFuture<String> result = SettableFuture.create();
+
+    ListenableFuture<String> first =
+        singleFlight.call(
+            KEY,
+            () -> {
+              calls.incrementAndGet();
+              return result;
+            });
+    ListenableFuture<String> second =
+        singleFlight.call(
+            KEY,
+            () -> {
+              calls.incrementAndGet();
+              return result;
+            });
+    assertThat(calls.get()).isEqualTo(1);
+    assertThat(singleFlight.inFlightCount()).isEqualTo(1);
+
+    result.set(FOO);
+    assertThat(first.get()).isEqualTo(FOO);
+    assertThat(second.get()).isEqualTo(FOO);
+    assertThat(singleFlight.inFlightCount()).isEqualTo(0);
+
+    // Once completed, the next caller starts a new call
+    singleFlight.call(KEY, () -> Futures.immediateFuture(FOO));
+    singleFlight.call(
+        KEY,
+        () -> {
+          calls.incrementAndGet();
+          return Futures.immediateFuture(FOO);
+        });
+    assertThat(calls.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void testCancelsOnlyWhenEveryCallerCancelled() {
+    SingleFlight<String, String> singleFlight = new SingleFlight<>();
+    SettableFuture<String> result = SettableFuture.create();
+
+    ListenableFuture<String> first = singleFlight.call(KEY, () -> result);
+    ListenableFuture<String> second = singleFlight.call(KEY, () -> result);
+
+    first.cancel(true);
+    assertThat(result.isCancelled()).isFalse();
+    assertThat(second.isDone()).isFalse();
+
+    second.cancel(true);
+    assertThat(result.isCancelled()).isTrue();
+    assertThat(singleFlight.inFlightCount()).isEqualTo(0);
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.concurrent;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Tests for {@link VirtualThreads}. The {@code java21Test} task runs them on Java 21 against the
+ * multi-release jar, where the Java 21 version of the class must be used.
+ */
+public class VirtualThreadsTest {
+
+  @Test
+  public void testNewVirtualThreadPerTaskExecutor() throws Exception {
+    assertThat(VirtualThreads.isSupported())
+        .isEqualTo(Boolean.getBoolean("uptodatechecker.multiReleaseJar"));
+    if (!VirtualThreads.isSupported()) {
+      assertThrows(
+          UnsupportedOperationException.class, VirtualThreads::newVirtualThreadPerTaskExecutor);
+      return;
+    }
+    ExecutorService executorService = VirtualThreads.newVirtualThreadPerTaskExecutor();
+    try {
+      assertThat(executorService.submit(() -> Thread.currentThread().getName()).get())
+          .startsWith("uptodatechecker-virtual-");
+    } finally {
+      executorService.shutdown();
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/** Tests for {@link CachingHttpClient}. */
+public class CachingHttpClientTest {
+  private static final Executor EXECUTOR = MoreExecutors.directExecutor();
+
+  private static final byte[] BODY = "{\"tag_name\":\"1.0\"}".getBytes(StandardCharsets.UTF_8);
+
+  private static final byte[] LARGE_BODY = new byte[1024 * 1024];
+
+  // The path and code of each response sent by the server
+  private static final List<String> RESPONSES = new CopyOnWriteArrayList<>();
+
+  private static HttpServer server;
+  private static String baseUrl;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/fresh",
+        exchange -> {
+          RESPONSES.add("/fresh 200");
+          exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+          exchange.sendResponseHeaders(200, BODY.length);
+          exchange.getResponseBody().write(BODY);
+          exchange.close();
+        });
+    server.createContext(
+        "/revalidated",
+        exchange -> {
+          exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+          exchange.getResponseHeaders().set("ETag", "\"v1\"");
+          if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            RESPONSES.add("/revalidated 304");
+            exchange.sendResponseHeaders(304, -1);
+          } else {
+            RESPONSES.add("/revalidated 200");
+            exchange.sendResponseHeaders(200, BODY.length);
+            exchange.getResponseBody().write(BODY);
+          }
+          exchange.close();
+        });
+    server.createContext(
+        "/download",
+        exchange -> {
+          RESPONSES.add("/download 200");
+          exchange.getResponseHeaders().set("Cache-Control", "max-age=60");
+          exchange.sendResponseHeaders(200, LARGE_BODY.length);
+          exchange.getResponseBody().write(LARGE_BODY);
+          exchange.close();
+        });
+    server.start();
+    new Random(1).nextBytes(LARGE_BODY);
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @AfterAll
+  static void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testFreshResponseCached() throws Exception {
+    RESPONSES.clear();
+    HttpClient httpClient =
+        new CachingHttpClient(
+            EXECUTOR, new HttpClientImpl(EXECUTOR), HttpCacheOptions.DEFAULT_OPTIONS);
+    for (int i = 0; i < 3; i++) {
+      HttpResponse response =
+          httpClient
+              .requestAsync(HttpRequest.newBuilder().setUrl(baseUrl + "/fresh").build())
+              .get();
+      assertThat(response.body()).isEqualTo(BODY);
+    }
+    assertThat(RESPONSES).containsExactly("/fresh 200");
+  }
+
+  @Test
+  public void testStaleResponseRevalidated() throws Exception {
+    RESPONSES.clear();
+    HttpClient httpClient =
+        new CachingHttpClient(
+            EXECUTOR, new HttpClientImpl(EXECUTOR), HttpCacheOptions.DEFAULT_OPTIONS);
+    for (int i = 0; i < 2; i++) {
+      HttpResponse response =
+          httpClient
+              .requestAsync(HttpRequest.newBuilder().setUrl(baseUrl + "/revalidated").build())
+              .get();
+      assertThat(response.responseCode()).isEqualTo(200);
+      assertThat(response.body()).isEqualTo(BODY);
+    }
+    assertThat(RESPONSES).containsExactly("/revalidated 200", "/revalidated 304").inOrder();
+  }
+
+  @Test
+  public void testStreamedResponseCachedOnDisk(@TempDir Path directory) throws Exception {
+    RESPONSES.clear();
+    HttpCacheOptions options =
+        HttpCacheOptions.newBuilder().setOptionalDiskDirectory(Optional.of(directory)).build();
+    HttpRequest request =
+        HttpRequest.newBuilder().setUrl(baseUrl + "/download").setStreaming(true).build();
+    // A new client each time, so the response can only come from the disk
+    for (int i = 0; i < 2; i++) {
+      HttpClient httpClient =
+          new CachingHttpClient(EXECUTOR, new HttpClientImpl(EXECUTOR), options);
+      try (HttpResponse response = httpClient.requestAsync(request).get();
+          InputStream body = response.bodyStream()) {
+        assertThat(ByteStreams.toByteArray(body)).isEqualTo(LARGE_BODY);
+      }
+    }
+    assertThat(RESPONSES).containsExactly("/download 200");
+  }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.http;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpServer;
+import io.github.gonalez.uptodatechecker.Options;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/** Tests for {@link NioHttpClient}. */
+public class NioHttpClientTest {
+  private static final byte[] BODY = "{\"tag_name\":\"1.0\"}".getBytes(StandardCharsets.UTF_8);
+
+  private static final byte[] LARGE_BODY = new byte[2 * 1024 * 1024];
+
+  private static final Set<InetSocketAddress> REMOTE_ADDRESSES = ConcurrentHashMap.newKeySet();
+
+  private static HttpServer server;
+  private static String baseUrl;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/latest",
+        exchange -> {
+          REMOTE_ADDRESSES.add(exchange.getRemoteAddress());
+          exchange.sendResponseHeaders(200, BODY.length);
+          exchange.getResponseBody().write(BODY);
+          exchange.close();
+        });
+    server.createContext(
+        "/redirect",
+        exchange -> {
+          exchange.getResponseHeaders().add("Location", "/latest");
+          exchange.sendResponseHeaders(302, -1);
+          exchange.close();
+        });
+    server.createContext(
+        "/see-other",
+        exchange -> {
+          exchange.getResponseHeaders().add("Location", "/echo");
+          exchange.sendResponseHeaders(303, -1);
+          exchange.close();
+        });
+    server.createContext(
+        "/other-host",
+        exchange -> {
+          exchange.getResponseHeaders()
+              .add("Location", "http://localhost:" + server.getAddress().getPort() + "/echo");
+          exchange.sendResponseHeaders(307, -1);
+          exchange.close();
+        });
+    server.createContext(
+        "/echo",
+        exchange -> {
+          byte[] echo =
+              String.format(
+                      "%s %s %d",
+                      exchange.getRequestMethod(),
+                      exchange.getRequestHeaders().getFirst("Authorization"),
+                      ByteStreams.toByteArray(exchange.getRequestBody()).length)
+                  .getBytes(StandardCharsets.UTF_8);
+          exchange.sendResponseHeaders(200, echo.length);
+          exchange.getResponseBody().write(echo);
+          exchange.close();
+        });
+    server.createContext(
+        "/large",
+        exchange -> {
+          // Chunked
+          exchange.sendResponseHeaders(200, 0);
+          exchange.getResponseBody().write(LARGE_BODY);
+          exchange.close();
+        });
+    server.start();
+    new Random(1).nextBytes(LARGE_BODY);
+    baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  @AfterAll
+  static void tearDown() {
+    server.stop(0);
+  }
+
+  @Test
+  public void testConnectionReused() throws Exception {
+    REMOTE_ADDRESSES.clear();
+    try (NioHttpClient httpClient = new NioHttpClient()) {
+      for (int i = 0; i < 5; i++) {
+        HttpResponse response =
+            httpClient.requestAsync(HttpRequest.newBuilder().setUrl(baseUrl + "/latest").build())
+                .get();
+        assertThat(response.body()).isEqualTo(BODY);
+      }
+      assertThat(REMOTE_ADDRESSES).hasSize(1);
+      assertThat(httpClient.idleConnectionCount()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testFollowsRedirects() throws Exception {
+    try (NioHttpClient httpClient = new NioHttpClient()) {
+      HttpResponse response =
+          httpClient.requestAsync(HttpRequest.newBuilder().setUrl(baseUrl + "/redirect").build())
+              .get();
+      assertThat(response.responseCode()).isEqualTo(200);
+      assertThat(response.body()).isEqualTo(BODY);
+    }
+  }
+
+  @Test
+  public void testRedirectsDropWhatTheLocationMustNotGet() throws Exception {
+    try (NioHttpClient httpClient = new NioHttpClient()) {
+      HttpRequest request =
+          HttpRequest.newBuilder()
+              .setUrl(baseUrl + "/see-other")
+              .setMethod("POST")
+              .setHeaders(ImmutableMap.of("Authorization", "Bearer token"))
+              .setOptionalBody(Optional.of("{}"))
+              .build();
+      assertThat(httpClient.requestAsync(request).get().bodyString())
+          .isEqualTo("GET Bearer token 0");
+
+      // Redirected to another host, which must not get our credentials
+      assertThat(
+              httpClient.requestAsync(request.toBuilder().setUrl(baseUrl + "/other-host").build())
+                  .get()
+                  .bodyString())
+          .isEqualTo("POST null 2");
+    }
+  }
+
+  @Test
+  public void testNoIdleConnectionsKept() throws Exception {
+    Options options = Options.newBuilder().setMaxIdleConnections(0).build();
+    try (NioHttpClient httpClient = new NioHttpClient(1, options)) {
+      httpClient.requestAsync(HttpRequest.newBuilder().setUrl(baseUrl + "/latest").build()).get();
+      assertThat(httpClient.idleConnectionCount()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void testStreamingBody() throws Exception {
+    try (NioHttpClient httpClient = new NioHttpClient()) {
+      HttpRequest request =
+          HttpRequest.newBuilder().setUrl(baseUrl + "/large").setStreaming(true).build();
+      try (HttpResponse response = httpClient.requestAsync(request).get();
+          InputStream input = response.bodyStream()) {
+        assertThat(ByteStreams.toByteArray(input)).isEqualTo(LARGE_BODY);
+      }
+      assertThat(httpClient.idleConnectionCount()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void testStreamingBodyClosedEarly() throws Exception {
+    try (NioHttpClient httpClient = new NioHttpClient()) {
+      HttpRequest request =
+          HttpRequest.newBuilder().setUrl(baseUrl + "/large").setStreaming(true).build();
+      try (HttpResponse response = httpClient.requestAsync(request).get()) {
+        assertThat(response.bodyStream().read(new byte[1024])).isGreaterThan(0);
+      }
+      assertThat(httpClient.idleConnectionCount()).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void testFailsRequestsOnceClosed() {
+    NioHttpClient httpClient = new NioHttpClient();
+    httpClient.close();
+    ExecutionException e =
+        assertThrows(
+            ExecutionException.class,
+            () ->
+                httpClient
+                    .requestAsync(HttpRequest.newBuilder().setUrl(baseUrl + "/latest").build())
+                    .get(5, TimeUnit.SECONDS));
+    assertThat(e.getCause()).isInstanceOf(IllegalStateException.class);
+  }
+}
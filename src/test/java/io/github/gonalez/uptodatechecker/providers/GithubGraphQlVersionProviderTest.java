@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.providers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpServer;
+import io.github.gonalez.uptodatechecker.http.HttpClientImpl;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** Tests for {@link GithubGraphQlVersionProvider}. */
+public class GithubGraphQlVersionProviderTest {
+  private static final ScheduledExecutorService SCHEDULED_EXECUTOR_SERVICE =
+      Executors.newScheduledThreadPool(2);
+
+  private static final byte[] RESPONSE =
+      ("{\"data\": {"
+              + "\"r0\": {\"latestRelease\": {\"tagName\": \"v1.0\"}},"
+              + "\"r1\": {\"latestRelease\": null},"
+              + "\"r2\": {\"latestRelease\": {\"tagName\": \"v2.0\"}}}}")
+          .getBytes(StandardCharsets.UTF_8);
+
+  private static final List<String> QUERIES = new CopyOnWriteArrayList<>();
+
+  private static HttpServer server;
+  private static String url;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/graphql",
+        exchange -> {
+          if (exchange.getRequestMethod().equals("POST")
+              && "bearer token".equals(exchange.getRequestHeaders().getFirst("Authorization"))) {
+            QUERIES.add(
+                new String(
+                    ByteStreams.toByteArray(exchange.getRequestBody()), StandardCharsets.UTF_8));
+            exchange.sendResponseHeaders(200, RESPONSE.length);
+            exchange.getResponseBody().write(RESPONSE);
+          } else {
+            exchange.sendResponseHeaders(401, -1);
+          }
+          exchange.close();
+        });
+    server.start();
+    url = "http://127.0.0.1:" + server.getAddress().getPort() + "/graphql";
+  }
+
+  @AfterAll
+  static void tearDown() {
+    server.stop(0);
+    SCHEDULED_EXECUTOR_SERVICE.shutdownNow();
+  }
+
+  @Test
+  public void testBatchesRepositories() throws Exception {
+    QUERIES.clear();
+    GithubGraphQlVersionProvider versionProvider =
+        new GithubGraphQlVersionProvider(
+            SCHEDULED_EXECUTOR_SERVICE,
+            new HttpClientImpl(SCHEDULED_EXECUTOR_SERVICE),
+            "token",
+            url,
+            3,
+            TimeUnit.HOURS.toMillis(1));
+
+    ListenableFuture<String> first = versionProvider.findLatestVersion(contextOf("first"));
+    ListenableFuture<String> unreleased =
+        versionProvider.findLatestVersion(contextOf("unreleased"));
+    ListenableFuture<String> second = versionProvider.findLatestVersion(contextOf("\"second\""));
+
+    assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("v1.0");
+    assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo("v2.0");
+    assertThrows(ExecutionException.class, unreleased::get);
+    assertThat(QUERIES).hasSize(1);
+    String query =
+        JsonParser.parseString(QUERIES.get(0)).getAsJsonObject().get("query").getAsString();
+    assertThat(query).contains("r2: repository(owner: \"gonalez\", name: \"\\\"second\\\"\")");
+  }
+
+  @Test
+  public void testFindsManyRepositoriesAtOnce() throws Exception {
+    QUERIES.clear();
+    GithubGraphQlVersionProvider versionProvider =
+        new GithubGraphQlVersionProvider(
+            SCHEDULED_EXECUTOR_SERVICE,
+            new HttpClientImpl(SCHEDULED_EXECUTOR_SERVICE),
+            "token",
+            url,
+            50,
+            10);
+
+    ImmutableMap<GithubVersionProviderContext, String> latestVersions =
+        versionProvider
+            .findLatestVersions(
+                ImmutableSet.of(contextOf("first"), contextOf("unreleased"), contextOf("second")))
+            .get(5, TimeUnit.SECONDS);
+
+    assertThat(latestVersions)
+        .isEqualTo(ImmutableMap.of(contextOf("first"), "v1.0", contextOf("second"), "v2.0"));
+    assertThat(QUERIES).hasSize(1);
+  }
+
+  private static GithubVersionProviderContext contextOf(String repoName) {
+    return GithubVersionProviderContext.newBuilder()
+        .setRepoOwner("gonalez")
+        .setRepoName(repoName)
+        .build();
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.providers;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.github.gonalez.uptodatechecker.http.HttpClientImpl;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/** Tests for {@link SpigetBatchVersionProvider}. */
+public class SpigetBatchVersionProviderTest {
+  private static final ScheduledExecutorService SCHEDULED_EXECUTOR_SERVICE =
+      Executors.newScheduledThreadPool(2);
+
+  private static final List<String> REQUESTS = new CopyOnWriteArrayList<>();
+
+  private static HttpServer server;
+  private static String apiUrl;
+
+  @BeforeAll
+  static void setup() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext(
+        "/authors/42/resources",
+        exchange -> {
+          REQUESTS.add(exchange.getRequestURI().toString());
+          // 100 resources in the first page, 2 in the second one
+          boolean firstPage = exchange.getRequestURI().getQuery().contains("page=1");
+          StringBuilder page = new StringBuilder("[");
+          for (int id = firstPage ? 1 : 101; id <= (firstPage ? 100 : 102); id++) {
+            page.append(page.length() == 1 ? "" : ",")
+                .append("{\"id\": ")
+                .append(id)
+                .append(", \"version\": {\"id\": ")
+                .append(id * 10)
+                .append(", \"uuid\": \"x\"}}");
+          }
+          respond(exchange, page.append(']').toString());
+        });
+    server.createContext(
+        "/resources",
+        exchange -> {
+          REQUESTS.add(exchange.getRequestURI().toString());
+          // /resources/5/versions/50
+          String[] path = exchange.getRequestURI().getPath().split("/");
+          respond(exchange, "{\"id\": 1, \"name\": \"" + path[2] + "-" + path[4] + "\"}");
+        });
+    server.start();
+    apiUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+  }
+
+  private static void respond(HttpExchange exchange, String body) throws IOException {
+    byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(200, bytes.length);
+    exchange.getResponseBody().write(bytes);
+    exchange.close();
+  }
+
+  @AfterAll
+  static void tearDown() {
+    server.stop(0);
+    SCHEDULED_EXECUTOR_SERVICE.shutdownNow();
+  }
+
+  @Test
+  public void testFindsResourcesInAuthorPages() throws Exception {
+    REQUESTS.clear();
+    SpigetBatchVersionProvider versionProvider =
+        new SpigetBatchVersionProvider(
+            SCHEDULED_EXECUTOR_SERVICE,
+            new HttpClientImpl(SCHEDULED_EXECUTOR_SERVICE),
+            apiUrl,
+            TimeUnit.HOURS.toMillis(1));
+    ImmutableSet<SpigetVersionProviderContext> contexts =
+        ImmutableSet.of(contextOf("5", "42"), contextOf("101", "42"), contextOf("7", null));
+
+    assertThat(versionProvider.findLatestVersions(contexts).get(5, TimeUnit.SECONDS))
+        .isEqualTo(
+            ImmutableMap.of(
+                contextOf("5", "42"), "5-50",
+                contextOf("101", "42"), "101-1010",
+                contextOf("7", null), "7-latest"));
+    assertThat(REQUESTS).hasSize(5);
+
+    // The versions did not change, so only the pages are read again
+    REQUESTS.clear();
+    assertThat(versionProvider.findLatestVersions(contexts).get(5, TimeUnit.SECONDS)).hasSize(3);
+    assertThat(REQUESTS).hasSize(3);
+  }
+
+  @Test
+  public void testFailsMissingResource() throws Exception {
+    SpigetBatchVersionProvider versionProvider =
+        new SpigetBatchVersionProvider(
+            SCHEDULED_EXECUTOR_SERVICE, new HttpClientImpl(SCHEDULED_EXECUTOR_SERVICE), apiUrl, 10);
+
+    ListenableFuture<String> found = versionProvider.findLatestVersion(contextOf("3", "42"));
+    ListenableFuture<String> missing = versionProvider.findLatestVersion(contextOf("999", "42"));
+
+    assertThat(found.get(5, TimeUnit.SECONDS)).isEqualTo("3-30");
+    assertThrows(ExecutionException.class, () -> missing.get(5, TimeUnit.SECONDS));
+  }
+
+  private static SpigetVersionProviderContext contextOf(String resourceId, String authorId) {
+    return SpigetVersionProviderContext.newBuilder()
+        .setResourceId(resourceId)
+        .setOptionalAuthorId(Optional.ofNullable(authorId))
+        .build();
+  }
+}
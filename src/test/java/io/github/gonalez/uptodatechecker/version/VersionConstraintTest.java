@@ -0,0 +1,64 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.version;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link VersionConstraint}. */
+public class VersionConstraintTest {
+
+  @Test
+  public void testRange() {
+    VersionConstraint constraint = VersionConstraint.parse(">=2.0 <3.0");
+    assertThat(constraint.isUpToDate("2.0", "2.1")).isFalse();
+    assertThat(constraint.isUpToDate("1.9", "v2.0.0")).isFalse();
+    // Newer, but out of the range
+    assertThat(constraint.isUpToDate("2.1", "3.0")).isTrue();
+    // Not newer
+    assertThat(constraint.isUpToDate("2.1", "2.0")).isTrue();
+    assertThat(constraint.isUpToDate("2.1", "2.1.0")).isTrue();
+  }
+
+  @Test
+  public void testStableAndSameMajor() {
+    VersionConstraint constraint = VersionConstraint.parse("stable, same-major");
+    assertThat(constraint.isUpToDate("1.2", "1.3-rc1")).isTrue();
+    assertThat(constraint.isUpToDate("1.2", "2.0")).isTrue();
+    assertThat(constraint.isUpToDate("1.2", "1.3")).isFalse();
+    assertThat(VersionConstraint.parse("same-minor").isUpToDate("1.2", "1.3")).isTrue();
+    assertThat(VersionConstraint.parse("same-minor").isUpToDate("1.2", "1.2.1")).isFalse();
+    assertThat(VersionConstraint.ANY.isUpToDate("1.2", "1.3-SNAPSHOT")).isFalse();
+  }
+
+  @Test
+  public void testEquality() {
+    assertThat(VersionConstraint.parse(">=2.0 <3.0"))
+        .isEqualTo(VersionConstraint.parse(">=2.0.0, <3"));
+    assertThat(VersionConstraint.parse(">=2.0 <3.0").hashCode())
+        .isEqualTo(VersionConstraint.parse(">=2.0.0, <3").hashCode());
+    assertThat(VersionConstraint.parse("stable")).isNotEqualTo(VersionConstraint.ANY);
+    assertThat(VersionConstraint.parse(">=2.0")).isNotEqualTo(VersionConstraint.parse(">2.0"));
+  }
+
+  @Test
+  public void testInvalidConstraint() {
+    assertThrows(IllegalArgumentException.class, () -> VersionConstraint.parse("~2.0"));
+    assertThrows(IllegalArgumentException.class, () -> VersionConstraint.parse(">="));
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2022 - Gaston Gonzalez (Gonalez)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.gonalez.uptodatechecker.version;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+/** Tests for {@link Version}. */
+public class VersionTest {
+
+  @Test
+  public void testEquivalentVersions() {
+    assertThat(Version.parse("1.2.0")).isEqualTo(Version.parse("v1.2"));
+    assertThat(Version.parse("1.2.0").hashCode()).isEqualTo(Version.parse("v1.2").hashCode());
+    assertThat(Version.compare("1.0.0+build5", "1.0")).isEqualTo(0);
+    assertThat(Version.compare("1.0.Final", "1.0-GA")).isEqualTo(0);
+    assertThat(Version.parse("V2.0").toString()).isEqualTo("V2.0");
+  }
+
+  @Test
+  public void testOrdering() {
+    String[] ordered = {
+      "0.9",
+      "1.0-alpha",
+      "1.0-alpha2",
+      "1.0.0-beta.1",
+      "1.0-M1",
+      "1.0-rc1",
+      "1.0-rc.2",
+      "1.0-foo",
+      "1.0-SNAPSHOT",
+      "1.0",
+      "1.0-sp1",
+      "1.0.1",
+      "1.2",
+      "1.10",
+      "v2",
+    };
+    for (int i = 0; i < ordered.length - 1; i++) {
+      assertThat(Version.compare(ordered[i], ordered[i + 1])).isLessThan(0);
+      assertThat(Version.compare(ordered[i + 1], ordered[i])).isGreaterThan(0);
+    }
+    assertThat(Version.parse("1.0-rc1").isPreRelease()).isTrue();
+    assertThat(Version.parse("1.0").isPreRelease()).isFalse();
+  }
+
+  @Test
+  public void testInternsParsedVersions() {
+    assertThat(Version.parse("3.1.4")).isSameInstanceAs(Version.parse("3.1.4"));
+    assertThat(Version.parse("3.1.4").componentCount()).isEqualTo(3);
+    assertThat(Version.parse("3.1.4").component(3)).isEqualTo(0);
+  }
+
+  @Test
+  public void testMatchStrategies() {
+    assertThat(VersionMatchStrategies.newerOrEqual().apply("v1.2", "1.2.0")).isTrue();
+    assertThat(VersionMatchStrategies.newerOrEqual().apply("1.3-SNAPSHOT", "1.2")).isTrue();
+    assertThat(VersionMatchStrategies.newerOrEqual().apply("1.2-rc1", "1.2")).isFalse();
+    assertThat(VersionMatchStrategies.equivalent().apply("1.3", "1.2")).isFalse();
+    assertThat(VersionMatchStrategies.equivalent().apply("1.2", "v1.2.0")).isTrue();
+  }
+}